@@ -0,0 +1,79 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.api;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+
+/**
+ * <p>Listener which receives changes in batches rather than one-by-one. All changes which become due for
+ * delivery at the same time (i.e. whose dispatch delay expired within the same timer tick) are collected and
+ * delivered through one call to {@link #discard(Collection)} and one call to {@link #modified(List)}. This
+ * allows implementations to process many changes within one unit of work, for instance one database
+ * transaction.</p>
+ *
+ * <p>Within a batch, discarded keys are always delivered before the modifications. Changes which do not originate
+ * from a received file-system event (for instance the initial delivery of all files when the listener is registered,
+ * or a {@link PathChangeEvent#replay()}) are still delivered one-by-one; the default implementations of
+ * {@link #modified(PathChangeEvent)} and {@link #discard(DispatchKey)} delegate them to the batch methods as
+ * batches with exactly one element.</p>
+ *
+ * <p>Note: implementations of this interface must be <em>thread-safe</em>.</p>
+ */
+public interface BatchPathChangeListener extends PathChangeListener {
+
+    /**
+     * Indicates, that the files (never directories) represented by the events specified have been modified.
+     * Modified means, that the files have been created or updated. The list contains at most one event per
+     * {@link DispatchKey}. Before this method is called, {@link #supplement(DispatchKey, DispatchKey)} has
+     * been called for every event where applicable.
+     *
+     * @param pEvents Unmodifiable, non-empty list of events, never {@code null}
+     * @throws IOException Thrown, if processing of the modified files failed for some reason.
+     */
+    void modified(List<PathChangeEvent> pEvents) throws IOException;
+
+    /**
+     * Indicates, that the files denoted by the {@link DispatchKey} objects specified have been discarded for
+     * some reason (file/directory has been deleted, watched directory is being unregistered etc.).
+     *
+     * @param pKeys Unmodifiable, non-empty collection of file-keys, never {@code null}
+     */
+    void discard(Collection<DispatchKey> pKeys);
+
+    /**
+     * Delegates to {@link #modified(List)} with a list containing only the event specified.
+     *
+     * @param pEvent Event which represents the creation or update of a file, never {@code null}
+     * @throws IOException Thrown, if processing of the modified file failed for some reason.
+     */
+    @Override
+    default void modified(final PathChangeEvent pEvent) throws IOException {
+        modified(singletonList(pEvent));
+    }
+
+    /**
+     * Delegates to {@link #discard(Collection)} with a collection containing only the key specified.
+     *
+     * @param pKey File-key of the discarded file or directory, never {@code null}
+     */
+    @Override
+    default void discard(final DispatchKey pKey) {
+        discard(singleton(pKey));
+    }
+}
@@ -0,0 +1,83 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.api;
+
+import java.util.Map;
+
+/**
+ * <p>Runtime metrics of the file observer. An implementation is registered as OSGi service, and, as MXBean
+ * with the object name {@value #OBJECT_NAME} on the platform MBean server.</p>
+ *
+ * <p>Counters are always maintained. Durations are only measured after the metrics have been read for the
+ * first time; until then, all {@link LatencyStatistics} are empty. This keeps the overhead negligible as long
+ * as nobody is interested in the metrics.</p>
+ */
+public interface FileObserverMetrics {
+
+    /**
+     * Object name of the MXBean.
+     */
+    String OBJECT_NAME = "ch.sourcepond.io.fileobserver:type=Metrics";
+
+    /**
+     * @return Number of raw events received from the watch services, keyed by the name of the event kind
+     * ({@code ENTRY_CREATE}, {@code ENTRY_MODIFY}, {@code ENTRY_DELETE} and {@code OVERFLOW})
+     */
+    Map<String, Long> getWatchEvents();
+
+    /**
+     * @return Number of events which have been dispatched after the dispatch delay expired. All raw events
+     * which are received for a file during the delay are merged into one debounced event.
+     */
+    long getDebouncedEvents();
+
+    /**
+     * @return Number of files whose events are currently waiting to be dispatched
+     */
+    int getPendingEvents();
+
+    /**
+     * @return Number of events which have been suppressed because the checksum of the file has not changed
+     */
+    long getUnchangedChecksums();
+
+    /**
+     * @return Number of bytes of the files whose checksum has been updated. Files hashed by the checksum service
+     * (SHA-256) are only counted if their attributes have been read anyway, see the change-detection of the
+     * watched directory
+     */
+    long getHashedBytes();
+
+    /**
+     * @return Durations of checksum updates
+     */
+    LatencyStatistics getHashingTime();
+
+    /**
+     * @return Durations of the evaluations whether a listener accepts a dispatch-key
+     */
+    LatencyStatistics getRestrictionTime();
+
+    /**
+     * @return Durations of deliveries to the currently registered listeners, keyed by the class name of the
+     * listener followed by {@code #} and a number which is unique per registration
+     */
+    Map<String, LatencyStatistics> getListenerLatencies();
+
+    /**
+     * @return Number of deliveries which have failed with an exception, keyed like
+     * {@link #getListenerLatencies()}
+     */
+    Map<String, Long> getListenerFailures();
+}
@@ -0,0 +1,46 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.api;
+
+/**
+ * Immutable statistics of recorded durations. Percentiles are estimated; they are the upper bounds of
+ * power-of-two sized buckets, so they are at most twice the actual value.
+ */
+public interface LatencyStatistics {
+
+    /**
+     * @return Number of recorded durations
+     */
+    long getCount();
+
+    /**
+     * @return Mean of the recorded durations in nanoseconds, or 0 if nothing has been recorded
+     */
+    long getMeanNanos();
+
+    /**
+     * @return Longest recorded duration in nanoseconds, or 0 if nothing has been recorded
+     */
+    long getMaxNanos();
+
+    /**
+     * @return Estimated median in nanoseconds, or 0 if nothing has been recorded
+     */
+    long getP50Nanos();
+
+    /**
+     * @return Estimated 99th percentile in nanoseconds, or 0 if nothing has been recorded
+     */
+    long getP99Nanos();
+}
@@ -14,6 +14,7 @@ limitations under the License.*/
 package ch.sourcepond.io.fileobserver.api;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * A change event encapsulates all information about a file modification. Additionally it provides the
@@ -46,6 +47,42 @@ public interface PathChangeEvent {
      */
     int getNumReplays();
 
+    /**
+     * Returns the value of {@link System#nanoTime()} when the first watch event which led to this event has been
+     * received. If this event has not been caused by a watch event (for instance, when a listener is informed
+     * about existing files after its registration), this is the time when the file has been visited. Like all
+     * timestamps of this event, the value is only meaningful when compared with other values of
+     * {@link System#nanoTime()} in the same JVM.
+     *
+     * @return Monotonic timestamp in nanoseconds
+     */
+    long getReceivedNanos();
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the delay to merge multiple watch events for the same file
+     * has expired.
+     *
+     * @return Monotonic timestamp in nanoseconds, never before {@link #getReceivedNanos()}
+     */
+    long getDebouncedNanos();
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the checksum of the file has been computed. If no
+     * checksum had to be computed, this is equal to {@link #getDebouncedNanos()}.
+     *
+     * @return Monotonic timestamp in nanoseconds, never before {@link #getDebouncedNanos()}
+     */
+    long getChecksumNanos();
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the delivery of this event to the listener has been
+     * started. For a {@link BatchPathChangeListener}, this is when the whole batch is delivered. Replaying this
+     * event does not change this timestamp.
+     *
+     * @return Monotonic timestamp in nanoseconds, never before {@link #getChecksumNanos()}
+     */
+    long getDeliveryNanos();
+
     /**
      * <p>Enqueue this event again for later delivery. This is useful if the file returned by {@link #getFile()}
      * cannot be processed right now but sometime in the future. For instance, this could be the case when a file is
@@ -53,9 +90,23 @@ public interface PathChangeEvent {
      * a client can stop processing the file and schedule its dispatch to a later point in time. It's possible to
      * query how may times this event has been rescheduled through {@link #getNumReplays()}.</p>
      *
+     * <p>The delay until the event is delivered again is determined by the configured backoff policy; it grows
+     * exponentially with the number of replays. By default, the event is delivered again immediately. Use
+     * {@link #replay(Duration)} to specify the delay explicitly.</p>
+     *
      * <p>Attention: it's possible to produce an infinite loop if the {@link PathChangeListener#modified(PathChangeEvent)}
      * implementation does always call this method for some reason! So implementors should take care that this
      * method is guarded by an appropriate condition.</p>
      */
     void replay();
+
+    /**
+     * Enqueue this event again for delivery after the delay specified, see {@link #replay()}. No thread is occupied
+     * while the delay elapses.
+     *
+     * @param pDelay Delay until the event is delivered again, must not be {@code null}. Zero or a negative delay
+     *               enqueues the event immediately.
+     * @throws NullPointerException Thrown, if the delay specified is {@code null}
+     */
+    void replay(Duration pDelay);
 }
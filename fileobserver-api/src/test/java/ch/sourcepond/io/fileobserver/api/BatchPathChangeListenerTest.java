@@ -0,0 +1,45 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class BatchPathChangeListenerTest {
+    private final DispatchKey key = mock(DispatchKey.class);
+    private final PathChangeEvent event = mock(PathChangeEvent.class);
+    private final BatchPathChangeListener listener = mock(BatchPathChangeListener.class);
+
+    @Test
+    public void modified() throws IOException {
+        doCallRealMethod().when(listener).modified(event);
+        listener.modified(event);
+        verify(listener).modified(singletonList(event));
+    }
+
+    @Test
+    public void discard() {
+        doCallRealMethod().when(listener).discard(key);
+        listener.discard(key);
+        verify(listener).discard(singleton(key));
+    }
+}
@@ -0,0 +1,57 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.benchmarks;
+
+import ch.sourcepond.io.fileobserver.impl.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * Creates {@link Config} instances outside of an OSGi container. Every attribute returns its
+ * default value unless it has been overridden.
+ */
+public final class BenchmarkConfig {
+    private final Map<String, Object> overrides = new HashMap<>();
+
+    public BenchmarkConfig set(final String pAttribute, final Object pValue) {
+        overrides.put(pAttribute, pValue);
+        return this;
+    }
+
+    public Config build() {
+        final Map<String, Object> values = new HashMap<>(overrides);
+        return (Config) newProxyInstance(Config.class.getClassLoader(), new Class<?>[]{Config.class},
+                (proxy, method, args) -> {
+                    if (values.containsKey(method.getName())) {
+                        return values.get(method.getName());
+                    }
+                    if (method.getDefaultValue() != null) {
+                        return method.getDefaultValue();
+                    }
+                    if ("annotationType".equals(method.getName())) {
+                        return Config.class;
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return "Config" + values;
+                });
+    }
+}
@@ -0,0 +1,41 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected through the command line (all if nothing is specified). The GC profiler
+ * is always attached, so every result contains the allocation rate per operation
+ * ({@code gc.alloc.rate.norm}) which is tracked as a first-class metric.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // Main class
+    }
+
+    public static void main(final String[] pArgs) throws RunnerException, CommandLineOptionException {
+        final ChainedOptionsBuilder options = new OptionsBuilder().
+                parent(new CommandLineOptions(pArgs)).
+                addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
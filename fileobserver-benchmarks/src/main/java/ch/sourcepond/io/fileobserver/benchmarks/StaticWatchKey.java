@@ -0,0 +1,58 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.benchmarks;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Watch-key which is not registered with any watch-service. It's used to create directory objects
+ * without the overhead of a real registration.
+ */
+public final class StaticWatchKey implements WatchKey {
+    private final Path directory;
+
+    public StaticWatchKey(final Path pDirectory) {
+        directory = pDirectory;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public List<WatchEvent<?>> pollEvents() {
+        return emptyList();
+    }
+
+    @Override
+    public boolean reset() {
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        // noop
+    }
+
+    @Override
+    public Path watchable() {
+        return directory;
+    }
+}
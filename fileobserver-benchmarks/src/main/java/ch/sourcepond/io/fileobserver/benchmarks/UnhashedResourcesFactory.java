@@ -0,0 +1,65 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.benchmarks;
+
+import ch.sourcepond.io.checksum.api.Resource;
+import ch.sourcepond.io.checksum.api.ResourcesFactory;
+import ch.sourcepond.io.checksum.api.Update;
+import ch.sourcepond.io.checksum.api.UpdateObserver;
+
+import java.lang.reflect.InvocationHandler;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * Creates checksum resources which report every update as changed without actually hashing the file. This keeps
+ * the cost of the checksum implementation (which is benchmarked by its own project) out of the
+ * fileobserver measurements.
+ */
+public final class UnhashedResourcesFactory {
+    private static final Update CHANGED = proxy(Update.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+            case "hasChanged":
+                return true;
+            case "toString":
+                return "changed";
+            default:
+                return null;
+        }
+    });
+
+    private static final Resource RESOURCE = proxy(Resource.class, (proxy, method, args) -> {
+        if ("update".equals(method.getName())) {
+            for (final Object arg : args) {
+                if (arg instanceof UpdateObserver) {
+                    ((UpdateObserver) arg).done(CHANGED);
+                }
+            }
+        }
+        return null;
+    });
+
+    private UnhashedResourcesFactory() {
+        // Factory class
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> pType, final InvocationHandler pHandler) {
+        return (T) newProxyInstance(pType.getClassLoader(), new Class<?>[]{pType}, pHandler);
+    }
+
+    public static ResourcesFactory create() {
+        return (algorithm, file) -> RESOURCE;
+    }
+}
@@ -0,0 +1,157 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.benchmarks.BenchmarkConfig;
+import ch.sourcepond.io.fileobserver.benchmarks.UnhashedResourcesFactory;
+import ch.sourcepond.io.fileobserver.impl.directory.DirectoryFactory;
+import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystemFactory;
+import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
+import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+import static java.lang.Thread.sleep;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.write;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * <p>Measures the latency between writing a file and the delivery of the corresponding
+ * {@link PathChangeEvent} to a listener, i.e. the whole pipeline from the watch-service over the debounce
+ * timer and the dispatcher down to the listener.</p>
+ *
+ * <p>The watched directory is created in {@code /dev/shm} (tmpfs) if available, otherwise in the default
+ * temporary directory; set the system property {@value #DIRECTORY_PROPERTY} to use another base directory.
+ * Checksums are not calculated (see {@link UnhashedResourcesFactory}).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndLatencyBenchmark {
+    static final String DIRECTORY_PROPERTY = "fileobserver.benchmark.dir";
+    private static final Path TMPFS = Paths.get("/dev/shm");
+    private final BlockingQueue<Path> delivered = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = newCachedThreadPool();
+    private final ExecutorService directoryWalkerExecutor = newCachedThreadPool();
+    private final ExecutorService dispatcherExecutor = newCachedThreadPool();
+    private VirtualRoot root;
+    private Path directory;
+    private Path file;
+    private long counter;
+
+    @Param({"0", "50"})
+    public long eventDispatchDelayMillis;
+
+    private class LatencyListener implements PathChangeListener {
+
+        @Override
+        public void modified(final PathChangeEvent pEvent) {
+            delivered.offer(pEvent.getFile());
+        }
+
+        @Override
+        public void discard(final DispatchKey pKey) {
+            // noop
+        }
+    }
+
+    private static Path baseDirectory() {
+        final String base = System.getProperty(DIRECTORY_PROPERTY);
+        if (base != null) {
+            return Paths.get(base);
+        }
+        return isDirectory(TMPFS) ? TMPFS : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        directory = createTempDirectory(baseDirectory(), "fileobserver-benchmark");
+        file = directory.resolve("file.txt");
+        write(file, new byte[0]);
+
+        final ListenerManager manager = new ListenerManager();
+        final DirectoryFactory directoryFactory = new DirectoryFactory(new DefaultDispatchKeyFactory());
+        final DedicatedFileSystemFactory fsFactory = new DedicatedFileSystemFactory(directoryFactory, manager);
+        manager.setExecutors(executor, executor);
+        fsFactory.setExecutors(directoryWalkerExecutor, dispatcherExecutor);
+
+        root = new VirtualRoot(fsFactory, manager);
+        root.setResourcesFactory(UnhashedResourcesFactory.create());
+        root.activate(new BenchmarkConfig().
+                set("eventDispatchDelayMillis", eventDispatchDelayMillis).
+                set("eventDispatchTickMillis", 1L).
+                build());
+        root.addRoot(WatchedDirectory.create("benchmark", directory));
+        root.addListener(new LatencyListener());
+
+        // Wait until the initial registration has been delivered
+        sleep(1000);
+        delivered.clear();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        root.deactivate();
+        executor.shutdown();
+        directoryWalkerExecutor.shutdown();
+        dispatcherExecutor.shutdown();
+        deleteIfExists(file);
+        deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Path writeToDelivery() throws Exception {
+        write(file, Long.toString(counter++).getBytes(UTF_8));
+        Path path;
+        do {
+            path = delivered.poll(10, SECONDS);
+            if (path == null) {
+                throw new TimeoutException(format("No event received for %s", file));
+            }
+        } while (!file.equals(path));
+        return path;
+    }
+}
@@ -0,0 +1,109 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.benchmarks.StaticWatchKey;
+import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.walk;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures {@link Directory#createKeys(Path)} and {@link SubDirectory#getWatchedDirectories()} on the deepest
+ * directory of a hierarchy. Additional watched-directories are registered on the sub-directories nearest to
+ * the root, so that the effective set of watched-directories needs to be merged while walking up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryKeysBenchmark {
+
+    @Param({"1", "8", "16"})
+    public int depth;
+
+    @Param({"1", "4"})
+    public int watchedDirectories;
+
+    private Path root;
+    private Directory leaf;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        root = createTempDirectory("fileobserver-benchmark");
+        final DirectoryFactory factory = new DirectoryFactory(new DefaultDispatchKeyFactory());
+        Directory dir = factory.newRoot(new StaticWatchKey(root));
+        dir.addWatchedDirectory(WatchedDirectory.create("root", root));
+
+        Path path = root;
+        for (int i = 0; i < depth; i++) {
+            path = createDirectories(path.resolve("level" + i));
+            dir = factory.newBranch(dir, new StaticWatchKey(path));
+            if (i < watchedDirectories - 1) {
+                dir.addWatchedDirectory(WatchedDirectory.create("level" + i, path));
+            }
+        }
+        leaf = dir;
+        file = path.resolve("file.txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    delete(p);
+                } catch (final IOException e) {
+                    // ignore, it's only a temporary directory
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public Collection<WatchedDirectory> getWatchedDirectories() {
+        return leaf.getWatchedDirectories();
+    }
+
+    @Benchmark
+    public Collection<DispatchKey> createKeys() {
+        return leaf.createKeys(file);
+    }
+}
@@ -0,0 +1,97 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.nanoTime;
+import static java.nio.file.Paths.get;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures {@link DirectoryBatch#push(Path, java.nio.file.WatchEvent.Kind)}, which is called by the receiver
+ * thread for every received event. The contended variants let several threads push onto the same batch, the
+ * drain variants include the work done by the timer once the debounce delay has expired.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryBatchBenchmark {
+    private static final int FILES = 64;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Path[] files = new Path[FILES];
+    private DirectoryBatch shared;
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < FILES; i++) {
+            files[i] = get("/benchmark", "file" + i + ".txt");
+        }
+        shared = new DirectoryBatch(pending);
+        shared.push(files[0], ENTRY_MODIFY);
+    }
+
+    @Benchmark
+    public int pushModify() {
+        return shared.push(files[0], ENTRY_MODIFY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int pushModifyContended() {
+        return shared.push(files[0], ENTRY_MODIFY);
+    }
+
+    @Benchmark
+    public int pushModifyManyFiles() {
+        next = (next + 1) % FILES;
+        return shared.push(files[next], ENTRY_MODIFY);
+    }
+
+    @Benchmark
+    public int pushAndDrain() {
+        final DirectoryBatch batch = new DirectoryBatch(pending);
+        batch.push(files[0], ENTRY_CREATE);
+        batch.push(files[0], ENTRY_MODIFY);
+        return batch.drainExpired(nanoTime()).size();
+    }
+
+    @Benchmark
+    public int deleteCreateAndDrain() {
+        final DirectoryBatch batch = new DirectoryBatch(pending);
+        batch.push(files[0], ENTRY_DELETE);
+        batch.push(files[0], ENTRY_CREATE);
+        return batch.drainExpired(nanoTime()).get(files[0]).getState();
+    }
+}
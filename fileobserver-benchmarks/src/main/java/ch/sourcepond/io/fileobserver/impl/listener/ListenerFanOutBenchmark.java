@@ -0,0 +1,100 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.benchmarks.DirectExecutorService;
+import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static java.nio.file.FileSystems.getDefault;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures the fan-out of a single key through {@link ListenerManager#modified(Collection, DispatchKey, Path, Collection)}
+ * and {@link ListenerManager#discard(Collection, DispatchKey)} to all registered listeners. Tasks are executed
+ * in the calling thread, so the result is the pure dispatching cost (restriction checks, event creation, task
+ * and future objects) without thread hand-offs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int listeners;
+
+    private ListenerManager manager;
+    private DispatchKey key;
+    private Path file;
+
+    private static class ConsumingListener implements PathChangeListener {
+        private final Blackhole blackhole;
+
+        ConsumingListener(final Blackhole pBlackhole) {
+            blackhole = pBlackhole;
+        }
+
+        @Override
+        public void modified(final PathChangeEvent pEvent) {
+            blackhole.consume(pEvent);
+        }
+
+        @Override
+        public void discard(final DispatchKey pKey) {
+            blackhole.consume(pKey);
+        }
+    }
+
+    @Setup
+    public void setup(final Blackhole pBlackhole) {
+        manager = new ListenerManager();
+        manager.setExecutors(new DirectExecutorService(), new DirectExecutorService());
+        for (int i = 0; i < listeners; i++) {
+            manager.addListener(new ConsumingListener(pBlackhole));
+        }
+        file = getDefault().getPath("a", "b", "c", "file.txt");
+        key = new DefaultDispatchKeyFactory().newKey("benchmark", file);
+    }
+
+    @Benchmark
+    public void modified() {
+        manager.modified(manager.getListeners(), key, file, emptyList());
+    }
+
+    @Benchmark
+    public void discard() {
+        manager.discard(manager.getListeners(), key);
+    }
+}
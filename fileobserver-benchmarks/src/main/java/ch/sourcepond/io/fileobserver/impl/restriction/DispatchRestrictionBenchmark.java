@@ -0,0 +1,87 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.restriction;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.FileSystem;
+
+import static java.nio.file.FileSystems.getDefault;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures {@link DefaultDispatchRestriction#isAccepted(DispatchKey)} which is called for every listener
+ * and every dispatched key. The matching key is accepted by the last registered matcher, the non-matching
+ * key is rejected after all matchers have been evaluated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchRestrictionBenchmark {
+    private static final String DIRECTORY_KEY = "benchmark";
+
+    @Param({"1", "8", "32"})
+    public int matchers;
+
+    private DefaultDispatchRestriction restriction;
+    private DispatchKey acceptedKey;
+    private DispatchKey rejectedKey;
+    private DispatchKey unknownDirectoryKey;
+
+    @Setup
+    public void setup() {
+        final FileSystem fs = getDefault();
+        restriction = new DefaultDispatchRestrictionFactory().createRestriction(fs);
+        restriction.accept(DIRECTORY_KEY);
+        for (int i = 0; i < matchers - 1; i++) {
+            restriction.addPathMatcher("glob:**/*.ext" + i);
+        }
+        restriction.addPathMatcher("glob:**/*.xml");
+
+        final DefaultDispatchKeyFactory keyFactory = new DefaultDispatchKeyFactory();
+        acceptedKey = keyFactory.newKey(DIRECTORY_KEY, fs.getPath("a", "b", "c", "file.xml"));
+        rejectedKey = keyFactory.newKey(DIRECTORY_KEY, fs.getPath("a", "b", "c", "file.txt"));
+        unknownDirectoryKey = keyFactory.newKey("unknown", fs.getPath("a", "b", "c", "file.xml"));
+    }
+
+    @Benchmark
+    public boolean accepted() {
+        return restriction.isAccepted(acceptedKey);
+    }
+
+    @Benchmark
+    public boolean rejected() {
+        return restriction.isAccepted(rejectedKey);
+    }
+
+    @Benchmark
+    public boolean unknownDirectory() {
+        return restriction.isAccepted(unknownDirectoryKey);
+    }
+}
@@ -36,4 +36,174 @@ public @interface Config {
                     " to avoid duplicate events."
     )
     long eventDispatchDelayMillis() default 3000L;
-}
\ No newline at end of file
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Dispatch delay resolution",
+            description = "Tick duration of the timer which delays received events (see dispatch delay). Events" +
+                    " whose delays expire within the same tick are dispatched together. Changes apply to" +
+                    " file systems which are opened afterwards."
+    )
+    long eventDispatchTickMillis() default 100L;
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Directory walker parallelism",
+            description = "Number of threads which register newly detected directory trees and inform the" +
+                    " listeners about their files in parallel. With 1, directory trees are walked sequentially." +
+                    " Changes apply to file systems which are opened afterwards."
+    )
+    int directoryWalkerParallelism() default 1;
+
+    @AttributeDefinition(
+            name = "State directory",
+            description = "Local directory where the state (size, modification time and checksum) of the files" +
+                    " of every watched directory is stored when the component is deactivated. On startup, only" +
+                    " files whose state differs from the stored state are hashed again. Empty disables snapshots."
+    )
+    String stateDirectory() default "";
+
+    @AttributeDefinition(
+            min = "0",
+            name = "State snapshot interval",
+            description = "Interval in which the state of the watched files is stored additionally. With 0, the" +
+                    " state is only stored when the component is deactivated. Changes apply after re-activation."
+    )
+    long stateSnapshotIntervalMillis() default 0L;
+
+    @AttributeDefinition(
+            name = "Initial events for changed files only",
+            description = "If enabled and a state snapshot is available, listeners which are registered on startup" +
+                    " are only informed about files which have been created, changed or deleted since the" +
+                    " snapshot was stored."
+    )
+    boolean initialEventsForChangedFilesOnly() default false;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Delivery lanes",
+            description = "Number of serial lanes onto which events are distributed by the hash of their dispatch" +
+                    " key. Events for the same key are then delivered in order and never concurrently, events for" +
+                    " different keys are still delivered in parallel. With 0, events are delivered without any" +
+                    " ordering guarantee."
+    )
+    int deliveryLanes() default 0;
+
+    @AttributeDefinition(
+            name = "Virtual threads",
+            description = "If enabled, the default dispatcher, listener and directory walker executors start a" +
+                    " virtual thread per task instead of using cached platform thread pools. Requires Java 21 or" +
+                    " newer; on older JVMs, a warning is logged and platform threads are used. Changes apply to" +
+                    " executors which are created afterwards."
+    )
+    boolean virtualThreads() default false;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Max pending events",
+            description = "Maximum number of files per file system whose events are waiting to be dispatched" +
+                    " (see dispatch delay). With 0, the number is unlimited."
+    )
+    int maxPendingEvents() default 0;
+
+    @AttributeDefinition(
+            name = "Pending events policy",
+            description = "What happens when max pending events has been reached: BLOCK lets the receiver thread" +
+                    " wait (lost events are recovered by rescanning the affected directories), COALESCE replaces" +
+                    " the events of a directory with a single rescan. With receiver threads, BLOCK behaves like" +
+                    " COALESCE."
+    )
+    PendingEventsPolicy pendingEventsPolicy() default PendingEventsPolicy.BLOCK;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Replay backoff",
+            description = "Delay until an event is delivered again after its first replay (see" +
+                    " PathChangeEvent.replay()). With 0, replayed events are delivered again immediately."
+    )
+    long replayBackoffInitialMillis() default 0L;
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Replay backoff multiplier",
+            description = "Factor by which the replay backoff grows with every further replay of the same event."
+    )
+    double replayBackoffMultiplier() default 2.0;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Max replay backoff",
+            description = "Upper limit of the delay until a replayed event is delivered again."
+    )
+    long replayBackoffMaxMillis() default 60000L;
+
+    @AttributeDefinition(
+            name = "Polled file store types",
+            description = "Comma separated types of file stores (see FileStore.type(), for instance nfs, nfs4," +
+                    " cifs or fuse.sshfs) whose directories are polled instead of being watched by the watch" +
+                    " service of their file system. File systems which do not provide a watch service at all are" +
+                    " always polled. Changes apply to directories which are registered afterwards."
+    )
+    String pollingFileStoreTypes() default "";
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Min polling interval",
+            description = "Interval in which a polled directory is checked after a change has been detected in it."
+    )
+    long pollingMinIntervalMillis() default 1000L;
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Max polling interval",
+            description = "Upper limit of the interval in which a polled directory is checked. The interval of a" +
+                    " directory is doubled every time no change has been detected, up to this limit."
+    )
+    long pollingMaxIntervalMillis() default 30000L;
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Polling parallelism",
+            description = "Number of threads which check polled directories in parallel. Changes apply after" +
+                    " re-activation."
+    )
+    int pollingParallelism() default 2;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Native watch budget",
+            description = "Maximum number of directories per file system which are watched by the native watch" +
+                    " service (for instance, inotify watches on Linux). Further directories are polled. When the" +
+                    " operating system refuses further watches (for instance, because fs.inotify.max_user_watches" +
+                    " has been reached), directories are polled as well. With 0, the number is only limited by" +
+                    " the operating system."
+    )
+    int nativeWatchBudget() default 0;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Native watch depth",
+            description = "Directories which are nested deeper than this below their watched root directory are" +
+                    " polled, so that the native watch budget is spent on the upper levels of all watched trees" +
+                    " first. With 0, the depth is unlimited."
+    )
+    int nativeWatchMaxDepth() default 0;
+
+    @AttributeDefinition(
+            min = "1",
+            name = "Timer threads",
+            description = "Number of threads of the timer which is shared by all observed file systems. It expires" +
+                    " dispatch delays, schedules rescans and polled directories, and delays replayed events."
+    )
+    int timerThreads() default 1;
+
+    @AttributeDefinition(
+            min = "0",
+            name = "Receiver threads",
+            description = "Number of threads which receive the watch events of all observed file systems together" +
+                    " by polling their watch services in turn. With 0, every file system has its own receiver" +
+                    " thread which waits until events arrive. Changes apply to file systems which are opened" +
+                    " afterwards."
+    )
+    int receiverThreads() default 0;
+}
@@ -0,0 +1,100 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Executor which creates its delegate when the first task is submitted. The default executors are built when
+ * the {@link ch.sourcepond.commons.smartswitch.api.SmartSwitchBuilderFactory} is bound, which is before the
+ * configuration of the component is available. Deferring the creation allows the configuration to decide which
+ * kind of executor should be used (see {@link Config#virtualThreads()}).
+ */
+final class DeferredExecutorService extends AbstractExecutorService {
+    private final Supplier<ExecutorService> factory;
+    private volatile ExecutorService delegateOrNull;
+    private volatile boolean shutdown;
+
+    DeferredExecutorService(final Supplier<ExecutorService> pFactory) {
+        factory = pFactory;
+    }
+
+    private ExecutorService getDelegate() {
+        ExecutorService delegate = delegateOrNull;
+        if (delegate == null) {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Executor has been shutdown");
+                }
+                delegate = delegateOrNull;
+                if (delegate == null) {
+                    delegate = factory.get();
+                    delegateOrNull = delegate;
+                }
+            }
+        }
+        return delegate;
+    }
+
+    @Override
+    public void execute(final Runnable pCommand) {
+        getDelegate().execute(pCommand);
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        final ExecutorService delegate = delegateOrNull;
+        if (delegate != null) {
+            delegate.shutdown();
+        }
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        final ExecutorService delegate = delegateOrNull;
+        return delegate == null ? emptyList() : delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        final ExecutorService delegate = delegateOrNull;
+        return shutdown && (delegate == null || delegate.isTerminated());
+    }
+
+    @Override
+    public boolean awaitTermination(final long pTimeout, final TimeUnit pUnit) throws InterruptedException {
+        final ExecutorService delegate;
+        synchronized (this) {
+            delegate = delegateOrNull;
+            if (delegate == null) {
+                return shutdown;
+            }
+        }
+        return delegate.awaitTermination(pTimeout, pUnit);
+    }
+}
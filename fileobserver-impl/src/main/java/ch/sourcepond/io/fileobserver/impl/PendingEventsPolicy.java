@@ -0,0 +1,36 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+/**
+ * Determines what happens when a file system receives an event for a file which is not pending yet, but
+ * the number of pending files has reached the configured limit (see {@link Config#maxPendingEvents()}).
+ */
+public enum PendingEventsPolicy {
+
+    /**
+     * The thread which receives the events from the watch service waits until pending events have been
+     * dispatched. Meanwhile, the watch service may discard events and signal an overflow, in which case the
+     * affected directories are rescanned. If the events are received by shared threads (see
+     * {@link Config#receiverThreads()}), this policy behaves like {@link #COALESCE}, because a waiting thread
+     * would stall all other file systems.
+     */
+    BLOCK,
+
+    /**
+     * The event is not queued; instead, its directory is rescanned as soon as pending events have been
+     * dispatched. All events of a directory are thus coalesced into one rescan.
+     */
+    COALESCE
+}
@@ -0,0 +1,70 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+import static java.lang.String.format;
+
+/**
+ * Timer which is shared by all observed file systems (dispatch delays and rescans), the polling
+ * backend, delayed replays and snapshots, see {@link Config#timerThreads()}. Tasks scheduled on it must be
+ * short; anything which may block for a longer time (reading directories or files, writing snapshots) must be
+ * handed over to an executor. The threads are started on first use.
+ */
+public class SharedScheduler {
+    private volatile int threads = 1;
+
+    // Guarded by this
+    private ScheduledThreadPoolExecutor executorOrNull;
+
+    public synchronized void setConfig(final Config pConfig) {
+        threads = max(1, pConfig.timerThreads());
+        if (executorOrNull != null) {
+            executorOrNull.setCorePoolSize(threads);
+        }
+    }
+
+    /**
+     * Returns the shared scheduler. It must never be shut down by the caller; use {@link #shutdown()} instead.
+     *
+     * @return Scheduler, never {@code null}
+     */
+    public synchronized ScheduledExecutorService get() {
+        if (executorOrNull == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            executorOrNull = new ScheduledThreadPoolExecutor(threads, r -> {
+                final Thread thread = new Thread(r, format("fileobserver timer-%d", counter.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            });
+            executorOrNull.setRemoveOnCancelPolicy(true);
+        }
+        return executorOrNull;
+    }
+
+    /**
+     * Stops the threads of the shared scheduler. Tasks which have not been executed yet are dropped. If the
+     * scheduler is used afterwards, new threads are started.
+     */
+    public synchronized void shutdown() {
+        if (executorOrNull != null) {
+            executorOrNull.shutdownNow();
+            executorOrNull = null;
+        }
+    }
+}
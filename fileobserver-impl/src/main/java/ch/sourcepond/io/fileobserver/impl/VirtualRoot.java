@@ -15,16 +15,23 @@ package ch.sourcepond.io.fileobserver.impl;
 
 import ch.sourcepond.commons.smartswitch.api.SmartSwitchBuilderFactory;
 import ch.sourcepond.io.checksum.api.ResourcesFactory;
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 import ch.sourcepond.io.fileobserver.impl.directory.DirectoryFactory;
 import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import ch.sourcepond.io.fileobserver.impl.dispatch.InterningDispatchKeyFactory;
 import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystem;
 import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystemFactory;
 import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
+import ch.sourcepond.io.fileobserver.impl.metrics.MetricsRegistration;
+import ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotStore;
 import ch.sourcepond.io.fileobserver.spi.RelocationObserver;
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
 import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -37,15 +44,23 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.String.format;
 import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Paths.get;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.Objects.requireNonNull;
 import static org.osgi.service.component.annotations.ReferenceCardinality.MULTIPLE;
 import static org.osgi.service.component.annotations.ReferencePolicy.DYNAMIC;
@@ -68,15 +83,37 @@ public class VirtualRoot implements RelocationObserver {
     private final Map<Object, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
     private final ConcurrentMap<FileSystem, DedicatedFileSystem> children = new ConcurrentHashMap<>();
     private final DedicatedFileSystemFactory dedicatedFileSystemFactory;
-
+    private final Metrics metrics;
+    private final SharedScheduler scheduler;
+
+    // Keys of files which have been discarded since the last snapshot; these are
+    // delivered to the listeners which are registered during activation.
+    private final Collection<DispatchKey> discardedSinceSnapshot = new CopyOnWriteArrayList<>();
+    private volatile Config config;
+    private volatile SnapshotStore snapshotStoreOrNull;
+    private volatile ScheduledFuture<?> snapshotTaskOrNull;
+
+    // Snapshots are written by a dedicated thread; the shared timer only triggers them
+    private volatile ExecutorService snapshotExecutorOrNull;
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private volatile boolean activating;
+    private volatile MetricsRegistration metricsRegistrationOrNull;
 
     // Constructor for BundleActivator
     public VirtualRoot() {
         manager = new ListenerManager();
-        final DefaultDispatchKeyFactory keyFactory = new DefaultDispatchKeyFactory();
+        final DefaultDispatchKeyFactory keyFactory = new InterningDispatchKeyFactory();
         dedicatedFileSystemFactory = new DedicatedFileSystemFactory(
                 new DirectoryFactory(keyFactory),
                 manager);
+        scheduler = new SharedScheduler();
+        manager.setScheduler(scheduler);
+        dedicatedFileSystemFactory.setScheduler(scheduler);
+        metrics = new Metrics();
+        manager.setMetrics(metrics);
+        dedicatedFileSystemFactory.setMetrics(metrics);
+        metrics.setPendingEventsGauge(() ->
+                children.values().stream().mapToInt(DedicatedFileSystem::getPendingEvents).sum());
     }
 
     // Constructor for testing
@@ -84,27 +121,80 @@ public class VirtualRoot implements RelocationObserver {
                        final ListenerManager pManager) {
         dedicatedFileSystemFactory = pDedicatedFileSystemFactory;
         manager = pManager;
+        metrics = new Metrics();
+        scheduler = new SharedScheduler();
     }
 
+    /**
+     * Activates this component and publishes its metrics, see {@link ch.sourcepond.io.fileobserver.api.FileObserverMetrics}.
+     *
+     * @param pContext Bundle context, must not be {@code null}
+     * @param pConfig  Configuration, must not be {@code null}
+     */
     @Activate
+    public void activate(final BundleContext pContext, final Config pConfig) {
+        activate(pConfig);
+        metricsRegistrationOrNull = MetricsRegistration.register(pContext, metrics);
+    }
+
     public void activate(final Config pConfig) {
         setConfig(pConfig);
-        rootInitSwitch.init();
-        observerInitSwitch.init();
-        hooksInitSwitch.init();
+        activating = true;
+        try {
+            rootInitSwitch.init();
+            observerInitSwitch.init();
+            hooksInitSwitch.init();
+        } finally {
+            activating = false;
+            discardedSinceSnapshot.clear();
+        }
+
+        final long snapshotInterval = pConfig.stateSnapshotIntervalMillis();
+        if (snapshotStoreOrNull != null && snapshotInterval > 0) {
+            snapshotExecutorOrNull = newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "fileobserver snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotTaskOrNull = scheduler.get().scheduleWithFixedDelay(
+                    this::triggerSnapshots, snapshotInterval, snapshotInterval, MILLISECONDS);
+        }
         LOG.info("Virtual-root activated");
     }
 
     @Deactivate
     public void deactivate() {
+        final MetricsRegistration metricsRegistration = metricsRegistrationOrNull;
+        if (metricsRegistration != null) {
+            metricsRegistration.unregister();
+            metricsRegistrationOrNull = null;
+        }
+        final ScheduledFuture<?> snapshotTask = snapshotTaskOrNull;
+        if (snapshotTask != null) {
+            snapshotTask.cancel(false);
+            snapshotTaskOrNull = null;
+        }
+        final ExecutorService snapshotExecutor = snapshotExecutorOrNull;
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            snapshotExecutorOrNull = null;
+        }
+        storeSnapshots();
         children.values().forEach(DedicatedFileSystem::close);
         children.clear();
         dedicatedFileSystemFactory.shutdown();
+        manager.shutdown();
+        scheduler.shutdown();
         LOG.info("Virtual-root deactivated");
     }
 
     @Modified
     public void setConfig(final Config pConfig) {
+        config = pConfig;
+        scheduler.setConfig(pConfig);
+        final String stateDirectoryOrNull = pConfig.stateDirectory();
+        snapshotStoreOrNull = stateDirectoryOrNull == null || stateDirectoryOrNull.isEmpty() ?
+                null : new SnapshotStore(get(stateDirectoryOrNull));
         children.values().forEach(c -> c.setConfig(pConfig));
         dedicatedFileSystemFactory.setConfig(pConfig);
         manager.setConfig(pConfig);
@@ -115,27 +205,113 @@ public class VirtualRoot implements RelocationObserver {
         dedicatedFileSystemFactory.setResourcesFactory(pResourcesFactory);
     }
 
+    /**
+     * Creates the executor which is used when no executor service matching the respective filter is
+     * registered. The actual executor is created on first use, because the configuration is not available
+     * yet when this method is called.
+     */
+    private ExecutorService newDefaultExecutor() {
+        return new DeferredExecutorService(() -> {
+            final Config cfg = config;
+            if (cfg != null && cfg.virtualThreads()) {
+                if (VirtualThreads.isAvailable()) {
+                    return VirtualThreads.newVirtualThreadPerTaskExecutor();
+                }
+                LOG.warn("Virtual threads are not supported by this JVM; using platform threads instead");
+            }
+            return newCachedThreadPool();
+        });
+    }
+
     @Reference
     public void initExecutors(final SmartSwitchBuilderFactory pFactory) {
         final ExecutorService dispatcherExecutor = pFactory.newBuilder(ExecutorService.class).
                 setFilter("(sourcepond.io.fileobserver.dispatcherexecutor=*)").
                 setShutdownHook(ExecutorService::shutdown).
-                build(Executors::newCachedThreadPool);
+                build(this::newDefaultExecutor);
         final ExecutorService listenerExecutor = pFactory.newBuilder(ExecutorService.class).
                 setFilter("(sourcepond.io.fileobserver.listenerexecutor=*)").
                 setShutdownHook(ExecutorService::shutdown).
-                build(Executors::newCachedThreadPool);
+                build(this::newDefaultExecutor);
         manager.setExecutors(dispatcherExecutor, listenerExecutor);
         final ExecutorService directoryWalkerExecutor = pFactory.newBuilder(ExecutorService.class).
                 setFilter("(sourcepond.io.fileobserver.directorywalkerexecutor=*)").
                 setShutdownHook(ExecutorService::shutdown).
-                build(Executors::newCachedThreadPool);
+                build(this::newDefaultExecutor);
         dedicatedFileSystemFactory.setExecutors(directoryWalkerExecutor, dispatcherExecutor);
     }
 
+    /**
+     * Called by the shared timer; hands the snapshots over to the snapshot thread, unless the
+     * previous snapshots are still being stored.
+     */
+    private void triggerSnapshots() {
+        final ExecutorService snapshotExecutor = snapshotExecutorOrNull;
+        if (snapshotExecutor != null && snapshotPending.compareAndSet(false, true)) {
+            try {
+                snapshotExecutor.execute(() -> {
+                    try {
+                        storeSnapshots();
+                    } finally {
+                        snapshotPending.set(false);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // Deactivated meanwhile
+                snapshotPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Stores the state of the files of every watched-directory into the configured state directory
+     * (see {@link Config#stateDirectory()}). If no state directory is configured, nothing happens.
+     */
+    private void storeSnapshots() {
+        final SnapshotStore store = snapshotStoreOrNull;
+        if (store != null) {
+            watchedDirectories.values().forEach(watchedDirectory -> {
+                final DedicatedFileSystem fs = children.get(watchedDirectory.getDirectory().getFileSystem());
+                if (fs != null) {
+                    try {
+                        store.store(watchedDirectory.getKey(), fs.takeSnapshot(watchedDirectory));
+                    } catch (final IOException e) {
+                        LOG.warn("Snapshot of {} could not be stored", watchedDirectory, e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Restores the last stored snapshot of the watched-directory specified (if any). Listeners are informed
+     * about files which have been discarded since the snapshot was taken.
+     */
+    private void restoreSnapshot(final DedicatedFileSystem pFs, final WatchedDirectory pWatchedDirectory) {
+        final SnapshotStore store = snapshotStoreOrNull;
+        if (store != null) {
+            final Collection<DispatchKey> discarded = pFs.restore(pWatchedDirectory,
+                    store.load(pWatchedDirectory.getKey()));
+            final EventDispatcher dispatcher = manager.getDefaultDispatcher();
+            discarded.forEach(dispatcher::discard);
+            if (activating) {
+                discardedSinceSnapshot.addAll(discarded);
+            }
+        }
+    }
+
     private void doAddListener(final PathChangeListener pListener) {
         final EventDispatcher dispatcher = manager.addListener(pListener);
-        children.values().forEach(dfs -> dfs.forceInform(dispatcher));
+
+        // Listeners registered during activation could already know the state stored in the
+        // snapshot; if configured, they are only informed about the delta.
+        final Config cfg = config;
+        if (activating && snapshotStoreOrNull != null && cfg != null && cfg.initialEventsForChangedFilesOnly()) {
+            children.values().forEach(dfs -> dfs.forceInformChanged(dispatcher));
+            discardedSinceSnapshot.forEach(dispatcher::discard);
+        } else {
+            children.values().forEach(dfs -> dfs.forceInform(dispatcher));
+        }
     }
 
     /**
@@ -183,6 +359,22 @@ public class VirtualRoot implements RelocationObserver {
         manager.removeHook(pHook);
     }
 
+    /**
+     * Whiteboard bind-method for {@link WatchBackend} services. A backend is only considered for file
+     * systems which are opened after it has been bound.
+     *
+     * @param pBackend Watch backend to be registered.
+     */
+    @Reference(policy = DYNAMIC, cardinality = MULTIPLE)
+    public void addWatchBackend(final WatchBackend pBackend) {
+        requireNonNull(pBackend, "Backend is null");
+        dedicatedFileSystemFactory.addWatchBackend(pBackend);
+    }
+
+    public void removeWatchBackend(final WatchBackend pBackend) {
+        dedicatedFileSystemFactory.removeWatchBackend(pBackend);
+    }
+
     // This method must be synchronized because all sub-directories need to be
     // registered before another WatchedDirectory is being registered.
     private synchronized void doAddRoot(final WatchedDirectory pWatchedDirectory) {
@@ -200,8 +392,10 @@ public class VirtualRoot implements RelocationObserver {
         watchedDirectories.put(key, pWatchedDirectory);
 
         try {
-            children.computeIfAbsent(directory.getFileSystem(),
-                    this::newDedicatedFileSystem).registerRootDirectory(pWatchedDirectory);
+            final DedicatedFileSystem fs = children.computeIfAbsent(directory.getFileSystem(),
+                    this::newDedicatedFileSystem);
+            restoreSnapshot(fs, pWatchedDirectory);
+            fs.registerRootDirectory(pWatchedDirectory);
             pWatchedDirectory.addObserver(this);
             LOG.info("Added [{}:{}]", key, directory);
         } catch (final IOException | UncheckedIOException e) {
@@ -0,0 +1,121 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import static java.lang.invoke.MethodHandles.publicLookup;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * CRC-32C (Castagnoli). On Java 9 and later, {@code java.util.zip.CRC32C} is used, which is intrinsified with the
+ * CRC32 instructions of the CPU. Because this project targets Java 8, the JDK class is looked up reflectively; if it
+ * is not available, a table driven implementation is used instead.
+ */
+final class Crc32cHash implements StreamingHash {
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[] TABLE = new int[256];
+    private static final MethodHandle NEW_JDK_CRC32C;
+    private static final MethodHandle UPDATE_BUFFER;
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) == 0 ? crc >>> 1 : (crc >>> 1) ^ POLYNOMIAL;
+            }
+            TABLE[i] = crc;
+        }
+
+        MethodHandle newJdkCrc32c = null;
+        MethodHandle updateBuffer = null;
+        try {
+            newJdkCrc32c = publicLookup().findConstructor(Class.forName("java.util.zip.CRC32C"),
+                    methodType(void.class)).asType(methodType(Checksum.class));
+            updateBuffer = publicLookup().findVirtual(Checksum.class, "update",
+                    methodType(void.class, ByteBuffer.class));
+        } catch (final ReflectiveOperationException e) {
+            // Java 8, use table driven implementation
+            newJdkCrc32c = null;
+            updateBuffer = null;
+        }
+        NEW_JDK_CRC32C = newJdkCrc32c;
+        UPDATE_BUFFER = updateBuffer;
+    }
+
+    private final Checksum jdkOrNull;
+    private int crc = ~0;
+    private long length;
+
+    Crc32cHash() {
+        this(true);
+    }
+
+    // Constructor for testing
+    Crc32cHash(final boolean pUseJdk) {
+        jdkOrNull = pUseJdk && NEW_JDK_CRC32C != null ? newJdkCrc32c() : null;
+    }
+
+    private static Checksum newJdkCrc32c() {
+        try {
+            return (Checksum) NEW_JDK_CRC32C.invokeExact();
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    boolean isJdk() {
+        return jdkOrNull != null;
+    }
+
+    @Override
+    public void reset() {
+        length = 0;
+        if (jdkOrNull == null) {
+            crc = ~0;
+        } else {
+            jdkOrNull.reset();
+        }
+    }
+
+    @Override
+    public void update(final ByteBuffer pBuffer) {
+        length += pBuffer.remaining();
+        if (jdkOrNull == null) {
+            int c = crc;
+            while (pBuffer.hasRemaining()) {
+                c = TABLE[(c ^ pBuffer.get()) & 0xff] ^ (c >>> 8);
+            }
+            crc = c;
+        } else {
+            try {
+                UPDATE_BUFFER.invokeExact(jdkOrNull, pBuffer);
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public long getValue() {
+        return jdkOrNull == null ? ~crc & 0xffffffffL : jdkOrNull.getValue();
+    }
+}
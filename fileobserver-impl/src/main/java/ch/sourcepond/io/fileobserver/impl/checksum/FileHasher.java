@@ -0,0 +1,100 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.Thread.currentThread;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Calculates the hash of a file by streaming its content through a direct buffer, so hashing a file does not
+ * allocate any memory proportional to the file size. The buffers are taken from a small pool which is shared
+ * by all threads; hashing threads are often short-lived (cached pools, virtual threads), so per-thread buffers
+ * would hardly ever be reused. If all buffers are in use, hashing waits until one is released.
+ */
+public final class FileHasher {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int MAX_BUFFERS = max(2, getRuntime().availableProcessors());
+    private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(MAX_BUFFERS);
+    private static final AtomicInteger ALLOCATED_BUFFERS = new AtomicInteger();
+
+    private FileHasher() {
+        // Utility class
+    }
+
+    static ByteBuffer acquire() throws InterruptedIOException {
+        ByteBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            if (ALLOCATED_BUFFERS.incrementAndGet() <= MAX_BUFFERS) {
+                return allocateDirect(BUFFER_SIZE);
+            }
+            ALLOCATED_BUFFERS.decrementAndGet();
+            try {
+                buffer = BUFFERS.take();
+            } catch (final InterruptedException e) {
+                currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a buffer");
+            }
+        }
+        return buffer;
+    }
+
+    static void release(final ByteBuffer pBuffer) {
+        pBuffer.clear();
+        BUFFERS.offer(pBuffer);
+    }
+
+    /**
+     * Resets the hash specified and feeds the whole content of the file specified into it.
+     *
+     * @param pFile File to be hashed, must not be {@code null}
+     * @param pHash Hash, must not be {@code null}
+     * @return Hex value of the hash, never {@code null}
+     * @throws IOException Thrown, if the file could not be read
+     */
+    public static String hash(final Path pFile, final StreamingHash pHash) throws IOException {
+        final ByteBuffer buffer = acquire();
+        pHash.reset();
+        try (final FileChannel channel = FileChannel.open(pFile, READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                pHash.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            release(buffer);
+        }
+        return toHex(pHash.getValue());
+    }
+
+    static String toHex(final long pValue) {
+        final String hex = Long.toHexString(pValue);
+        final StringBuilder builder = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            builder.append('0');
+        }
+        return builder.append(hex).toString();
+    }
+}
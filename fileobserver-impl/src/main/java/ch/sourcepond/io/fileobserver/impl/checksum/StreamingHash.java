@@ -0,0 +1,67 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+
+/**
+ * Non-cryptographic hash function which is fed incrementally, see {@link FileHasher}.
+ */
+public interface StreamingHash {
+
+    /**
+     * Resets this hash to its initial state.
+     */
+    void reset();
+
+    /**
+     * Feeds the remaining bytes of the buffer specified into this hash. Afterwards, the buffer has no
+     * remaining bytes.
+     *
+     * @param pBuffer Buffer, must not be {@code null}
+     */
+    void update(ByteBuffer pBuffer);
+
+    /**
+     * @return Hash of all bytes fed since the last reset
+     */
+    long getValue();
+
+    /**
+     * @return Number of bytes fed since the last reset
+     */
+    long getLength();
+
+    /**
+     * Creates a new hash for the algorithm specified.
+     *
+     * @param pAlgorithm Algorithm, must not be {@code null}
+     * @return New hash, never {@code null}
+     * @throws IllegalArgumentException Thrown, if the algorithm is not a built-in one
+     */
+    static StreamingHash create(final ChecksumAlgorithm pAlgorithm) {
+        switch (pAlgorithm) {
+            case CRC32C:
+                return new Crc32cHash();
+            case XXHASH64:
+                return new XxHash64();
+            default:
+                throw new IllegalArgumentException(format("%s is not a built-in algorithm", pAlgorithm));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static java.lang.Long.rotateLeft;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * 64-bit xxHash with seed 0. Input is consumed in stripes of 32 bytes; bytes which do not fill a stripe are
+ * kept until the next update or until the value is requested.
+ */
+final class XxHash64 implements StreamingHash {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+    private final ByteBuffer memory = ByteBuffer.allocate(STRIPE).order(LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    XxHash64() {
+        reset();
+    }
+
+    private static long round(final long pAcc, final long pInput) {
+        return rotateLeft(pAcc + pInput * PRIME2, 31) * PRIME1;
+    }
+
+    private static long mergeRound(final long pAcc, final long pValue) {
+        return (pAcc ^ round(0, pValue)) * PRIME1 + PRIME4;
+    }
+
+    @Override
+    public long getLength() {
+        return total;
+    }
+
+    @Override
+    public void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        total = 0;
+        memory.clear();
+    }
+
+    private void consumeStripe(final ByteBuffer pBuffer) {
+        v1 = round(v1, pBuffer.getLong());
+        v2 = round(v2, pBuffer.getLong());
+        v3 = round(v3, pBuffer.getLong());
+        v4 = round(v4, pBuffer.getLong());
+    }
+
+    @Override
+    public void update(final ByteBuffer pBuffer) {
+        total += pBuffer.remaining();
+        if (memory.position() > 0) {
+            while (memory.hasRemaining() && pBuffer.hasRemaining()) {
+                memory.put(pBuffer.get());
+            }
+            if (memory.hasRemaining()) {
+                return;
+            }
+            memory.flip();
+            consumeStripe(memory);
+            memory.clear();
+        }
+
+        final ByteOrder order = pBuffer.order();
+        pBuffer.order(LITTLE_ENDIAN);
+        try {
+            while (pBuffer.remaining() >= STRIPE) {
+                consumeStripe(pBuffer);
+            }
+        } finally {
+            pBuffer.order(order);
+        }
+        while (pBuffer.hasRemaining()) {
+            memory.put(pBuffer.get());
+        }
+    }
+
+    @Override
+    public long getValue() {
+        long h;
+        if (total >= STRIPE) {
+            h = rotateLeft(v1, 1) + rotateLeft(v2, 7) + rotateLeft(v3, 12) + rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME5;
+        }
+        h += total;
+
+        // Do not change the state of this hash, more bytes could be fed afterwards
+        final ByteBuffer rest = (ByteBuffer) memory.duplicate().flip();
+        rest.order(LITTLE_ENDIAN);
+        while (rest.remaining() >= 8) {
+            h ^= round(0, rest.getLong());
+            h = rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (rest.remaining() >= 4) {
+            h ^= (rest.getInt() & 0xffffffffL) * PRIME1;
+            h = rotateLeft(h, 23) * PRIME2 + PRIME3;
+        }
+        while (rest.hasRemaining()) {
+            h ^= (rest.get() & 0xff) * PRIME5;
+            h = rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+}
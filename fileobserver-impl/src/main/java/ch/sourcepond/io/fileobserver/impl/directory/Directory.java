@@ -13,11 +13,17 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.directory;
 
-import ch.sourcepond.io.checksum.api.Resource;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
 import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
+import ch.sourcepond.io.fileobserver.impl.polling.PollingWatchBackend;
+import ch.sourcepond.io.fileobserver.impl.snapshot.Snapshot;
+import ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry;
+import ch.sourcepond.io.fileobserver.spi.ChangeDetection;
+import ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm;
 import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
 import org.slf4j.Logger;
 
@@ -26,15 +32,22 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static ch.sourcepond.io.checksum.api.Algorithm.SHA256;
+import static ch.sourcepond.io.fileobserver.spi.ChangeDetection.CHECKSUM;
+import static ch.sourcepond.io.fileobserver.spi.ChangeDetection.METADATA;
 import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.readAttributes;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableSet;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -43,9 +56,23 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 public abstract class Directory {
     private static final Logger LOG = getLogger(Directory.class);
-    private final ConcurrentMap<Path, Resource> resources = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, TrackedFile> resources = new ConcurrentHashMap<>();
     private final WatchKey watchKey;
 
+    /**
+     * Relative paths of this directory against the roots of its watched-directories, see
+     * {@link #createKeyPrefixes()}.
+     */
+    private static final class KeyPrefixes {
+        final long version;
+        final Map<WatchedDirectory, Path> prefixes;
+
+        KeyPrefixes(final long pVersion, final Map<WatchedDirectory, Path> pPrefixes) {
+            version = pVersion;
+            prefixes = pPrefixes;
+        }
+    }
+
     Directory(final WatchKey pWatchKey) {
         assert pWatchKey != null : "pWatchKey";
         watchKey = pWatchKey;
@@ -54,13 +81,17 @@ public abstract class Directory {
     /**
      * Iterates over all files contained by this directory and informs for each entry
      * the currently focused listener. Only direct children will be considered,
-     * sub-directories and non-regular files will be ignored.
+     * sub-directories and non-regular files will be ignored. If only changed files are requested,
+     * files which are unchanged since their state has been restored from a snapshot will be ignored too.
      */
-    private void streamDirectoryAndForceInform(final EventDispatcher pDispatcher) {
+    private void streamDirectoryAndForceInform(final EventDispatcher pDispatcher, final boolean pChangedOnly) {
         try (final DirectoryStream<Path> stream = newDirectoryStream(getPath(), Files::isRegularFile)) {
-            stream.forEach(p ->
+            stream.forEach(p -> {
+                if (!pChangedOnly || !isRestored(p)) {
                     createKeys(p).forEach(k ->
-                            pDispatcher.modified(k, p, emptyList())));
+                            pDispatcher.modified(k, p, emptyList()));
+                }
+            });
         } catch (final IOException e) {
             LOG.warn("Exception occurred while trying to inform single listeners!", e);
         }
@@ -104,7 +135,7 @@ public abstract class Directory {
      * @param pFile File to relativize against {@link #getPath()}, must not be {@code null}
      * @return New collection of {@link DispatchKey} objects, never {@code null}
      */
-    private Collection<DispatchKey> createKeys(final Path pFile) {
+    Collection<DispatchKey> createKeys(final Path pFile) {
         final Collection<WatchedDirectory> watchedDirectories = getWatchedDirectories();
         final List<DispatchKey> keys = new ArrayList<>(watchedDirectories.size());
         for (final WatchedDirectory watchedDirectory : watchedDirectories) {
@@ -120,6 +151,47 @@ public abstract class Directory {
         return keys;
     }
 
+    /**
+     * Relativizes this directory against the roots of its watched-directories. The relative path of a direct
+     * child is its file name resolved against these prefixes, so they can be shared by all files of a batch,
+     * see {@link #informIfChanged(EventDispatcher, Map, boolean)}.
+     *
+     * @return New prefixes, never {@code null}
+     */
+    private KeyPrefixes createKeyPrefixes() {
+        // Read the version before collecting, see SubDirectory#getWatchedDirectories
+        final long version = getFactory().getWatchedDirectoriesVersion();
+        final Collection<WatchedDirectory> watchedDirectories = getWatchedDirectories();
+        final Map<WatchedDirectory, Path> prefixes = new LinkedHashMap<>();
+        for (final WatchedDirectory watchedDirectory : watchedDirectories) {
+            prefixes.put(watchedDirectory, relativizeAgainstRoot(watchedDirectory, getPath()));
+        }
+        return new KeyPrefixes(version, prefixes);
+    }
+
+    /**
+     * Same as {@link #createKeys(Path)}, but uses the prefixes specified for relativization. If the
+     * watched-directories have changed since the prefixes were created, they are ignored.
+     */
+    private Collection<DispatchKey> createKeys(final KeyPrefixes pPrefixesOrNull, final Path pFile) {
+        if (pPrefixesOrNull == null || pPrefixesOrNull.version != getFactory().getWatchedDirectoriesVersion()) {
+            return createKeys(pFile);
+        }
+        final Path fileName = pFile.getFileName();
+        final List<DispatchKey> keys = new ArrayList<>(pPrefixesOrNull.prefixes.size());
+        for (final Map.Entry<WatchedDirectory, Path> entry : pPrefixesOrNull.prefixes.entrySet()) {
+            final WatchedDirectory watchedDirectory = entry.getKey();
+            final Path relativePath = entry.getValue().resolve(fileName);
+
+            if (!watchedDirectory.isBlacklisted(relativePath)) {
+                keys.add(getFactory().newKey(watchedDirectory.getKey(), relativePath));
+            } else {
+                LOG.info("{} is blacklisted by {}", relativePath, watchedDirectory);
+            }
+        }
+        return keys;
+    }
+
     /**
      * <p><em>INTERNAL API, only ot be used in class hierarchy</em></p>
      * <p>
@@ -132,6 +204,15 @@ public abstract class Directory {
         return watchKey;
     }
 
+    /**
+     * Returns how changes in this directory are detected.
+     *
+     * @return Watch mode, never {@code null}
+     */
+    public WatchMode getWatchMode() {
+        return PollingWatchBackend.isPolled(watchKey) ? WatchMode.POLLING : WatchMode.NATIVE;
+    }
+
     public abstract boolean isRoot();
 
     public abstract boolean hasKeys();
@@ -230,7 +311,15 @@ public abstract class Directory {
      * considered, sub-directories and non-regular files will be ignored.
      */
     public void forceInform(final EventDispatcher pDispatcher) {
-        getFactory().executeDirectoryWalkerTask(() -> streamDirectoryAndForceInform(pDispatcher));
+        forceInform(pDispatcher, false);
+    }
+
+    /**
+     * Like {@link #forceInform(EventDispatcher)}, but if {@code pChangedOnly} is {@code true}, files which
+     * are unchanged since their state has been restored from a snapshot are skipped.
+     */
+    public void forceInform(final EventDispatcher pDispatcher, final boolean pChangedOnly) {
+        getFactory().executeDirectoryWalkerTask(() -> streamDirectoryAndForceInform(pDispatcher, pChangedOnly));
     }
 
     /**
@@ -279,32 +368,197 @@ public abstract class Directory {
         return getPath().equals(pOther.getPath().getParent());
     }
 
-    public Resource getResource(final Path pFile) {
-        return resources.computeIfAbsent(pFile, f -> getFactory().newResource(SHA256, f));
+    /**
+     * Returns the files for which this directory currently holds a checksum (see
+     * {@link #getChecksum(Path)}). The returned collection is a live view which must not be modified.
+     *
+     * @return Collection of files, never {@code null}
+     */
+    public Collection<Path> getTrackedFiles() {
+        return unmodifiableSet(resources.keySet());
+    }
+
+    private TrackedFile getTrackedFile(final Path pFile) {
+        return resources.computeIfAbsent(pFile, f -> new TrackedFile(() -> newChecksum(f)));
+    }
+
+    private FileChecksum newChecksum(final Path pFile) {
+        final ChecksumAlgorithm algorithm = getChecksumAlgorithm();
+        if (ChecksumAlgorithm.SHA256 == algorithm) {
+            return new ResourceChecksum(getFactory().newResource(SHA256, pFile));
+        }
+        final FastChecksum checksum = new FastChecksum(pFile, algorithm, getFactory()::executeChecksumTask);
+        checksum.initialize();
+        return checksum;
+    }
+
+    private boolean isRestored(final Path pFile) {
+        final TrackedFile trackedFile = resources.get(pFile);
+        return trackedFile != null && trackedFile.isRestored();
+    }
+
+    /**
+     * Adds an entry for every tracked file of this directory to the snapshot specified. The entries are
+     * mapped by the path of the file relative to the watched-directory specified. Files whose attributes or
+     * checksum are not known yet are skipped; they will be checked again when the snapshot is restored.
+     *
+     * @param pWatchedDirectory Watched-directory, must not be {@code null}
+     * @param pSnapshot         Snapshot to fill, must not be {@code null}
+     */
+    public void collectSnapshot(final WatchedDirectory pWatchedDirectory, final Snapshot pSnapshot) {
+        if (getWatchedDirectories().contains(pWatchedDirectory)) {
+            resources.forEach((file, trackedFile) -> {
+                final SnapshotEntry entryOrNull = trackedFile.toSnapshotEntry();
+                if (entryOrNull != null) {
+                    pSnapshot.put(relativizeAgainstRoot(pWatchedDirectory, file).toString(), entryOrNull);
+                }
+            });
+        }
+    }
+
+    /**
+     * Takes the entries of the file specified from the restored snapshots of all watched-directories. If every
+     * watched-directory has a matching entry with the same checksum, the file is unchanged since the
+     * snapshots were taken.
+     *
+     * @param pFile  File, must not be {@code null}
+     * @param pAttrs Current attributes of the file, must not be {@code null}
+     * @return Restored checksum, or {@code null} if the file must be considered as changed
+     */
+    private String takeRestoredChecksum(final Path pFile, final BasicFileAttributes pAttrs) {
+        final Collection<WatchedDirectory> watchedDirectories = getWatchedDirectories();
+        String checksumOrNull = null;
+        boolean unchanged = !watchedDirectories.isEmpty();
+        for (final WatchedDirectory watchedDirectory : watchedDirectories) {
+            final Snapshot snapshotOrNull = getFactory().getRestoredSnapshot(watchedDirectory.getKey());
+            final SnapshotEntry entryOrNull = snapshotOrNull == null ? null :
+                    snapshotOrNull.take(relativizeAgainstRoot(watchedDirectory, pFile).toString());
+            if (entryOrNull == null || !entryOrNull.matches(pAttrs) ||
+                    (checksumOrNull != null && !checksumOrNull.equals(entryOrNull.getChecksum()))) {
+                unchanged = false;
+            } else {
+                checksumOrNull = entryOrNull.getChecksum();
+            }
+            if (snapshotOrNull != null && snapshotOrNull.isEmpty()) {
+                getFactory().discardRestored(watchedDirectory.getKey());
+            }
+        }
+        return unchanged ? checksumOrNull : null;
+    }
+
+    public FileChecksum getChecksum(final Path pFile) {
+        return getTrackedFile(pFile).getChecksum();
+    }
+
+    /**
+     * Determines the checksum algorithm of this directory. If the watched-directories do not agree
+     * on an algorithm, {@link ChecksumAlgorithm#SHA256} is used.
+     *
+     * @return Checksum algorithm, never {@code null}
+     */
+    private ChecksumAlgorithm getChecksumAlgorithm() {
+        ChecksumAlgorithm algorithm = null;
+        for (final WatchedDirectory watchedDirectory : getWatchedDirectories()) {
+            final ChecksumAlgorithm current = watchedDirectory.getChecksumAlgorithm();
+            if (current == null || (algorithm != null && algorithm != current)) {
+                return ChecksumAlgorithm.SHA256;
+            }
+            algorithm = current;
+        }
+        return algorithm == null ? ChecksumAlgorithm.SHA256 : algorithm;
+    }
+
+    /**
+     * Determines the change detection strategy of this directory. The checksum of a modified file
+     * is always calculated if any of the watched-directories requires it.
+     *
+     * @return Change detection strategy, never {@code null}
+     */
+    private ChangeDetection getChangeDetection() {
+        final Collection<WatchedDirectory> watchedDirectories = getWatchedDirectories();
+        if (watchedDirectories.isEmpty()) {
+            return CHECKSUM;
+        }
+        for (final WatchedDirectory watchedDirectory : watchedDirectories) {
+            if (METADATA != watchedDirectory.getChangeDetection()) {
+                return CHECKSUM;
+            }
+        }
+        return METADATA;
+    }
+
+    /**
+     * Reads the attributes of the file specified if the metadata of files in this directory
+     * should be compared before their checksums are calculated (see {@link ChangeDetection#METADATA}), or,
+     * if the state of the files is tracked for snapshots (see {@link DirectoryFactory#isStateTracked()}).
+     *
+     * @param pFile            File, must not be {@code null}
+     * @param pChangeDetection Change detection strategy of this directory, must not be {@code null}
+     * @return Attributes, or {@code null} if not required or not readable
+     */
+    private BasicFileAttributes readAttributesIfRequired(final Path pFile, final ChangeDetection pChangeDetection) {
+        BasicFileAttributes attrsOrNull = null;
+        if (METADATA == pChangeDetection || getFactory().isStateTracked()) {
+            try {
+                attrsOrNull = readAttributes(pFile, BasicFileAttributes.class);
+            } catch (final IOException e) {
+                LOG.debug("Attributes of {} could not be read; checksum will be calculated", pFile, e);
+            }
+        }
+        return attrsOrNull;
     }
 
     private void inform(final EventDispatcher pDispatcher,
                         final Directory pNewRootOrNull,
-                        final Path pFile) {
+                        final Path pFile,
+                        final KeyPrefixes pPrefixesOrNull) {
         // If the modification is requested because a new root-directory has been registered, we
         // need to inform the listeners about supplement keys.
         final Collection<DispatchKey> supplementKeys = pNewRootOrNull == null ?
                 emptyList() : pNewRootOrNull.createKeys(pFile);
 
-        final Collection<DispatchKey> keys = createKeys(pFile);
+        final Collection<DispatchKey> keys = createKeys(pPrefixesOrNull, pFile);
         keys.forEach(k -> pDispatcher.modified(k, pFile, supplementKeys));
     }
 
     public void informCreatedOrInitial(final EventDispatcher pDispatcher,
                                        final Directory pNewRootOrNull,
                                        final Path pFile) {
-        // Important: We need to initialize the resource (and its initial checksum) here.
-        // If not, we won't be able to receive further modification events.
-        getResource(pFile);
-        LOG.debug("Initialized checksum resource for {}", pFile);
+        informCreatedOrInitial(pDispatcher, pNewRootOrNull, pFile, getChangeDetection(), null);
+    }
+
+    private void informCreatedOrInitial(final EventDispatcher pDispatcher,
+                                        final Directory pNewRootOrNull,
+                                        final Path pFile,
+                                        final ChangeDetection pChangeDetection,
+                                        final KeyPrefixes pPrefixesOrNull) {
+        final TrackedFile trackedFile = getTrackedFile(pFile);
+        final BasicFileAttributes attrsOrNull = readAttributesIfRequired(pFile, pChangeDetection);
+        String restoredChecksumOrNull = null;
+        if (attrsOrNull != null) {
+            trackedFile.record(attrsOrNull);
+            restoredChecksumOrNull = takeRestoredChecksum(pFile, attrsOrNull);
+        }
 
-        // Now, inform observers
-        inform(pDispatcher, pNewRootOrNull, pFile);
+        if (restoredChecksumOrNull == null) {
+            // Important: We need to initialize the checksum (and its initial value) here.
+            // If not, we won't be able to receive further modification events.
+            trackedFile.getChecksum();
+            LOG.debug("Initialized checksum for {}", pFile);
+
+            // Now, inform observers. The initial checksum is computed asynchronously and is not awaited,
+            // so the checksum timestamp is not set.
+            inform(pDispatcher, pNewRootOrNull, pFile, pPrefixesOrNull);
+        } else {
+            // The file is unchanged since the snapshot was taken; the checksum resource
+            // will be initialized when the file is modified the next time.
+            trackedFile.restore(restoredChecksumOrNull);
+            LOG.debug("Restored checksum of {} from snapshot", pFile);
+
+            if (!getFactory().isInitialEventsForChangedFilesOnly()) {
+                inform(pDispatcher, pNewRootOrNull, pFile, pPrefixesOrNull);
+            }
+        }
     }
 
     /**
@@ -319,18 +573,86 @@ public abstract class Directory {
                                 final Path pFile,
                                 final boolean pIsCreated) {
         if (pDispatcher.hasListeners()) {
-            if (pIsCreated) {
-                informCreatedOrInitial(pDispatcher, pNewRootOrNull, pFile);
-            } else {
-                getResource(pFile).update(getTimeout(),
-                        update -> {
-                            if (update.hasChanged()) {
-                                LOG.debug("Processing {} because {} has been changed", update, pFile);
-                                inform(pDispatcher, pNewRootOrNull, pFile);
-                            } else {
-                                LOG.debug("Ignored {} because {} has not been changed", update, pFile);
+            informIfChanged(pDispatcher, pNewRootOrNull, pFile, pIsCreated, getChangeDetection(), null);
+        }
+    }
+
+    /**
+     * Same as {@link #informIfChanged(EventDispatcher, Path, boolean)}, but for multiple files of this directory.
+     * The change detection strategy and the relative paths of this directory against its roots are determined
+     * once for the whole batch.
+     *
+     * @param pFiles Files which potentially have changed, must be direct children of this directory, along with
+     *               the timestamps of their changes (see {@link EventTimestamps#runWith(Runnable)})
+     */
+    public void informIfChanged(final EventDispatcher pDispatcher,
+                                final Map<Path, EventTimestamps> pFiles,
+                                final boolean pIsCreated) {
+        if (pDispatcher.hasListeners() && !pFiles.isEmpty()) {
+            final ChangeDetection changeDetection = getChangeDetection();
+            final KeyPrefixes prefixes = createKeyPrefixes();
+            for (final Map.Entry<Path, EventTimestamps> file : pFiles.entrySet()) {
+                try {
+                    file.getValue().runWith(() ->
+                            informIfChanged(pDispatcher, null, file.getKey(), pIsCreated, changeDetection, prefixes));
+                } catch (final RuntimeException e) {
+                    // Do not lose the remaining files of the batch
+                    LOG.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void informIfChanged(final EventDispatcher pDispatcher,
+                                 final Directory pNewRootOrNull,
+                                 final Path pFile,
+                                 final boolean pIsCreated,
+                                 final ChangeDetection pChangeDetection,
+                                 final KeyPrefixes pPrefixesOrNull) {
+        if (pIsCreated) {
+            informCreatedOrInitial(pDispatcher, pNewRootOrNull, pFile, pChangeDetection, pPrefixesOrNull);
+        } else {
+            final TrackedFile trackedFile = getTrackedFile(pFile);
+            final BasicFileAttributes attrsOrNull = readAttributesIfRequired(pFile, pChangeDetection);
+            if (METADATA == pChangeDetection && attrsOrNull != null && trackedFile.isUnchanged(attrsOrNull)) {
+                LOG.debug("Ignored {} because its size, modification time and file-key have not been changed", pFile);
+                return;
+            }
+
+            // The checksum update is performed asynchronously; keep the dispatcher open
+            // until the update has been completed (important for batch delivery).
+            pDispatcher.retain();
+            final Metrics metrics = getFactory().getMetrics();
+            final long start = metrics.startTimer();
+
+            // The callback runs on another thread; capture the timestamps of the current change
+            final EventTimestamps timestamps = EventTimestamps.currentOrNow();
+            try {
+                trackedFile.getChecksum().update(getTimeout(),
+                        (changed, current, hashedBytes) -> {
+                            try {
+                                // Do not read the file size only for the metrics; if the checksum implementation
+                                // does not know the number of bytes, it is taken from the attributes if available.
+                                metrics.checksumUpdated(start, hashedBytes != FileChecksum.UNKNOWN_BYTES ? hashedBytes :
+                                        attrsOrNull == null ? 0L : attrsOrNull.size());
+                                if (attrsOrNull != null) {
+                                    trackedFile.record(attrsOrNull);
+                                }
+                                if (trackedFile.hasChanged(changed, current)) {
+                                    LOG.debug("Processing {} because its checksum changed to {}", pFile, current);
+                                    timestamps.checksumComputed().runWith(() ->
+                                            inform(pDispatcher, pNewRootOrNull, pFile, pPrefixesOrNull));
+                                } else {
+                                    LOG.debug("Ignored {} because its checksum {} has not been changed", pFile, current);
+                                    metrics.checksumUnchanged();
+                                }
+                            } finally {
+                                pDispatcher.release();
                             }
                         });
+            } catch (final RuntimeException e) {
+                pDispatcher.release();
+                throw e;
             }
         }
     }
@@ -19,18 +19,32 @@ import ch.sourcepond.io.checksum.api.ResourcesFactory;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.impl.Config;
 import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
+import ch.sourcepond.io.fileobserver.impl.snapshot.Snapshot;
 import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
 
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.Files.notExists;
 
 /**
  *
  */
 public class DirectoryFactory {
     private final DefaultDispatchKeyFactory fileKeyFactory;
+    private final ConcurrentMap<Object, Snapshot> restoredSnapshots = new ConcurrentHashMap<>();
+    private final AtomicLong watchedDirectoriesVersion = new AtomicLong();
     private volatile Config config;
+    private volatile Metrics metrics = new Metrics();
 
     // Injected by SCR
     private volatile ExecutorService directoryWalkerExecutor;
@@ -47,6 +61,14 @@ public class DirectoryFactory {
         config = pConfig;
     }
 
+    public void setMetrics(final Metrics pMetrics) {
+        metrics = pMetrics;
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
     public void setDirectoryWalkerExecutor(final ExecutorService pDirectoryWalkerExecutor) {
         directoryWalkerExecutor = pDirectoryWalkerExecutor;
     }
@@ -101,10 +123,107 @@ public class DirectoryFactory {
         directoryWalkerExecutor.execute(pTask);
     }
 
+    /**
+     * <p><em>INTERNAL API, only ot be used in class hierarchy</em></p>
+     * <p>
+     * Asynchronously calculates a built-in checksum (see {@link FastChecksum}). Like walking a directory, this
+     * is I/O bound work, so the directory walker executor service is used.
+     *
+     * @param pTask Task to be executed, must not be {@code null}
+     */
+    void executeChecksumTask(final Runnable pTask) {
+        directoryWalkerExecutor.execute(pTask);
+    }
+
+    /**
+     * <p><em>INTERNAL API, only ot be used in class hierarchy</em></p>
+     * <p>
+     * Returns the current version of the directory structure. The version changes whenever a watched-directory
+     * is added to or removed from any directory, or, when a directory is rebased. Directories use it
+     * to detect whether their cached effective watched-directories are still valid.
+     *
+     * @return Current version
+     */
+    long getWatchedDirectoriesVersion() {
+        return watchedDirectoriesVersion.get();
+    }
+
+    /**
+     * <p><em>INTERNAL API, only ot be used in class hierarchy</em></p>
+     * <p>
+     * Invalidates the cached effective watched-directories of all directories, see
+     * {@link #getWatchedDirectoriesVersion()}.
+     */
+    void invalidateWatchedDirectories() {
+        watchedDirectoriesVersion.incrementAndGet();
+    }
+
     long getTimeout() {
         return config.writeDeadlineMillis();
     }
 
+    /**
+     * Checks whether the state of the watched files should be tracked in order to be stored
+     * in snapshots, see {@link Config#stateDirectory()}.
+     *
+     * @return {@code true} if a state directory is configured, {@code false} otherwise
+     */
+    public boolean isStateTracked() {
+        final Config cfg = config;
+        final String stateDirectoryOrNull = cfg == null ? null : cfg.stateDirectory();
+        return stateDirectoryOrNull != null && !stateDirectoryOrNull.isEmpty();
+    }
+
+    boolean isInitialEventsForChangedFilesOnly() {
+        final Config cfg = config;
+        return cfg != null && cfg.initialEventsForChangedFilesOnly();
+    }
+
+    /**
+     * Makes the snapshot specified available for the registration of the watched-directory specified. Entries
+     * of files which do not exist anymore are removed from the snapshot; for each such file a
+     * {@link DispatchKey} is returned, so that listeners can be informed about the discarded files.
+     *
+     * @param pWatchedDirectory Watched-directory, must not be {@code null}
+     * @param pSnapshot         Snapshot loaded for the watched-directory, must not be {@code null}
+     * @return Keys of the files which have been discarded since the snapshot was taken, never {@code null}
+     */
+    public Collection<DispatchKey> restore(final WatchedDirectory pWatchedDirectory, final Snapshot pSnapshot) {
+        final Path directory = pWatchedDirectory.getDirectory();
+        final List<DispatchKey> discarded = new ArrayList<>();
+        for (final Iterator<String> it = pSnapshot.getEntries().keySet().iterator(); it.hasNext(); ) {
+            final String relativePath = it.next();
+            if (notExists(directory.resolve(relativePath))) {
+                pSnapshot.take(relativePath);
+                discarded.add(newKey(pWatchedDirectory.getKey(), directory.getFileSystem().getPath(relativePath)));
+            }
+        }
+        if (!pSnapshot.isEmpty()) {
+            restoredSnapshots.put(pWatchedDirectory.getKey(), pSnapshot);
+        }
+        return discarded;
+    }
+
+    /**
+     * Removes the restored snapshot of the directory-key specified (if any). Afterwards, the
+     * files of the watched-directory will be checked as if no snapshot had been restored.
+     *
+     * @param pDirectoryKey Directory-key, must not be {@code null}
+     */
+    public void discardRestored(final Object pDirectoryKey) {
+        restoredSnapshots.remove(pDirectoryKey);
+    }
+
+    /**
+     * <p><em>INTERNAL API, only ot be used in class hierarchy</em></p>
+     *
+     * @param pDirectoryKey Directory-key, must not be {@code null}
+     * @return Restored snapshot, or {@code null} if no snapshot has been restored for the directory-key specified
+     */
+    Snapshot getRestoredSnapshot(final Object pDirectoryKey) {
+        return restoredSnapshots.get(pDirectoryKey);
+    }
+
     public void shutdown() {
         directoryWalkerExecutor.shutdown();
     }
@@ -0,0 +1,146 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.fileobserver.impl.checksum.FileHasher;
+import ch.sourcepond.io.fileobserver.impl.checksum.StreamingHash;
+import ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executor;
+
+import static java.lang.Math.min;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
+import static java.lang.Thread.sleep;
+import static java.nio.file.Files.readAttributes;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * {@link FileChecksum} which is calculated by a built-in hash function, see {@link StreamingHash}. Updates of the
+ * same file are serialized. Like the checksum service, an update waits until the file has not been modified for
+ * the timeout passed to {@link #update(long, Observer)} before it is hashed, so that a file which is still being
+ * written is not reported part-way through.
+ */
+final class FastChecksum implements FileChecksum {
+    private static final Logger LOG = getLogger(FastChecksum.class);
+    private final Path file;
+    private final ChecksumAlgorithm algorithm;
+    private final Executor executor;
+    private volatile String currentOrNull;
+
+    FastChecksum(final Path pFile, final ChecksumAlgorithm pAlgorithm, final Executor pExecutor) {
+        file = pFile;
+        algorithm = pAlgorithm;
+        executor = pExecutor;
+    }
+
+    private String calculate(final StreamingHash pHash) throws IOException {
+        return FileHasher.hash(file, pHash);
+    }
+
+    /**
+     * Asynchronously calculates the initial checksum, unless an update has been completed meanwhile.
+     */
+    void initialize() {
+        executor.execute(() -> {
+            synchronized (this) {
+                if (currentOrNull == null) {
+                    try {
+                        currentOrNull = calculate(StreamingHash.create(algorithm));
+                    } catch (final IOException e) {
+                        LOG.debug("Initial checksum of {} could not be calculated", file, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until neither size nor last-modification time of the file have been changed for the time specified.
+     *
+     * @param pTimeoutMillis Time in milliseconds the file must not have been modified
+     * @throws IOException          Thrown, if the attributes of the file could not be read
+     * @throws InterruptedException Thrown, if the calling thread has been interrupted while waiting
+     */
+    private void awaitWritten(final long pTimeoutMillis) throws IOException, InterruptedException {
+        if (pTimeoutMillis <= 0L) {
+            return;
+        }
+        BasicFileAttributes attrs = readAttributes(file, BasicFileAttributes.class);
+        for (;;) {
+            final long quietMillis = currentTimeMillis() - attrs.lastModifiedTime().toMillis();
+            if (quietMillis >= pTimeoutMillis) {
+                return;
+            }
+            // A modification time in the future (clock skew) must not extend the wait beyond the timeout
+            sleep(min(pTimeoutMillis, pTimeoutMillis - quietMillis));
+            final BasicFileAttributes current = readAttributes(file, BasicFileAttributes.class);
+            if (current.size() == attrs.size() && current.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+                return;
+            }
+            LOG.debug("{} is still being written, wait {} ms", file, pTimeoutMillis);
+            attrs = current;
+        }
+    }
+
+    private void updateNow(final long pTimeoutMillis, final Observer pObserver) {
+        try {
+            awaitWritten(pTimeoutMillis);
+        } catch (final IOException e) {
+            // Hashing the file will fail too, see below
+            LOG.debug("Attributes of {} could not be read", file, e);
+        } catch (final InterruptedException e) {
+            currentThread().interrupt();
+            pObserver.done(false, currentOrNull, UNKNOWN_BYTES);
+            return;
+        }
+
+        final StreamingHash hash = StreamingHash.create(algorithm);
+        final boolean changed;
+        final String current;
+        synchronized (this) {
+            final String previous = currentOrNull;
+            String calculated;
+            try {
+                calculated = calculate(hash);
+            } catch (final IOException e) {
+                LOG.debug("Checksum of {} could not be calculated", file, e);
+                calculated = null;
+            }
+            if (calculated == null) {
+                changed = false;
+                current = previous;
+            } else {
+                changed = !calculated.equals(previous);
+                current = calculated;
+                currentOrNull = calculated;
+            }
+        }
+        pObserver.done(changed, current, hash.getLength());
+    }
+
+    @Override
+    public void update(final long pTimeoutMillis, final Observer pObserver) {
+        executor.execute(() -> updateNow(pTimeoutMillis, pObserver));
+    }
+
+    @Override
+    public String getCurrentHexOrNull() {
+        return currentOrNull;
+    }
+}
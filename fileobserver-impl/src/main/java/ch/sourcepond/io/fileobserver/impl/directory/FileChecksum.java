@@ -0,0 +1,53 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+/**
+ * Checksum of a tracked file which is used to detect whether its content has actually been changed. It is either
+ * calculated by the checksum service (SHA-256) or by a built-in hash function, see
+ * {@link ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm}.
+ */
+public interface FileChecksum {
+
+    /**
+     * Callback which is informed when an update has been completed.
+     */
+    @FunctionalInterface
+    interface Observer {
+
+        /**
+         * @param pChanged          {@code true} if the checksum differs from the checksum before the update
+         * @param pCurrentHexOrNull Hex value of the current checksum, or {@code null} if none could be calculated
+         * @param pHashedBytes      Number of bytes which have been read to calculate the checksum, or
+         *                          {@link #UNKNOWN_BYTES} if the checksum implementation does not know it
+         */
+        void done(boolean pChanged, String pCurrentHexOrNull, long pHashedBytes);
+    }
+
+    long UNKNOWN_BYTES = -1L;
+
+    /**
+     * Asynchronously recalculates the checksum and informs the observer specified when done.
+     *
+     * @param pTimeoutMillis Maximum time to wait for the file to be written completely, see
+     *                       {@link ch.sourcepond.io.fileobserver.impl.Config#writeDeadlineMillis()}
+     * @param pObserver      Observer, must not be {@code null}
+     */
+    void update(long pTimeoutMillis, Observer pObserver);
+
+    /**
+     * @return Hex value of the current checksum, or {@code null} if none has been calculated yet
+     */
+    String getCurrentHexOrNull();
+}
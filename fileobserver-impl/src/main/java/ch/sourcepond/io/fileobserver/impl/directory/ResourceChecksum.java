@@ -0,0 +1,43 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.checksum.api.Checksum;
+import ch.sourcepond.io.checksum.api.Resource;
+
+/**
+ * {@link FileChecksum} which is calculated by a {@link Resource} of the checksum service.
+ */
+final class ResourceChecksum implements FileChecksum {
+    private final Resource resource;
+
+    ResourceChecksum(final Resource pResource) {
+        resource = pResource;
+    }
+
+    private static String toHex(final Checksum pChecksumOrNull) {
+        return pChecksumOrNull == null ? null : pChecksumOrNull.getHexValue();
+    }
+
+    @Override
+    public void update(final long pTimeoutMillis, final Observer pObserver) {
+        resource.update(pTimeoutMillis, update -> pObserver.done(update.hasChanged(),
+                toHex(update.getCurrent()), UNKNOWN_BYTES));
+    }
+
+    @Override
+    public String getCurrentHexOrNull() {
+        return toHex(resource.getCurrent());
+    }
+}
@@ -65,6 +65,7 @@ public class RootDirectory extends Directory {
     @Override
     public void addWatchedDirectory(final WatchedDirectory pDirectoryKey) {
         watchedDirectores.add(pDirectoryKey);
+        factory.invalidateWatchedDirectories();
     }
 
     /**
@@ -75,6 +76,7 @@ public class RootDirectory extends Directory {
     @Override
     public void remove(final WatchedDirectory pDirectoryKey) {
         watchedDirectores.remove(pDirectoryKey);
+        factory.invalidateWatchedDirectories();
     }
 
     @Override
@@ -109,6 +111,7 @@ public class RootDirectory extends Directory {
 
     @Override
     public Directory rebase(final Directory pBaseDirectory) {
+        factory.invalidateWatchedDirectories();
         return new SubDirectory(pBaseDirectory, getWatchKey(), watchedDirectores);
     }
 
@@ -19,8 +19,10 @@ import java.nio.file.Path;
 import java.nio.file.WatchKey;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -29,6 +31,22 @@ import static java.util.Objects.requireNonNull;
 public class SubDirectory extends Directory {
     private volatile Directory parent;
     private volatile Collection<WatchedDirectory> watchedDirectoriesOrNull;
+    private volatile EffectiveWatchedDirectories effectiveOrNull;
+
+    /**
+     * Immutable union of the watched-directories of this directory and all its parents. It's valid as long as
+     * the version of the directory structure has not been changed (see
+     * {@link DirectoryFactory#getWatchedDirectoriesVersion()}).
+     */
+    private static final class EffectiveWatchedDirectories {
+        final long version;
+        final Collection<WatchedDirectory> watchedDirectories;
+
+        EffectiveWatchedDirectories(final long pVersion, final Collection<WatchedDirectory> pWatchedDirectories) {
+            version = pVersion;
+            watchedDirectories = pWatchedDirectories;
+        }
+    }
 
     SubDirectory(final Directory pParent, final WatchKey pWatchKey) {
         this(pParent, pWatchKey, null);
@@ -65,6 +83,7 @@ public class SubDirectory extends Directory {
             }
         }
         dirs.add(pDirectoryKey);
+        getFactory().invalidateWatchedDirectories();
     }
 
     @Override
@@ -75,6 +94,7 @@ public class SubDirectory extends Directory {
             if (keys.isEmpty()) {
                 watchedDirectoriesOrNull = null;
             }
+            getFactory().invalidateWatchedDirectories();
         }
     }
 
@@ -84,19 +104,32 @@ public class SubDirectory extends Directory {
         return keys != null && keys.contains(pWatchedDirectory);
     }
 
-    @Override
-    Collection<WatchedDirectory> getWatchedDirectories() {
+    private Collection<WatchedDirectory> collectWatchedDirectories() {
         final Collection<WatchedDirectory> dirs;
         Collection<WatchedDirectory> dirsOrNull = watchedDirectoriesOrNull;
         if (dirsOrNull == null) {
             dirs = parent.getWatchedDirectories();
         } else {
-            dirs = new HashSet<>(parent.getWatchedDirectories());
-            dirs.addAll(dirsOrNull);
+            final Set<WatchedDirectory> union = new HashSet<>(parent.getWatchedDirectories());
+            union.addAll(dirsOrNull);
+            dirs = unmodifiableSet(union);
         }
         return dirs;
     }
 
+    @Override
+    Collection<WatchedDirectory> getWatchedDirectories() {
+        // Important: read the version before collecting, so that a concurrent change
+        // causes the collected directories to be re-collected on the next call.
+        final long version = getFactory().getWatchedDirectoriesVersion();
+        EffectiveWatchedDirectories effective = effectiveOrNull;
+        if (effective == null || effective.version != version) {
+            effective = new EffectiveWatchedDirectories(version, collectWatchedDirectories());
+            effectiveOrNull = effective;
+        }
+        return effective.watchedDirectories;
+    }
+
     @Override
     Path relativizeAgainstRoot(final WatchedDirectory pWatchedDirectory, final Path pPath) {
         final Path relativePath;
@@ -123,11 +156,13 @@ public class SubDirectory extends Directory {
     @Override
     public Directory rebase(final Directory pBaseDirectory) {
         parent = pBaseDirectory;
+        getFactory().invalidateWatchedDirectories();
         return this;
     }
 
     @Override
     public Directory toRootDirectory() {
+        getFactory().invalidateWatchedDirectories();
         return new RootDirectory(getFactory(), getWatchKey(), watchedDirectoriesOrNull);
     }
 
@@ -0,0 +1,145 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Holds the {@link FileChecksum} of a file along with the file attributes which have been
+ * recorded when the file was checked for changes the last time. The checksum is created lazily; this
+ * allows to skip the checksum calculation of files whose state has been restored from a snapshot.
+ */
+final class TrackedFile {
+    static final long AMBIGUITY_MILLIS = SnapshotEntry.AMBIGUITY_MILLIS;
+    private final Supplier<FileChecksum> checksumFactory;
+    private volatile FileChecksum checksumOrNull;
+    private volatile Attributes recordedOrNull;
+    private volatile String restoredChecksumOrNull;
+
+    private static final class Attributes {
+        final long size;
+        final long lastModifiedMillis;
+        final Object fileKeyOrNull;
+        final long recordedAtMillis;
+
+        Attributes(final BasicFileAttributes pAttrs, final long pRecordedAtMillis) {
+            size = pAttrs.size();
+            lastModifiedMillis = pAttrs.lastModifiedTime().toMillis();
+            fileKeyOrNull = pAttrs.fileKey();
+            recordedAtMillis = pRecordedAtMillis;
+        }
+    }
+
+    TrackedFile(final Supplier<FileChecksum> pChecksumFactory) {
+        checksumFactory = pChecksumFactory;
+    }
+
+    FileChecksum getChecksum() {
+        FileChecksum checksum = checksumOrNull;
+        if (checksum == null) {
+            synchronized (this) {
+                checksum = checksumOrNull;
+                if (checksum == null) {
+                    checksum = checksumFactory.get();
+                    checksumOrNull = checksum;
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Restores the checksum specified which has been read from a snapshot. Until the next
+     * update (see {@link #hasChanged(boolean, String)}), the file is considered to be unchanged since the snapshot
+     * was taken.
+     *
+     * @param pChecksum Hex value of the checksum, must not be {@code null}
+     */
+    void restore(final String pChecksum) {
+        restoredChecksumOrNull = pChecksum;
+    }
+
+    boolean isRestored() {
+        return restoredChecksumOrNull != null;
+    }
+
+    /**
+     * Determines whether the update specified reports a change. If a checksum has been restored, the
+     * current checksum of the update is compared against it, because the checksum has no knowledge
+     * of the restored state.
+     *
+     * @param pChanged          Whether the update reported a change, see {@link FileChecksum.Observer}
+     * @param pCurrentHexOrNull Current checksum reported by the update, may be {@code null}
+     * @return {@code true} if the file has been changed, {@code false} otherwise
+     */
+    boolean hasChanged(final boolean pChanged, final String pCurrentHexOrNull) {
+        final String restored = restoredChecksumOrNull;
+        if (restored == null) {
+            return pChanged;
+        }
+        restoredChecksumOrNull = null;
+        return pCurrentHexOrNull == null || !restored.equals(pCurrentHexOrNull);
+    }
+
+    /**
+     * Creates a snapshot entry from the recorded attributes and the current checksum.
+     *
+     * @return Entry, or {@code null} if either no attributes have been recorded or no checksum is available
+     */
+    SnapshotEntry toSnapshotEntry() {
+        final Attributes recorded = recordedOrNull;
+        String checksum = restoredChecksumOrNull;
+        if (checksum == null) {
+            final FileChecksum current = checksumOrNull;
+            checksum = current == null ? null : current.getCurrentHexOrNull();
+        }
+        return recorded == null || checksum == null ? null :
+                new SnapshotEntry(recorded.size, recorded.lastModifiedMillis, recorded.recordedAtMillis, checksum);
+    }
+
+    /**
+     * Records the attributes specified. Subsequent calls to {@link #isUnchanged(BasicFileAttributes)} will
+     * compare against them.
+     *
+     * @param pAttrs Current attributes of the file, must not be {@code null}
+     */
+    void record(final BasicFileAttributes pAttrs) {
+        recordedOrNull = new Attributes(pAttrs, currentTimeMillis());
+    }
+
+    /**
+     * Checks whether the attributes specified prove that the file has not been changed since the
+     * attributes have been recorded (see {@link #record(BasicFileAttributes)}). This is the case
+     * when size, last-modification time and file-key are equal, and, the file had not been modified
+     * within {@link #AMBIGUITY_MILLIS} before the attributes were recorded. Otherwise, a subsequent write could
+     * have left the modification time untouched.
+     *
+     * @param pAttrs Current attributes of the file, must not be {@code null}
+     * @return {@code true} if the file is unchanged for sure, {@code false} if its checksum needs to be checked
+     */
+    boolean isUnchanged(final BasicFileAttributes pAttrs) {
+        final Attributes recorded = recordedOrNull;
+        return recorded != null &&
+                recorded.recordedAtMillis - recorded.lastModifiedMillis >= AMBIGUITY_MILLIS &&
+                recorded.size == pAttrs.size() &&
+                recorded.lastModifiedMillis == pAttrs.lastModifiedTime().toMillis() &&
+                Objects.equals(recorded.fileKeyOrNull, pAttrs.fileKey());
+    }
+}
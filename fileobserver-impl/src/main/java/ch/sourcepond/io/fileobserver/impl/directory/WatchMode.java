@@ -0,0 +1,32 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+/**
+ * Describes how changes in a directory are detected, see {@link Directory#getWatchMode()}.
+ */
+public enum WatchMode {
+
+    /**
+     * The directory is registered with a watch service which is notified about changes, usually the native
+     * watch service of the file system.
+     */
+    NATIVE,
+
+    /**
+     * The directory is polled in intervals, because its file store is configured to be polled, or, because no
+     * native watch could be obtained for it.
+     */
+    POLLING
+}
@@ -27,9 +27,19 @@ final class DefaultDispatchKey implements DispatchKey {
     private final Object directoryKey;
     private final Path relativePath;
 
+    // Keys are used as map keys by the listeners; calculate the hash-code only once
+    private final int hash;
+
     public DefaultDispatchKey(final Object pDirectoryKey, final Path pRelativePath) {
         directoryKey = pDirectoryKey;
         relativePath = pRelativePath;
+
+        hash = hash(pDirectoryKey, pRelativePath);
+    }
+
+    // Same as Objects.hash(directoryKey, relativePath) without allocating an array
+    static int hash(final Object pDirectoryKey, final Path pRelativePath) {
+        return 31 * (31 + Objects.hashCode(pDirectoryKey)) + Objects.hashCode(pRelativePath);
     }
 
     @Override
@@ -51,13 +61,14 @@ final class DefaultDispatchKey implements DispatchKey {
             return false;
         }
         final DefaultDispatchKey other = (DefaultDispatchKey) o;
-        return Objects.equals(directoryKey, other.directoryKey) &&
+        return hash == other.hash &&
+                Objects.equals(directoryKey, other.directoryKey) &&
                 Objects.equals(relativePath, other.relativePath);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(directoryKey, relativePath);
+        return hash;
     }
 
     @Override
@@ -0,0 +1,103 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.dispatch;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * <p>Immutable set of monotonic timestamps (see {@link System#nanoTime()}) which records when a change has passed
+ * the stages between the watch service and the listeners, see
+ * {@link ch.sourcepond.io.fileobserver.api.PathChangeEvent#getReceivedNanos()}.</p>
+ *
+ * <p>The timestamps travel along the same call chain as the change itself. Instead of adding them as
+ * parameter to every dispatcher method, they are bound to the current thread for the duration of a stage
+ * (see {@link #runWith(Runnable)}). Stages which hand over work to another thread must capture the current
+ * timestamps (see {@link #currentOrNow()}) and bind them again on the other thread.</p>
+ */
+public final class EventTimestamps {
+    private static final ThreadLocal<EventTimestamps> CURRENT = new ThreadLocal<>();
+    private final long receivedNanos;
+    private final long debouncedNanos;
+    private final long checksumNanos;
+
+    /**
+     * @param pReceivedNanos  When the first raw watch event has been received
+     * @param pDebouncedNanos When the dispatch delay has expired
+     */
+    public EventTimestamps(final long pReceivedNanos, final long pDebouncedNanos) {
+        this(pReceivedNanos, pDebouncedNanos, pDebouncedNanos);
+    }
+
+    private EventTimestamps(final long pReceivedNanos, final long pDebouncedNanos, final long pChecksumNanos) {
+        receivedNanos = pReceivedNanos;
+        debouncedNanos = pDebouncedNanos;
+        checksumNanos = pChecksumNanos;
+    }
+
+    /**
+     * Returns the timestamps bound to the current thread. If no timestamps are bound, the change has not been
+     * caused by a watch event (for instance, when a newly registered listener is informed about existing files).
+     * In this case, new timestamps are created whose stages all have passed right now.
+     *
+     * @return Timestamps, never {@code null}
+     */
+    public static EventTimestamps currentOrNow() {
+        final EventTimestamps current = CURRENT.get();
+        if (current == null) {
+            final long now = nanoTime();
+            return new EventTimestamps(now, now);
+        }
+        return current;
+    }
+
+    /**
+     * Creates a copy of this object where the checksum has been computed right now.
+     *
+     * @return New timestamps, never {@code null}
+     */
+    public EventTimestamps checksumComputed() {
+        return new EventTimestamps(receivedNanos, debouncedNanos, nanoTime());
+    }
+
+    /**
+     * Binds this object to the current thread while the stage specified is running.
+     *
+     * @param pStage Stage to run, must not be {@code null}
+     */
+    public void runWith(final Runnable pStage) {
+        final EventTimestamps previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            pStage.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public long getDebouncedNanos() {
+        return debouncedNanos;
+    }
+
+    public long getChecksumNanos() {
+        return checksumNanos;
+    }
+}
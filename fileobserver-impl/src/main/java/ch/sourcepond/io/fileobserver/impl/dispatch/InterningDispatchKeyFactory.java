@@ -0,0 +1,154 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.dispatch;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Key factory which returns the same {@link DispatchKey} instance for equal directory-key/relative-path
+ * combinations as long as the instance is referenced somewhere. This way, repeated changes on the same file are
+ * delivered with the same key instance, and key comparisons in listener-side maps mostly succeed on identity.
+ * Canonical keys are referenced weakly; keys which are not used anymore are removed from the table
+ * when they have been garbage collected. Existing keys are looked up with a reusable per-thread probe, so
+ * no objects are allocated when the key is already known.
+ */
+public class InterningDispatchKeyFactory extends DefaultDispatchKeyFactory {
+    private static final ThreadLocal<Probe> PROBES = ThreadLocal.withInitial(Probe::new);
+    private final ReferenceQueue<DefaultDispatchKey> collectedKeys = new ReferenceQueue<>();
+    private final ConcurrentMap<Object, KeyReference> canonicalKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Mutable lookup key which is equal to every {@link KeyReference} whose key has the same
+     * directory-key and relative path.
+     */
+    private static final class Probe {
+        private Object directoryKey;
+        private Path relativePath;
+        private int hash;
+
+        Probe set(final Object pDirectoryKey, final Path pRelativePath) {
+            directoryKey = pDirectoryKey;
+            relativePath = pRelativePath;
+            hash = DefaultDispatchKey.hash(pDirectoryKey, pRelativePath);
+            return this;
+        }
+
+        void clear() {
+            directoryKey = null;
+            relativePath = null;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof KeyReference && ((KeyReference) o).refersTo(directoryKey, relativePath);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class KeyReference extends WeakReference<DefaultDispatchKey> {
+        private final int hash;
+
+        KeyReference(final DefaultDispatchKey pKey, final ReferenceQueue<DefaultDispatchKey> pQueue) {
+            super(pKey, pQueue);
+            hash = pKey.hashCode();
+        }
+
+        boolean refersTo(final Object pDirectoryKey, final Path pRelativePath) {
+            final DefaultDispatchKey key = get();
+            return key != null &&
+                    Objects.equals(key.getDirectoryKey(), pDirectoryKey) &&
+                    Objects.equals(key.getRelativePath(), pRelativePath);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof Probe) {
+                return o.equals(this);
+            }
+            if (!(o instanceof KeyReference)) {
+                return false;
+            }
+            final DefaultDispatchKey key = get();
+            return key != null && key.equals(((KeyReference) o).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private void removeCollectedKeys() {
+        for (Reference<? extends DefaultDispatchKey> ref = collectedKeys.poll(); ref != null; ref = collectedKeys.poll()) {
+            canonicalKeys.remove(ref, ref);
+        }
+    }
+
+    @Override
+    public DispatchKey newKey(final Object pKey, final Path pRelativePath) {
+        removeCollectedKeys();
+        final Probe probe = PROBES.get().set(pKey, pRelativePath);
+        final KeyReference knownRef;
+        try {
+            knownRef = canonicalKeys.get(probe);
+        } finally {
+            // Do not keep the directory-key reachable through the thread-local
+            probe.clear();
+        }
+        final DefaultDispatchKey known = knownRef == null ? null : knownRef.get();
+        if (known != null) {
+            return known;
+        }
+
+        final DefaultDispatchKey candidate = new DefaultDispatchKey(pKey, pRelativePath);
+        final KeyReference candidateRef = new KeyReference(candidate, collectedKeys);
+        DefaultDispatchKey canonical = null;
+        while (canonical == null) {
+            final KeyReference existingRef = canonicalKeys.putIfAbsent(candidateRef, candidateRef);
+            if (existingRef == null) {
+                canonical = candidate;
+            } else {
+                canonical = existingRef.get();
+
+                // The existing key has been collected meanwhile; remove it and try again
+                if (canonical == null) {
+                    canonicalKeys.remove(existingRef, existingRef);
+                }
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return Number of canonical keys currently held, including keys which have been collected but not removed yet
+     */
+    int size() {
+        return canonicalKeys.size();
+    }
+}
@@ -13,6 +13,7 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.fs;
 
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.impl.Config;
 import ch.sourcepond.io.fileobserver.impl.VirtualRoot;
@@ -21,13 +22,14 @@ import ch.sourcepond.io.fileobserver.impl.directory.DirectoryFactory;
 import ch.sourcepond.io.fileobserver.impl.listener.DiffEventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
+import ch.sourcepond.io.fileobserver.impl.snapshot.Snapshot;
 import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
 import org.slf4j.Logger;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Collection;
 
 import static java.lang.String.format;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -37,7 +39,7 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 public class DedicatedFileSystem implements Closeable {
     private static final Logger LOG = getLogger(DedicatedFileSystem.class);
-    private final ConcurrentMap<Path, Directory> dirs;
+    private final DirectoryIndex dirs;
     private final FsEventDispatcher dispatcher;
     private final DirectoryFactory directoryFactory;
     private final WatchServiceWrapper wrapper;
@@ -53,7 +55,7 @@ public class DedicatedFileSystem implements Closeable {
                         final FsEventDispatcher pDispatcher,
                         final VirtualRoot pRoot,
                         final DirectoryRegistrationWalker pWalker,
-                        final ConcurrentMap<Path, Directory> pDirs) {
+                        final DirectoryIndex pDirs) {
         directoryFactory = pDirectoryFactory;
         wrapper = pWrapper;
         rebase = pRebase;
@@ -66,6 +68,7 @@ public class DedicatedFileSystem implements Closeable {
 
     public void setConfig(final Config pConfig) {
         dispatcher.setConfig(pConfig);
+        wrapper.setConfig(pConfig);
     }
 
     /**
@@ -82,6 +85,38 @@ public class DedicatedFileSystem implements Closeable {
         dirs.values().forEach(d -> d.forceInform(pDispatcher));
     }
 
+    /**
+     * Like {@link #forceInform(EventDispatcher)}, but skips files which are unchanged since their state
+     * has been restored from a snapshot (see {@link #restore(WatchedDirectory, Snapshot)}).
+     */
+    public void forceInformChanged(final EventDispatcher pDispatcher) {
+        dirs.values().forEach(d -> d.forceInform(pDispatcher, true));
+    }
+
+    /**
+     * Makes the snapshot specified available for the registration of the watched-directory specified. Must be
+     * called before {@link #registerRootDirectory(WatchedDirectory)}.
+     *
+     * @param pWatchedDirectory Watched-directory, must not be {@code null}
+     * @param pSnapshot         Snapshot, must not be {@code null}
+     * @return Keys of the files which have been discarded since the snapshot was taken, never {@code null}
+     */
+    public Collection<DispatchKey> restore(final WatchedDirectory pWatchedDirectory, final Snapshot pSnapshot) {
+        return directoryFactory.restore(pWatchedDirectory, pSnapshot);
+    }
+
+    /**
+     * Creates a snapshot of the current state of all files of the watched-directory specified.
+     *
+     * @param pWatchedDirectory Watched-directory, must not be {@code null}
+     * @return New snapshot, never {@code null}
+     */
+    public Snapshot takeSnapshot(final WatchedDirectory pWatchedDirectory) {
+        final Snapshot snapshot = new Snapshot();
+        dirs.values().forEach(d -> d.collectSnapshot(pWatchedDirectory, snapshot));
+        return snapshot;
+    }
+
     /**
      * This method is <em>not</em> thread-safe and must be synchronized externally.
      *
@@ -127,6 +162,7 @@ public class DedicatedFileSystem implements Closeable {
     public void unregisterRootDirectory(
             final Path pToBeUnregistered,
             final WatchedDirectory pWatchedDirectory) {
+        directoryFactory.discardRestored(pWatchedDirectory.getKey());
         unregisterRootDirectory(manager.getDefaultDispatcher(), pToBeUnregistered, pWatchedDirectory);
     }
 
@@ -140,7 +176,7 @@ public class DedicatedFileSystem implements Closeable {
             LOG.warn(format("Directory %s is unknown; nothing unregistered", pWatchedDirectory.getDirectory()));
         } else {
             // Remove the directory-key of the watched directory from the key list
-            dir.removeWatchedDirectory(pDispatcher, pWatchedDirectory, dirs.values());
+            dir.removeWatchedDirectory(pDispatcher, pWatchedDirectory, dirs.subtree(pToBeUnregistered));
 
             // If all watched-directories which referenced the directory have been de-registered,
             // it's time to clean-up.
@@ -150,6 +186,16 @@ public class DedicatedFileSystem implements Closeable {
         }
     }
 
+    /**
+     * Returns the number of files on this file system whose events are waiting to be dispatched. This
+     * is bounded by {@link Config#maxPendingEvents()} if configured.
+     *
+     * @return Number of pending files, zero or positive
+     */
+    public int getPendingEvents() {
+        return dispatcher.getPendingEvents();
+    }
+
     public Directory getDirectory(final Path pPath) {
         return dirs.get(pPath);
     }
@@ -182,6 +228,7 @@ public class DedicatedFileSystem implements Closeable {
         try {
             dispatcher.close();
         } finally {
+            walker.close();
             dirs.clear();
             root.removeFileSystem(this);
         }
@@ -15,16 +15,19 @@ package ch.sourcepond.io.fileobserver.impl.fs;
 
 import ch.sourcepond.io.checksum.api.ResourcesFactory;
 import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.SharedScheduler;
 import ch.sourcepond.io.fileobserver.impl.VirtualRoot;
-import ch.sourcepond.io.fileobserver.impl.directory.Directory;
 import ch.sourcepond.io.fileobserver.impl.directory.DirectoryFactory;
 import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
+import ch.sourcepond.io.fileobserver.impl.polling.PollingWatchBackend;
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
 
 import java.io.IOException;
 import java.nio.file.FileSystem;
-import java.nio.file.Path;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -33,7 +36,14 @@ import java.util.concurrent.ExecutorService;
 public class DedicatedFileSystemFactory {
     private final DirectoryFactory directoryFactory;
     private final ListenerManager manager;
+    private final List<WatchBackend> watchBackends = new CopyOnWriteArrayList<>();
+    private final PollingWatchBackend pollingBackend = new PollingWatchBackend();
     private volatile Config config;
+    private volatile Metrics metrics = new Metrics();
+    private volatile SharedScheduler scheduler = new SharedScheduler();
+
+    // Guarded by this
+    private ReceiverMultiplexer multiplexerOrNull;
 
     // Injected by SCR
     private volatile ExecutorService directoryWalkerExecutor;
@@ -55,12 +65,28 @@ public class DedicatedFileSystemFactory {
         directoryFactory = pDirectoryFactory;
         manager = pDispatcher;
         directoryWalkerExecutor = pDirectoryWalkerExecutor;
+        dispatcherExecutor = pDirectoryWalkerExecutor;
     }
 
     public void setResourcesFactory(final ResourcesFactory pResourcesFactory) {
         directoryFactory.setResourcesFactory(pResourcesFactory);
     }
 
+    public void setMetrics(final Metrics pMetrics) {
+        directoryFactory.setMetrics(pMetrics);
+        metrics = pMetrics;
+    }
+
+    /**
+     * Sets the scheduler whose timer threads are shared by all file systems opened afterwards.
+     *
+     * @param pScheduler Scheduler, must not be {@code null}
+     */
+    public void setScheduler(final SharedScheduler pScheduler) {
+        scheduler = pScheduler;
+        pollingBackend.setScheduler(pScheduler);
+    }
+
     public void setExecutors(final ExecutorService pDirectoryWalkerExecutor,
                              final ExecutorService pDispatcherExecutor) {
         directoryFactory.setDirectoryWalkerExecutor(pDirectoryWalkerExecutor);
@@ -68,25 +94,75 @@ public class DedicatedFileSystemFactory {
         dispatcherExecutor = pDispatcherExecutor;
     }
 
+    /**
+     * Adds a backend which is asked whether it should watch the directories of file systems which
+     * are opened afterwards, see {@link WatchBackend}.
+     *
+     * @param pBackend Backend, must not be {@code null}
+     */
+    public void addWatchBackend(final WatchBackend pBackend) {
+        watchBackends.add(pBackend);
+    }
+
+    public void removeWatchBackend(final WatchBackend pBackend) {
+        watchBackends.remove(pBackend);
+    }
+
     public void shutdown() {
         directoryFactory.shutdown();
         dispatcherExecutor.shutdown();
+        pollingBackend.shutdown();
+        synchronized (this) {
+            if (multiplexerOrNull != null) {
+                multiplexerOrNull.close();
+                multiplexerOrNull = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the multiplexer which receives the watch events of all file systems, see
+     * {@link Config#receiverThreads()}.
+     *
+     * @return Multiplexer, or {@code null} if every file system should have a dedicated receiver thread
+     */
+    private synchronized ReceiverMultiplexer getMultiplexer() {
+        final Config cfg = config;
+        final int threads = cfg == null ? 0 : cfg.receiverThreads();
+        if (threads > 0 && multiplexerOrNull == null) {
+            multiplexerOrNull = new ReceiverMultiplexer(threads);
+            multiplexerOrNull.start();
+        }
+        return multiplexerOrNull;
+    }
+
+    private WatchServiceWrapper newWrapper(final FileSystem pFs, final DirectoryIndex pDirs) throws IOException {
+        final List<WatchBackend> backends = new ArrayList<>(watchBackends);
+        if (pollingBackend.isConfigured()) {
+            backends.add(pollingBackend);
+        }
+        return new WatchServiceWrapper(pFs, backends, pollingBackend, pDirs);
     }
 
     public DedicatedFileSystem openFileSystem(final VirtualRoot pVirtualRoot, final FileSystem pFs) throws IOException {
-        final ConcurrentMap<Path, Directory> dirs = new ConcurrentHashMap<>();
-        final WatchServiceWrapper wrapper = new WatchServiceWrapper(pFs);
+        final DirectoryIndex dirs = new DirectoryIndex();
+        final WatchServiceWrapper wrapper = newWrapper(pFs, dirs);
         final DirectoryRegistrationWalker walker = new DirectoryRegistrationWalker(
                 wrapper,
                 directoryFactory,
                 directoryWalkerExecutor,
-                dirs);
+                dirs,
+                config == null ? 1 : config.directoryWalkerParallelism());
         final FsEventDispatcher dispatcher = new FsEventDispatcher(
                 dirs,
                 walker,
                 wrapper,
-                manager
+                manager,
+                dispatcherExecutor,
+                scheduler,
+                getMultiplexer()
         );
+        dispatcher.setMetrics(metrics);
         final DedicatedFileSystem fs = new DedicatedFileSystem(
                 directoryFactory,
                 wrapper,
@@ -104,5 +180,6 @@ public class DedicatedFileSystemFactory {
     public void setConfig(final Config pConfig) {
         config = pConfig;
         directoryFactory.setConfig(pConfig);
+        pollingBackend.setConfig(pConfig);
     }
 }
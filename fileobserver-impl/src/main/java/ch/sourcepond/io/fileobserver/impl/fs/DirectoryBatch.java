@@ -0,0 +1,115 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gathers the pending changes of all files within one directory, so that a single timer per directory (instead
+ * of one per file) expires the debounce delay. The events of each file are collapsed by a {@link WatchEventState}.
+ * Files are kept in the order of their first event and drained once their own delay has expired (see
+ * {@link #drainExpired(long)}); as soon as the last file has been drained, the batch does not accept further events.
+ *
+ * <p>The counter specified on construction is incremented for every file added; the caller of
+ * {@link #drainExpired(long)} is responsible for decrementing it by the number of drained files.</p>
+ */
+final class DirectoryBatch {
+    static final int ADDED = 1;
+    static final int MERGED = 0;
+    static final int DRAINED = -1;
+    private final AtomicInteger pending;
+
+    // Guarded by this; null as soon as drained. States are created while holding the monitor, so
+    // the insertion order is also the order of their received timestamps.
+    private Map<Path, WatchEventState> statesOrNull = new LinkedHashMap<>();
+
+    DirectoryBatch(final AtomicInteger pPending) {
+        pending = pPending;
+    }
+
+    /**
+     * Collapses the event kind specified into the state of the file specified.
+     *
+     * @param pFile File, must not be {@code null}
+     * @param pKind Event kind, must be one of {@code ENTRY_CREATE}, {@code ENTRY_MODIFY} or {@code ENTRY_DELETE}.
+     * @return {@link #ADDED} if the file was not pending yet, {@link #MERGED} if the event has been collapsed into
+     * the pending state of the file, or {@link #DRAINED} if this batch has already been drained and a new batch
+     * needs to be created by the caller.
+     */
+    synchronized int push(final Path pFile, final WatchEvent.Kind<?> pKind) {
+        if (statesOrNull == null) {
+            return DRAINED;
+        }
+        WatchEventState state = statesOrNull.get(pFile);
+        final int result;
+        if (state == null) {
+            state = new WatchEventState();
+            statesOrNull.put(pFile, state);
+            pending.incrementAndGet();
+            result = ADDED;
+        } else {
+            result = MERGED;
+        }
+        state.push(pKind);
+        return result;
+    }
+
+    synchronized boolean contains(final Path pFile) {
+        return statesOrNull != null && statesOrNull.containsKey(pFile);
+    }
+
+    /**
+     * Removes and returns the states of all files whose first event has been received at or before the
+     * timestamp specified. Because files are kept in arrival order, only the drained files and the first
+     * remaining file are visited. If no files remain, this batch is marked as drained and any subsequent
+     * call to {@link #push(Path, WatchEvent.Kind)} will be rejected.
+     *
+     * @param pExpiredNanos Value of {@link System#nanoTime()}; files received at or before are drained
+     * @return Drained files and their states in arrival order, never {@code null}
+     */
+    synchronized Map<Path, WatchEventState> drainExpired(final long pExpiredNanos) {
+        final Map<Path, WatchEventState> expired = new LinkedHashMap<>();
+        if (statesOrNull != null) {
+            for (final Iterator<Map.Entry<Path, WatchEventState>> it = statesOrNull.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<Path, WatchEventState> entry = it.next();
+                if (entry.getValue().getReceivedNanos() - pExpiredNanos > 0) {
+                    break;
+                }
+                expired.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+            if (statesOrNull.isEmpty()) {
+                statesOrNull = null;
+            }
+        }
+        return expired;
+    }
+
+    synchronized boolean isDrained() {
+        return statesOrNull == null;
+    }
+
+    /**
+     * @return Value of {@link System#nanoTime()} when the first event of the oldest pending file has been
+     * received, or the value specified if this batch has been drained
+     */
+    synchronized long getOldestReceivedNanos(final long pDefault) {
+        return statesOrNull == null ? pDefault : statesOrNull.values().iterator().next().getReceivedNanos();
+    }
+}
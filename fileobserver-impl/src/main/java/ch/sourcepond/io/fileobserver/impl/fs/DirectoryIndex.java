@@ -0,0 +1,266 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * <p>Index of the registered {@link Directory} objects of a file system. Internally, the paths are organized
+ * as a trie where the children of a node are the paths whose parent (see {@link Path#getParent()}) is the path
+ * of the node. This means that looking up, removing or rebasing a sub-tree costs proportionally to the
+ * size of the sub-tree, regardless of how many directories are registered in total.</p>
+ *
+ * <p>Nodes are additionally indexed by their path, so a single directory can be looked up in constant
+ * time. Lookups are lock-free; modifications are synchronized on the index.</p>
+ */
+final class DirectoryIndex {
+    // Must be a power of two
+    private static final int CREATION_LOCKS = 64;
+    private final ConcurrentMap<Path, Node> nodes = new ConcurrentHashMap<>();
+    private final Object[] creationLocks = new Object[CREATION_LOCKS];
+
+    private static final class Node {
+        final Path path;
+        final Node parentOrNull;
+        final ConcurrentMap<Path, Node> children = new ConcurrentHashMap<>();
+
+        // A node without directory is an intermediate node which has registered descendants
+        volatile Directory directoryOrNull;
+
+        Node(final Path pPath, final Node pParentOrNull) {
+            path = pPath;
+            parentOrNull = pParentOrNull;
+        }
+    }
+
+    DirectoryIndex() {
+        for (int i = 0; i < CREATION_LOCKS; i++) {
+            creationLocks[i] = new Object();
+        }
+    }
+
+    private Object creationLockFor(final Path pPath) {
+        final int hash = pPath.hashCode();
+        return creationLocks[(hash ^ (hash >>> 16)) & (CREATION_LOCKS - 1)];
+    }
+
+    // Guarded by this
+    private Node nodeFor(final Path pPath) {
+        Node node = nodes.get(pPath);
+        if (node == null) {
+            final Path parentOrNull = pPath.getParent();
+            final Node parentNodeOrNull = parentOrNull == null ? null : nodeFor(parentOrNull);
+            node = new Node(pPath, parentNodeOrNull);
+            if (parentNodeOrNull != null) {
+                parentNodeOrNull.children.put(pPath, node);
+            }
+            nodes.put(pPath, node);
+        }
+        return node;
+    }
+
+    // Guarded by this
+    private void prune(final Node pNode) {
+        Node node = pNode;
+        while (node != null && node.directoryOrNull == null && node.children.isEmpty()) {
+            nodes.remove(node.path);
+            if (node.parentOrNull != null) {
+                node.parentOrNull.children.remove(node.path);
+            }
+            node = node.parentOrNull;
+        }
+    }
+
+    Directory get(final Path pPath) {
+        final Node node = nodes.get(pPath);
+        return node == null ? null : node.directoryOrNull;
+    }
+
+    boolean containsKey(final Path pPath) {
+        return get(pPath) != null;
+    }
+
+    synchronized Directory put(final Path pPath, final Directory pDirectory) {
+        final Node node = nodeFor(pPath);
+        final Directory previous = node.directoryOrNull;
+        node.directoryOrNull = pDirectory;
+        return previous;
+    }
+
+    /**
+     * Returns the directory registered for the path specified. If no such directory exists, the function specified
+     * is called to create and register it. The function may have side effects (like registering a watch-key), so
+     * it is called at most once per path: concurrent callers for the same path wait on a per-path lock and
+     * receive the directory created by the first caller. Callers for other paths are not blocked, except
+     * by paths which happen to share the same lock stripe.
+     *
+     * @param pPath    Path, must not be {@code null}
+     * @param pFactory Function to create the directory, must not be {@code null}
+     * @return Registered directory, never {@code null}
+     */
+    Directory computeIfAbsent(final Path pPath, final Function<Path, Directory> pFactory) {
+        Directory directory = get(pPath);
+        if (directory == null) {
+            synchronized (creationLockFor(pPath)) {
+                directory = get(pPath);
+                if (directory == null) {
+                    // The factory must not run while holding the index lock; other paths are
+                    // registered and removed concurrently.
+                    directory = pFactory.apply(pPath);
+                    synchronized (this) {
+                        nodeFor(pPath).directoryOrNull = directory;
+                    }
+                }
+            }
+        }
+        return directory;
+    }
+
+    synchronized Directory replace(final Path pPath, final Directory pDirectory) {
+        final Node node = nodes.get(pPath);
+        Directory previous = null;
+        if (node != null && node.directoryOrNull != null) {
+            previous = node.directoryOrNull;
+            node.directoryOrNull = pDirectory;
+        }
+        return previous;
+    }
+
+    synchronized Directory remove(final Path pPath) {
+        final Node node = nodes.get(pPath);
+        Directory previous = null;
+        if (node != null) {
+            previous = node.directoryOrNull;
+            node.directoryOrNull = null;
+            prune(node);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the directory registered for the path specified and all directories registered for paths
+     * underneath it. If no directory is registered for the path specified, nothing happens.
+     *
+     * @param pPath Path, must not be {@code null}
+     * @return Removed directories, parents before their children; empty if nothing was removed
+     */
+    synchronized Collection<Directory> removeSubtree(final Path pPath) {
+        final Node node = nodes.get(pPath);
+        if (node == null || node.directoryOrNull == null) {
+            return emptyList();
+        }
+        final List<Directory> removed = new ArrayList<>();
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            final Node next = stack.pop();
+            nodes.remove(next.path);
+            if (next.directoryOrNull != null) {
+                removed.add(next.directoryOrNull);
+                next.directoryOrNull = null;
+            }
+            next.children.values().forEach(stack::push);
+        }
+        node.children.clear();
+        if (node.parentOrNull != null) {
+            node.parentOrNull.children.remove(node.path);
+            prune(node.parentOrNull);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the directory registered for the path specified and all directories registered for paths
+     * underneath it.
+     *
+     * @param pPath Path, must not be {@code null}
+     * @return New collection of directories, parents before their children, never {@code null}
+     */
+    Collection<Directory> subtree(final Path pPath) {
+        final Node node = nodes.get(pPath);
+        if (node == null) {
+            return emptyList();
+        }
+        final List<Directory> directories = new ArrayList<>();
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            final Node next = stack.pop();
+            final Directory directory = next.directoryOrNull;
+            if (directory != null) {
+                directories.add(directory);
+            }
+            next.children.values().forEach(stack::push);
+        }
+        return directories;
+    }
+
+    /**
+     * Returns the paths of the registered directories whose parent is the path specified.
+     *
+     * @param pPath Parent path, must not be {@code null}
+     * @return New collection of paths, never {@code null}
+     */
+    Collection<Path> directChildren(final Path pPath) {
+        final Node node = nodes.get(pPath);
+        if (node == null) {
+            return emptyList();
+        }
+        final List<Path> children = new ArrayList<>(node.children.size());
+        node.children.values().forEach(child -> {
+            if (child.directoryOrNull != null) {
+                children.add(child.path);
+            }
+        });
+        return children;
+    }
+
+    /**
+     * @return New collection containing all registered directories, never {@code null}
+     */
+    Collection<Directory> values() {
+        final List<Directory> directories = new ArrayList<>(nodes.size());
+        nodes.values().forEach(node -> {
+            final Directory directory = node.directoryOrNull;
+            if (directory != null) {
+                directories.add(directory);
+            }
+        });
+        return directories;
+    }
+
+    int size() {
+        return values().size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    synchronized void clear() {
+        nodes.clear();
+    }
+}
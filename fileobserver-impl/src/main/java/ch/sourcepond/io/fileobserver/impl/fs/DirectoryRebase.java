@@ -26,9 +26,9 @@ import java.util.*;
 class DirectoryRebase {
     private final DirectoryFactory directoryFactory;
     private final WatchServiceWrapper registrar;
-    private final Map<Path, Directory> dirs;
+    private final DirectoryIndex dirs;
 
-    DirectoryRebase(final DirectoryFactory pDirectoryFactory, final WatchServiceWrapper pRegistrar, final Map<Path, Directory> pDirs) {
+    DirectoryRebase(final DirectoryFactory pDirectoryFactory, final WatchServiceWrapper pRegistrar, final DirectoryIndex pDirs) {
         directoryFactory = pDirectoryFactory;
         registrar = pRegistrar;
         dirs = pDirs;
@@ -59,12 +59,10 @@ class DirectoryRebase {
      * @return Collection of directories, never {@code null}.
      */
     private Collection<Directory> collectExistingRoots(final Directory pNewRoot) {
-        final Path parentPath = pNewRoot.getPath();
         final Collection<Directory> pathsToRebase = new LinkedList<>();
-        dirs.entrySet().forEach(e -> {
-            final Path childPath = e.getKey();
-            if (childPath.startsWith(parentPath) && e.getValue().isRoot()) {
-                pathsToRebase.add(e.getValue());
+        dirs.subtree(pNewRoot.getPath()).forEach(dir -> {
+            if (dir.isRoot()) {
+                pathsToRebase.add(dir);
             }
         });
         return pathsToRebase;
@@ -77,10 +75,10 @@ class DirectoryRebase {
      * @param pBaseDirectory Parent directory to set, must not be {@code null}
      */
     private void rebaseDirectSubDirectories(final Directory pBaseDirectory) {
-        final Path base = pBaseDirectory.getPath();
-        dirs.forEach((k, v) -> {
-            if (base.equals(k.getParent())) {
-                v.rebase(pBaseDirectory);
+        dirs.directChildren(pBaseDirectory.getPath()).forEach(child -> {
+            final Directory dir = dirs.get(child);
+            if (dir != null) {
+                dir.rebase(pBaseDirectory);
             }
         });
     }
@@ -125,17 +123,17 @@ class DirectoryRebase {
     private void cancelDiscardedDirectories(final Directory pDiscardedParent,
                                             final Collection<Directory> pToBeConverted) {
         final Collection<Directory> toBeDiscarded = new LinkedList<>();
-        dirs.values().removeIf(dir -> {
-            if (pDiscardedParent.isDirectParentOf(dir)) {
+        dirs.directChildren(pDiscardedParent.getPath()).forEach(child -> {
+            final Directory dir = dirs.get(child);
+            if (dir != null) {
                 if (dir.hasKeys()) {
                     pToBeConverted.add(dir);
                 } else {
                     toBeDiscarded.add(dir);
                     dir.cancelKey();
-                    return true;
+                    dirs.remove(child);
                 }
             }
-            return false;
         });
         toBeDiscarded.forEach(dir -> cancelDiscardedDirectories(dir, pToBeConverted));
     }
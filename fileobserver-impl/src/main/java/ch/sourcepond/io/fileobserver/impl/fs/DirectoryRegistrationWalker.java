@@ -20,18 +20,27 @@ import ch.sourcepond.io.fileobserver.impl.directory.DirectoryFactory;
 import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
 import org.slf4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static java.lang.String.format;
 import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.newDirectoryStream;
 import static java.nio.file.Files.walkFileTree;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.util.Objects.requireNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -43,12 +52,15 @@ import static org.slf4j.LoggerFactory.getLogger;
  * <p>
  * <p>There should exist exactly one instance of this class (singleton).</p>
  */
-class DirectoryRegistrationWalker {
+class DirectoryRegistrationWalker implements Closeable {
+    // Number of files a single fork/join task informs about before it's split
+    static final int FILE_BATCH_SIZE = 256;
     private final Logger logger;
     private final WatchServiceWrapper wrapper;
     private final DirectoryFactory directoryFactory;
-    private final ConcurrentMap<Path, Directory> dirs;
+    private final DirectoryIndex dirs;
     private final Executor directoryWalkerExecutor;
+    private final ForkJoinPool walkerPoolOrNull;
 
     /**
      * Constructor for bundle activator.
@@ -61,12 +73,49 @@ class DirectoryRegistrationWalker {
     DirectoryRegistrationWalker(final WatchServiceWrapper pWrapper,
                                 final DirectoryFactory pDirectoryFactory,
                                 final Executor pDirectoryWalkerExecutor,
-                                final ConcurrentMap<Path, Directory> pDirs) {
+                                final DirectoryIndex pDirs) {
+        this(pWrapper, pDirectoryFactory, pDirectoryWalkerExecutor, pDirs, 1);
+    }
+
+    /**
+     * Constructor for bundle activator. If the parallelism specified is greater than 1, newly created
+     * directory trees will be walked by a dedicated fork/join pool with the parallelism specified.
+     * Otherwise, the tree will be walked sequentially by the directory walker executor.
+     *
+     * @param pWrapper
+     * @param pDirectoryFactory
+     * @param pDirectoryWalkerExecutor
+     * @param pDirs
+     * @param pParallelism
+     */
+    DirectoryRegistrationWalker(final WatchServiceWrapper pWrapper,
+                                final DirectoryFactory pDirectoryFactory,
+                                final Executor pDirectoryWalkerExecutor,
+                                final DirectoryIndex pDirs,
+                                final int pParallelism) {
         this(getLogger(DirectoryRegistrationWalker.class),
                 pDirectoryFactory,
                 pDirectoryWalkerExecutor,
                 pWrapper,
-                pDirs);
+                pDirs,
+                pParallelism > 1 ? new ForkJoinPool(pParallelism) : null);
+    }
+
+    /**
+     * Constructor for testing
+     *
+     * @param pLogger
+     * @param pDirectoryWalkerExecutor
+     * @param pWrapper
+     * @param pDirectoryFactory
+     * @param pDirs
+     */
+    DirectoryRegistrationWalker(final Logger pLogger,
+                                final DirectoryFactory pDirectoryFactory,
+                                final Executor pDirectoryWalkerExecutor,
+                                final WatchServiceWrapper pWrapper,
+                                final DirectoryIndex pDirs) {
+        this(pLogger, pDirectoryFactory, pDirectoryWalkerExecutor, pWrapper, pDirs, null);
     }
 
     /**
@@ -77,17 +126,20 @@ class DirectoryRegistrationWalker {
      * @param pWrapper
      * @param pDirectoryFactory
      * @param pDirs
+     * @param pWalkerPoolOrNull
      */
     DirectoryRegistrationWalker(final Logger pLogger,
                                 final DirectoryFactory pDirectoryFactory,
                                 final Executor pDirectoryWalkerExecutor,
                                 final WatchServiceWrapper pWrapper,
-                                final ConcurrentMap<Path, Directory> pDirs) {
+                                final DirectoryIndex pDirs,
+                                final ForkJoinPool pWalkerPoolOrNull) {
         logger = pLogger;
         directoryWalkerExecutor = pDirectoryWalkerExecutor;
         wrapper = pWrapper;
         directoryFactory = pDirectoryFactory;
         dirs = pDirs;
+        walkerPoolOrNull = pWalkerPoolOrNull;
     }
 
     /**
@@ -123,18 +175,23 @@ class DirectoryRegistrationWalker {
     private void directoryCreated(final EventDispatcher pDispatcher,
                                   final Directory pNewRootOrNull,
                                   final Path pDirectory) {
-        // Asynchronously register all sub-directories with the watch-service, and,
-        // inform the registered PathChangeListener
-        directoryWalkerExecutor.execute(() -> {
-            try {
-                walkFileTree(pDirectory, new DirectoryInitializerFileVisitor(
-                        pDispatcher, pNewRootOrNull));
-            } catch (final IOException e) {
-                logger.warn(e.getMessage(), e);
-            } catch (final RuntimeException e) {
-                logger.error(e.getMessage(), e);
-            }
-        });
+        if (walkerPoolOrNull == null) {
+            // Asynchronously register all sub-directories with the watch-service, and,
+            // inform the registered PathChangeListener
+            directoryWalkerExecutor.execute(() -> {
+                try {
+                    walkFileTree(pDirectory, new DirectoryInitializerFileVisitor(
+                            pDispatcher, pNewRootOrNull));
+                } catch (final IOException e) {
+                    logger.warn(e.getMessage(), e);
+                } catch (final RuntimeException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            });
+        } else {
+            // Register the sub-directories and inform the listeners in parallel
+            walkerPoolOrNull.execute(new DirectoryWalkTask(pDispatcher, pNewRootOrNull, pDirectory));
+        }
     }
 
     /**
@@ -164,26 +221,135 @@ class DirectoryRegistrationWalker {
         }
 
         @Override
-        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
             try {
-                // Only put a new directory if not already present. This is important, otherwise
-                // multiple threads would overwrite them.
-                dirs.computeIfAbsent(dir, this::createBranch);
-                return CONTINUE;
-            } catch (final UncheckedIOException e) {
-                throw new IOException(e.getMessage(), e);
+                registerDirectory(dir);
+            } catch (final IOException e) {
+                // Only skip the affected sub-tree; the rest of the tree can still be watched
+                logger.warn(e.getMessage(), e);
+                return SKIP_SUBTREE;
             }
+            return CONTINUE;
+        }
+    }
+
+    private void registerDirectory(final Path pDir) throws IOException {
+        try {
+            // Only put a new directory if not already present. This is important, otherwise
+            // multiple threads would overwrite them.
+            dirs.computeIfAbsent(pDir, this::createBranch);
+        } catch (final UncheckedIOException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private Directory createBranch(final Path pDir) {
+        final Directory parentDir = requireNonNull(dirs.get(pDir.getParent()), () -> format("No parent registered for %s", pDir));
+        final Directory newDirectory;
+        try {
+            newDirectory = directoryFactory.newBranch(parentDir, wrapper.register(pDir));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
         }
+        return newDirectory;
+    }
 
-        private Directory createBranch(final Path pDir) {
-            final Directory parentDir = requireNonNull(dirs.get(pDir.getParent()), () -> format("No parent registered for %s", pDir));
-            final Directory newDirectory;
+    /**
+     * Fork/join task which registers a single directory and then walks its content. Sub-directories are
+     * walked by forked tasks; because a directory is registered before its sub-directories are forked,
+     * the parent of a directory is always present in the directory-map when the directory is registered.
+     * Large numbers of files are split into batches (see {@link #FILE_BATCH_SIZE}) which are processed
+     * in parallel too.
+     */
+    private class DirectoryWalkTask extends RecursiveAction {
+        private final EventDispatcher dispatcher;
+        private final Directory newRootOrNull;
+        private final Path directory;
+
+        DirectoryWalkTask(final EventDispatcher pDispatcher,
+                          final Directory pNewRootOrNull,
+                          final Path pDirectory) {
+            dispatcher = pDispatcher;
+            newRootOrNull = pNewRootOrNull;
+            directory = pDirectory;
+        }
+
+        @Override
+        protected void compute() {
+            final List<RecursiveAction> subTasks = new ArrayList<>();
+            final List<Path> files = new ArrayList<>();
             try {
-                newDirectory = directoryFactory.newBranch(parentDir, wrapper.register(pDir));
+                registerDirectory(directory);
+                try (final DirectoryStream<Path> stream = newDirectoryStream(directory)) {
+                    for (final Path path : stream) {
+                        // Same as walkFileTree: symbolic links are not followed
+                        if (isDirectory(path, NOFOLLOW_LINKS)) {
+                            subTasks.add(new DirectoryWalkTask(dispatcher, newRootOrNull, path));
+                        } else {
+                            files.add(path);
+                        }
+                    }
+                }
+                if (!files.isEmpty()) {
+                    subTasks.add(new FilesTask(dispatcher, newRootOrNull, files, 0, files.size()));
+                }
+                invokeAll(subTasks);
             } catch (final IOException e) {
-                throw new UncheckedIOException(e.getMessage(), e);
+                logger.warn(e.getMessage(), e);
+            } catch (final RuntimeException e) {
+                logger.error(e.getMessage(), e);
             }
-            return newDirectory;
+        }
+    }
+
+    /**
+     * Fork/join task which informs the listeners about a range of files of the same directory.
+     */
+    private class FilesTask extends RecursiveAction {
+        private final EventDispatcher dispatcher;
+        private final Directory newRootOrNull;
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        FilesTask(final EventDispatcher pDispatcher,
+                  final Directory pNewRootOrNull,
+                  final List<Path> pFiles,
+                  final int pFrom,
+                  final int pTo) {
+            dispatcher = pDispatcher;
+            newRootOrNull = pNewRootOrNull;
+            files = pFiles;
+            from = pFrom;
+            to = pTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILE_BATCH_SIZE) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new FilesTask(dispatcher, newRootOrNull, files, from, middle),
+                        new FilesTask(dispatcher, newRootOrNull, files, middle, to));
+            } else {
+                final Directory dir = dirs.get(files.get(from).getParent());
+                for (int i = from; i < to; i++) {
+                    try {
+                        dir.informCreatedOrInitial(dispatcher, newRootOrNull, files.get(i));
+                    } catch (final RuntimeException e) {
+                        logger.error(e.getMessage(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Shuts down the fork/join pool used to walk directory trees in parallel (if any).
+     */
+    @Override
+    public void close() {
+        if (walkerPoolOrNull != null) {
+            walkerPoolOrNull.shutdown();
         }
     }
 }
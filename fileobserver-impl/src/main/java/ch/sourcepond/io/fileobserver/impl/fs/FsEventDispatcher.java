@@ -14,29 +14,50 @@ limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.fs;
 
 import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.PendingEventsPolicy;
+import ch.sourcepond.io.fileobserver.impl.SharedScheduler;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
 import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import ch.sourcepond.io.fileobserver.impl.listener.BatchEventDispatcher;
+import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
 import org.slf4j.Logger;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.lang.Math.max;
 import static java.lang.String.format;
+import static java.lang.System.nanoTime;
 import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.newDirectoryStream;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -44,34 +65,84 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 class FsEventDispatcher implements Closeable {
     private static final Logger LOG = getLogger(FsEventDispatcher.class);
-    private final ScheduledExecutorService executor = newScheduledThreadPool(1);
+    private static final long DEFAULT_TICK_MILLIS = 100L;
+
+    /**
+     * Maximum number of keys which are drained per wake-up. Keys are reset before their events are processed,
+     * so a busy directory could otherwise be signalled again before the batch is complete.
+     */
+    static final int MAX_KEYS_PER_BATCH = 256;
+    private final Executor executor;
+    private final SharedScheduler scheduler;
+    private final boolean ownsScheduler;
+    private final ReceiverMultiplexer multiplexerOrNull;
+    private final AtomicBoolean receiving = new AtomicBoolean();
     private final WatchServiceWrapper wrapper;
     private final ListenerManager manager;
     private final DirectoryRegistrationWalker walker;
-    private final ConcurrentMap<Path, Directory> dirs;
-    final ConcurrentMap<Path, WatchEventQueue> queues = new ConcurrentHashMap<>();
+    private final DirectoryIndex dirs;
+    final ConcurrentMap<Path, DirectoryBatch> queues = new ConcurrentHashMap<>();
+    private final Set<Path> rescans = ConcurrentHashMap.newKeySet();
+
+    // Directories whose delay has expired, in the order of expiry; see #expired
+    private final Queue<Collection<Path>> expired = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object capacityMonitor = new Object();
     final Thread receiverThread;
+    private volatile TimingWheel<Path> wheel;
     private volatile Config config;
+    private volatile Metrics metrics = new Metrics();
+    private volatile boolean closed;
 
-    FsEventDispatcher(final ConcurrentMap<Path, Directory> pDirs,
+    // Constructor for testing
+    FsEventDispatcher(final DirectoryIndex pDirs,
                       final DirectoryRegistrationWalker pWalker,
                       final WatchServiceWrapper pWrapper,
                       final ListenerManager pManager) {
+        this(pDirs, pWalker, pWrapper, pManager, Runnable::run, new SharedScheduler(), true, null);
+    }
+
+    /**
+     * Creates a new dispatcher which uses the shared scheduler specified. The timer of the scheduler only
+     * triggers rescans and the dispatch of expired events; both are performed by the executor specified.
+     * If a multiplexer is specified, the watch events are received by its threads, otherwise the dispatcher
+     * starts its own receiver thread.
+     */
+    FsEventDispatcher(final DirectoryIndex pDirs,
+                      final DirectoryRegistrationWalker pWalker,
+                      final WatchServiceWrapper pWrapper,
+                      final ListenerManager pManager,
+                      final Executor pExecutor,
+                      final SharedScheduler pScheduler,
+                      final ReceiverMultiplexer pMultiplexerOrNull) {
+        this(pDirs, pWalker, pWrapper, pManager, pExecutor, pScheduler, false, pMultiplexerOrNull);
+    }
+
+    private FsEventDispatcher(final DirectoryIndex pDirs,
+                              final DirectoryRegistrationWalker pWalker,
+                              final WatchServiceWrapper pWrapper,
+                              final ListenerManager pManager,
+                              final Executor pExecutor,
+                              final SharedScheduler pScheduler,
+                              final boolean pOwnsScheduler,
+                              final ReceiverMultiplexer pMultiplexerOrNull) {
         walker = pWalker;
         dirs = pDirs;
         wrapper = pWrapper;
         manager = pManager;
+        executor = pExecutor;
+        scheduler = pScheduler;
+        ownsScheduler = pOwnsScheduler;
+        multiplexerOrNull = pMultiplexerOrNull;
         receiverThread = new Thread(this::receive, format("fs-event dispatcher %s", wrapper));
     }
 
     private void receive() {
         while (!receiverThread.isInterrupted()) {
             try {
-                final WatchKey key = wrapper.take();
-                try {
-                    delayEvents(key);
-                } finally {
-                    key.reset();
+                if (!process(drain(wrapper.take()))) {
+                    break;
                 }
             } catch (final InterruptedException e) {
                 LOG.warn(e.getMessage(), e);
@@ -80,110 +151,421 @@ class FsEventDispatcher implements Closeable {
         }
     }
 
+    /**
+     * Copies the events of the key specified and of all further keys which are signalled meanwhile (up to
+     * {@link #MAX_KEYS_PER_BATCH}). Every key is reset immediately after its events have been copied, so that
+     * the watch service can queue new events while the batch is being processed.
+     *
+     * @param pFirst First signalled key, must not be {@code null}
+     * @return Copied events, never {@code null}
+     */
+    List<ReceivedEvents> drain(final WatchKey pFirst) {
+        final List<ReceivedEvents> batch = new ArrayList<>();
+        WatchKey key = pFirst;
+        do {
+            try {
+                batch.add(new ReceivedEvents((Path) key.watchable(), key.pollEvents()));
+            } finally {
+                key.reset();
+            }
+        } while (batch.size() < MAX_KEYS_PER_BATCH && (key = wrapper.poll()) != null);
+        return batch;
+    }
+
+    /**
+     * Delays the events of the batch specified.
+     *
+     * @return {@code false} if the current thread has been interrupted, {@code true} otherwise
+     */
+    private boolean process(final List<ReceivedEvents> pBatch) {
+        try {
+            delayEvents(pBatch);
+            return true;
+        } catch (final InterruptedException e) {
+            // Interrupted while waiting for capacity
+            LOG.debug(e.getMessage(), e);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Processes the keys which are currently signalled, if any, without waiting. Used by
+     * {@link ReceiverMultiplexer}; if another thread is currently receiving the events of this file system,
+     * nothing happens.
+     *
+     * @return {@code true} if any key has been processed, {@code false} otherwise
+     */
+    boolean receiveAvailable() {
+        if (!receiving.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            final WatchKey key = wrapper.poll();
+            return key != null && process(drain(key));
+        } finally {
+            receiving.set(false);
+        }
+    }
+
     private Directory getDirectory(final Path pPath) {
         return dirs.get(pPath);
     }
 
-    private void pathModified(final Path pPath,
+    private void pathModified(final EventDispatcher pDispatcher,
+                              final Path pPath,
                               final boolean pIsCreated) {
         // We are only interested in directories when they have been created...
         if (isDirectory(pPath)) {
             if (pIsCreated) {
+                // The walker runs asynchronously, use the default dispatcher
                 walker.directoryCreated(manager.getDefaultDispatcher(), pPath);
             }
             //...otherwise, ignore them
         } else {
             final Directory dir = requireNonNull(getDirectory(pPath.getParent()),
                     () -> format("No directory registered for %s", pPath));
-            dir.informIfChanged(manager.getDefaultDispatcher(), pPath, pIsCreated);
+            dir.informIfChanged(pDispatcher, pPath, pIsCreated);
         }
     }
 
-    private void pathDiscarded(final Path pPath) {
+    private void pathDiscarded(final EventDispatcher pDispatcher, final Path pPath) {
         // The deleted path was a directory
-        if (!directoryDiscarded(pPath)) {
+        if (!directoryDiscarded(pDispatcher, pPath)) {
             final Directory parentDirectory = getDirectory(pPath.getParent());
             if (parentDirectory == null) {
                 LOG.debug("Parent of {} does not exist. Nothing to discard", pPath);
             } else {
                 // The deleted path was a file
-                parentDirectory.informDiscard(manager.getDefaultDispatcher(), pPath);
+                parentDirectory.informDiscard(pDispatcher, pPath);
             }
         }
     }
 
-    private void processPath(final WatchEvent.Kind<?> pKind, final Path pPath) {
-        LOG.debug("Received event of kind {} for path {}", pKind, pPath);
+    private void pathRecreated(final EventDispatcher pDispatcher, final Path pPath) {
+        if (dirs.containsKey(pPath) || isDirectory(pPath)) {
+            // A directory has been involved, i.e. the path possibly changed from directory
+            // to file (or vice versa); discard it completely before it's registered again.
+            pathDiscarded(pDispatcher, pPath);
+            pathModified(pDispatcher, pPath, true);
+        } else {
+            // A replaced file is handled like a modification; its checksum decides whether
+            // the listeners need to be informed.
+            pathModified(pDispatcher, pPath, false);
+        }
+    }
+
+    private void processPath(final EventDispatcher pDispatcher, final int pState, final Path pPath) {
+        LOG.debug("Processing state {} for path {}", pState, pPath);
         try {
-            if (ENTRY_CREATE == pKind) {
-                pathModified(pPath, true);
-            } else if (ENTRY_MODIFY == pKind) {
-                pathModified(pPath, false);
-            } else if (ENTRY_DELETE == pKind) {
-                pathDiscarded(pPath);
+            switch (pState) {
+                case WatchEventState.CREATE:
+                    pathModified(pDispatcher, pPath, true);
+                    break;
+                case WatchEventState.MODIFY:
+                    pathModified(pDispatcher, pPath, false);
+                    break;
+                case WatchEventState.DELETE:
+                    pathDiscarded(pDispatcher, pPath);
+                    break;
+                case WatchEventState.DELETE_CREATE:
+                    pathRecreated(pDispatcher, pPath);
+                    break;
+                default:
+                    // noop
+            }
+        } catch (final RuntimeException e) {
+            LOG.error(e.getMessage(), e);
+        }
+    }
+
+    private boolean directoryDiscarded(final EventDispatcher pDispatcher, final Path pDirectory) {
+        // Removes the directory along with all its sub-directories
+        final Collection<Directory> discarded = dirs.removeSubtree(pDirectory);
+        discarded.forEach(dir -> dir.cancelKeyAndDiscardResources(pDispatcher));
+        return !discarded.isEmpty();
+    }
+
+    private void informIfChanged(final EventDispatcher pDispatcher,
+                                 final Path pDirectory,
+                                 final Map<Path, EventTimestamps> pFiles,
+                                 final boolean pIsCreated) {
+        if (pFiles.isEmpty()) {
+            return;
+        }
+        LOG.debug("Processing {} files in {}, created: {}", pFiles.size(), pDirectory, pIsCreated);
+        try {
+            final Directory dir = requireNonNull(getDirectory(pDirectory),
+                    () -> format("No directory registered for %s", pDirectory));
+            if (pFiles.size() == 1) {
+                final Map.Entry<Path, EventTimestamps> file = pFiles.entrySet().iterator().next();
+                file.getValue().runWith(() -> dir.informIfChanged(pDispatcher, file.getKey(), pIsCreated));
+            } else {
+                dir.informIfChanged(pDispatcher, pFiles, pIsCreated);
             }
         } catch (final RuntimeException e) {
             LOG.error(e.getMessage(), e);
         }
     }
 
-    private void directoryDiscarded(final Path pPath, final Directory dir) {
-        dir.cancelKeyAndDiscardResources(manager.getDefaultDispatcher());
+    private void dispatchBatch(final EventDispatcher pDispatcher, final Path pDirectory) {
+        final DirectoryBatch batch = queues.get(pDirectory);
+        if (batch == null) {
+            return;
+        }
+
+        // Only files whose own delay has expired are drained; files which have been added to the batch
+        // later remain in it, so that every file is debounced for the full delay. The batch is re-armed
+        // for the expiry of the oldest remaining file.
+        final long delayNanos = MILLISECONDS.toNanos(config.eventDispatchDelayMillis());
+        final long now = nanoTime();
+        final Map<Path, WatchEventState> states = batch.drainExpired(now - delayNanos);
+        if (batch.isDrained()) {
+            // Events which are pushed from now on will cause a new batch to be created (see delayEvent)
+            queues.remove(pDirectory, batch);
+        } else {
+            final long remainingNanos = batch.getOldestReceivedNanos(now) + delayNanos - now;
+            // Round up, otherwise the oldest remaining file might not have expired yet when the wheel fires
+            wheel.schedule(pDirectory, max(0L, NANOSECONDS.toMillis(remainingNanos) + 1L));
+        }
+        pending.addAndGet(-states.size());
+
+        // Created and modified files are handed over to their directory together, so that it
+        // can share its key computation across the batch. Everything else is processed per path.
+        final Map<Path, EventTimestamps> created = new LinkedHashMap<>();
+        final Map<Path, EventTimestamps> modified = new LinkedHashMap<>();
+        for (final Map.Entry<Path, WatchEventState> entry : states.entrySet()) {
+            metrics.eventDebounced();
+            final Path path = entry.getKey();
+            final WatchEventState state = entry.getValue();
+            final int drained = state.getState();
+            final EventTimestamps timestamps = new EventTimestamps(state.getReceivedNanos(), now);
+            if ((WatchEventState.CREATE == drained || WatchEventState.MODIFY == drained) && !isDirectory(path)) {
+                (WatchEventState.CREATE == drained ? created : modified).put(path, timestamps);
+            } else {
+                timestamps.runWith(() -> processPath(pDispatcher, drained, path));
+            }
+        }
+        informIfChanged(pDispatcher, pDirectory, created, true);
+        informIfChanged(pDispatcher, pDirectory, modified, false);
+    }
+
+    private void dispatchEvents(final Collection<Path> pDirectories) {
+        // All events which expired together are delivered as one batch to
+        // listeners which support it (see BatchPathChangeListener)
+        try (final BatchEventDispatcher dispatcher = manager.openBatch()) {
+            pDirectories.forEach(d -> dispatchBatch(dispatcher, d));
+        }
+        signalCapacity();
+    }
+
+    /**
+     * Called by the timing wheel on the timer thread. Dispatching reads file attributes and calculates
+     * checksums, so it is handed over to the executor. At most one dispatch task per file system runs at a time,
+     * which keeps the events of a file in order.
+     */
+    private void expired(final Collection<Path> pDirectories) {
+        expired.add(pDirectories);
+        startDispatching();
+    }
+
+    private void startDispatching() {
+        if (!expired.isEmpty() && dispatching.compareAndSet(false, true)) {
+            executor.execute(this::dispatchExpired);
+        }
+    }
+
+    private void dispatchExpired() {
+        try {
+            Collection<Path> directories;
+            while ((directories = expired.poll()) != null) {
+                dispatchEvents(directories);
+            }
+        } finally {
+            dispatching.set(false);
+        }
+
+        // Directories could have expired after the queue has been polled the last time
+        startDispatching();
+    }
+
+    private long getTickMillis() {
+        final long tickMillis = config.eventDispatchTickMillis();
+        return tickMillis > 0 ? tickMillis : DEFAULT_TICK_MILLIS;
+    }
 
-        for (final Iterator<Map.Entry<Path, Directory>> it = dirs.entrySet().iterator(); it.hasNext(); ) {
-            final Map.Entry<Path, Directory> entry = it.next();
+    /**
+     * Returns the number of files whose events are waiting to be dispatched.
+     *
+     * @return Number of pending files, zero or positive
+     */
+    int getPendingEvents() {
+        return pending.get();
+    }
 
-            final Path subPath = entry.getKey();
-            if (subPath.startsWith(pPath)) {
-                it.remove();
-                directoryDiscarded(subPath, entry.getValue());
+    /**
+     * Checks whether the number of pending files has reached the configured limit, see
+     * {@link Config#maxPendingEvents()}.
+     *
+     * @return {@code true} if no more files should be queued, {@code false} otherwise
+     */
+    boolean isPendingLimitReached() {
+        final int max = config.maxPendingEvents();
+        return max > 0 && pending.get() >= max;
+    }
+
+    private void signalCapacity() {
+        if (config.maxPendingEvents() > 0) {
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
             }
         }
     }
 
-    private boolean directoryDiscarded(final Path pDirectory) {
-        final Directory dir = dirs.remove(pDirectory);
-        final boolean wasDirectory = dir != null;
-        if (wasDirectory) {
-            directoryDiscarded(pDirectory, dir);
+    private void awaitCapacity() throws InterruptedException {
+        synchronized (capacityMonitor) {
+            while (isPendingLimitReached()) {
+                // Wait with timeout, the limit could be changed by a new configuration
+                capacityMonitor.wait(getTickMillis());
+            }
         }
-        return wasDirectory;
     }
 
-    private void dispatchEvent(final Path pPath) {
-        queues.computeIfPresent(pPath, (path, queue) -> {
-            queue.processQueue(kind -> processPath(kind, path));
-            return null;
+    /**
+     * Compares the current content of the directory specified with the state known by its associated
+     * {@link Directory} object. This is necessary when an {@link java.nio.file.StandardWatchEventKinds#OVERFLOW}
+     * event has been received, because events could have been lost in that case. Unknown files and sub-directories
+     * will be delayed as created, known files as modified (their checksums decide whether they have actually been
+     * changed), and known files or sub-directories which do not exist anymore as deleted.
+     *
+     * @param pDirectory Directory to be rescanned, must not be {@code null}
+     */
+    private void rescan(final Path pDirectory) {
+        if (closed) {
+            return;
+        }
+        if (isPendingLimitReached()) {
+            // The rescan would add even more pending events; try again later
+            scheduler.get().schedule(() -> executor.execute(() -> rescan(pDirectory)), getTickMillis(), MILLISECONDS);
+            return;
+        }
+        rescans.remove(pDirectory);
+        final Directory dir = getDirectory(pDirectory);
+        if (dir == null) {
+            LOG.debug("No directory registered for {}; nothing to rescan", pDirectory);
+            return;
+        }
+
+        final Collection<Path> vanishedFiles = new HashSet<>(dir.getTrackedFiles());
+        try (final DirectoryStream<Path> stream = newDirectoryStream(pDirectory)) {
+            for (final Path path : stream) {
+                if (isDirectory(path)) {
+                    if (!dirs.containsKey(path)) {
+                        delayEvent(path, ENTRY_CREATE);
+                    }
+                } else if (vanishedFiles.remove(path)) {
+                    delayEvent(path, ENTRY_MODIFY);
+                } else {
+                    delayEvent(path, ENTRY_CREATE);
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            LOG.debug("{} has been deleted meanwhile", pDirectory);
+            delayEvent(pDirectory, ENTRY_DELETE);
+            return;
+        } catch (final IOException e) {
+            LOG.warn(format("Rescan of %s failed", pDirectory), e);
+            return;
+        }
+
+        vanishedFiles.forEach(file -> delayEvent(file, ENTRY_DELETE));
+        dirs.directChildren(pDirectory).forEach(subDirectory -> {
+            if (!isDirectory(subDirectory)) {
+                delayEvent(subDirectory, ENTRY_DELETE);
+            }
         });
     }
 
-    private void delayEvents(final WatchKey pKey) {
-        final Path directory = (Path) pKey.watchable();
-        for (final WatchEvent<?> event : pKey.pollEvents()) {
+    private void scheduleRescan(final Path pDirectory) {
+        // Schedule a rescan only once until it has been started
+        if (rescans.add(pDirectory)) {
+            executor.execute(() -> rescan(pDirectory));
+        }
+    }
+
+    /**
+     * Returns the directory whose batch gathers the events of the path specified, i.e. its parent.
+     */
+    private static Path batchKey(final Path pPath) {
+        final Path parent = pPath.getParent();
+        return parent == null ? pPath : parent;
+    }
+
+    private DirectoryBatch newBatch(final Path pDirectory) {
+        wheel.schedule(pDirectory, config.eventDispatchDelayMillis());
+        return new DirectoryBatch(pending);
+    }
+
+    private boolean isPending(final Path pFile) {
+        final DirectoryBatch batch = queues.get(batchKey(pFile));
+        return batch != null && batch.contains(pFile);
+    }
+
+    private void delayEvent(final Path pFile, final WatchEvent.Kind<?> pKind) {
+        final Path directory = batchKey(pFile);
+        DirectoryBatch batch;
+        while (DirectoryBatch.DRAINED == (batch = queues.computeIfAbsent(directory, this::newBatch)).push(pFile, pKind)) {
+            // The batch has been drained concurrently; replace it and try again
+            LOG.debug("Batch of {} drained meanwhile, retry", directory);
+            queues.remove(directory, batch);
+        }
+    }
+
+    private void delayEvents(final List<ReceivedEvents> pBatch) throws InterruptedException {
+        for (final ReceivedEvents received : pBatch) {
+            delayEvents(received.getDirectory(), received.getEvents());
+        }
+    }
+
+    private void delayEvents(final Path pDirectory, final List<WatchEvent<?>> pEvents) throws InterruptedException {
+        for (final WatchEvent<?> event : pEvents) {
             final WatchEvent.Kind<?> kind = event.kind();
-            LOG.debug("Changed detected [{}]: {}, context: {}", kind, directory, event.context());
+            metrics.watchEventReceived(kind);
+            LOG.debug("Changed detected [{}]: {}, context: {}", kind, pDirectory, event.context());
 
-            // An OVERFLOW event can
-            // occur regardless if events
-            // are lost or discarded.
+            // An OVERFLOW event can occur regardless if events are lost or
+            // discarded. In this case, the directory needs to be rescanned
+            // in order to detect what actually has been changed.
             if (OVERFLOW == kind) {
+                LOG.warn("Events lost on {}; directory will be rescanned", pDirectory);
+                scheduleRescan(pDirectory);
                 continue;
             }
 
-            final Path file = directory.resolve((Path) event.context());
-            queues.computeIfAbsent(file, f -> {
-                final WatchEventQueue q = new WatchEventQueue();
-                executor.schedule(() -> dispatchEvent(f), config.eventDispatchDelayMillis(), MILLISECONDS);
-                return q;
+            final Path file = pDirectory.resolve((Path) event.context());
+            if (isPendingLimitReached() && !isPending(file)) {
+                // A multiplexed receiver thread is shared with other file systems, it must never wait
+                if (multiplexerOrNull != null || PendingEventsPolicy.COALESCE == config.pendingEventsPolicy()) {
+                    LOG.debug("Too many pending events; {} will be rescanned", pDirectory);
+                    scheduleRescan(pDirectory);
+                    continue;
+                }
+                awaitCapacity();
+            }
 
-            }).push(kind);
+            delayEvent(file, kind);
         }
     }
 
     public void start() {
         assert config != null : "config is null";
-        receiverThread.setDaemon(true);
-        receiverThread.start();
+        wheel = new TimingWheel<>(scheduler.get(), getTickMillis(), this::expired);
+        if (multiplexerOrNull == null) {
+            receiverThread.setDaemon(true);
+            receiverThread.start();
+        } else {
+            multiplexerOrNull.add(this);
+        }
     }
 
     /**
@@ -194,12 +576,32 @@ class FsEventDispatcher implements Closeable {
      */
     @Override
     public void close() {
-        receiverThread.interrupt();
-        executor.shutdown();
+        closed = true;
+        if (multiplexerOrNull == null) {
+            receiverThread.interrupt();
+        } else {
+            multiplexerOrNull.remove(this);
+        }
+        final TimingWheel<Path> w = wheel;
+        if (w != null) {
+            w.close();
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
         wrapper.close();
     }
 
+    @Override
+    public String toString() {
+        return format("FsEventDispatcher[%s]", wrapper);
+    }
+
     public void setConfig(Config pConfig) {
         config = pConfig;
     }
+
+    public void setMetrics(final Metrics pMetrics) {
+        metrics = pMetrics;
+    }
 }
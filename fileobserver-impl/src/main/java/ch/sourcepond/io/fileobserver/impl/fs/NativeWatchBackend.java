@@ -0,0 +1,47 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.WatchService;
+
+/**
+ * {@link WatchBackend} which uses the watch service of the file system, see {@link FileSystem#newWatchService()}.
+ */
+final class NativeWatchBackend implements WatchBackend {
+    static final NativeWatchBackend INSTANCE = new NativeWatchBackend();
+
+    private NativeWatchBackend() {
+        // Use INSTANCE
+    }
+
+    @Override
+    public boolean supports(final FileStore pStore) {
+        return true;
+    }
+
+    @Override
+    public WatchService newWatchService(final FileSystem pFs) throws IOException {
+        return pFs.newWatchService();
+    }
+
+    @Override
+    public String toString() {
+        return "native";
+    }
+}
@@ -0,0 +1,70 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.Watchable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Key of a directory which is watched by the native watch service of its file system. The key counts
+ * against the native watch budget (see {@link WatchServiceWrapper}) until it has been cancelled.
+ */
+final class NativeWatchKey implements WatchKey {
+    private final WatchKey delegate;
+    private final AtomicInteger nativeWatches;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    NativeWatchKey(final WatchKey pDelegate, final AtomicInteger pNativeWatches) {
+        delegate = pDelegate;
+        nativeWatches = pNativeWatches;
+        pNativeWatches.incrementAndGet();
+    }
+
+    @Override
+    public boolean isValid() {
+        return delegate.isValid();
+    }
+
+    @Override
+    public List<WatchEvent<?>> pollEvents() {
+        return delegate.pollEvents();
+    }
+
+    @Override
+    public boolean reset() {
+        return delegate.reset();
+    }
+
+    @Override
+    public void cancel() {
+        delegate.cancel();
+        if (cancelled.compareAndSet(false, true)) {
+            nativeWatches.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Watchable watchable() {
+        return delegate.watchable();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.List;
+
+/**
+ * Events which have been copied from a {@link java.nio.file.WatchKey} before it has been reset, see
+ * {@link FsEventDispatcher#drain(java.nio.file.WatchKey)}.
+ */
+final class ReceivedEvents {
+    private final Path directory;
+    private final List<WatchEvent<?>> events;
+
+    ReceivedEvents(final Path pDirectory, final List<WatchEvent<?>> pEvents) {
+        directory = pDirectory;
+        events = pEvents;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    List<WatchEvent<?>> getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,92 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.nio.file.ClosedWatchServiceException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.lang.String.format;
+import static java.lang.Thread.sleep;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Receives the watch events of multiple file systems with a fixed number of threads, see
+ * {@link ch.sourcepond.io.fileobserver.impl.Config#receiverThreads()}. Each thread polls all registered
+ * dispatchers in turn; if none of them had a signalled key, the thread sleeps for a short while.
+ */
+class ReceiverMultiplexer implements Closeable {
+    private static final Logger LOG = getLogger(ReceiverMultiplexer.class);
+    static final long IDLE_MILLIS = 50L;
+    private final List<FsEventDispatcher> dispatchers = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    ReceiverMultiplexer(final int pThreads) {
+        for (int i = 1; i <= pThreads; i++) {
+            final Thread thread = new Thread(this::receive, format("fs-event receiver %d", i));
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+    }
+
+    void start() {
+        threads.forEach(Thread::start);
+    }
+
+    void add(final FsEventDispatcher pDispatcher) {
+        dispatchers.add(pDispatcher);
+    }
+
+    void remove(final FsEventDispatcher pDispatcher) {
+        dispatchers.remove(pDispatcher);
+    }
+
+    // Visible for testing
+    boolean receiveOnce() {
+        boolean received = false;
+        for (final FsEventDispatcher dispatcher : dispatchers) {
+            try {
+                received |= dispatcher.receiveAvailable();
+            } catch (final ClosedWatchServiceException e) {
+                LOG.debug("Watch service of {} has been closed", dispatcher, e);
+                remove(dispatcher);
+            }
+        }
+        return received;
+    }
+
+    private void receive() {
+        final Thread current = Thread.currentThread();
+        while (!current.isInterrupted()) {
+            try {
+                if (!receiveOnce()) {
+                    sleep(IDLE_MILLIS);
+                }
+            } catch (final InterruptedException e) {
+                LOG.debug(e.getMessage(), e);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        threads.forEach(Thread::interrupt);
+        dispatchers.clear();
+    }
+}
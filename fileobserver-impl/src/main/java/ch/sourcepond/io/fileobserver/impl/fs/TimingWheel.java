@@ -0,0 +1,144 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * <p>Hashed timing-wheel which delays elements until their deadline has been reached. Elements are put into buckets
+ * by their deadline tick; a single task scheduled at a fixed rate advances the wheel one tick after another. This
+ * means that arming and firing an element costs O(1) regardless of how many elements are currently pending.</p>
+ *
+ * <p>All elements whose deadlines expire within the same tick are passed together to the expiry consumer.</p>
+ *
+ * @param <T> Type of the delayed elements
+ */
+final class TimingWheel<T> implements Closeable {
+    private static final Logger LOG = getLogger(TimingWheel.class);
+    static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private final Deque<Entry<T>>[] buckets;
+    private final Consumer<? super Collection<T>> expiryConsumer;
+    private final long tickNanos;
+    private final long startNanos = nanoTime();
+    private final ScheduledFuture<?> ticker;
+
+    // Guarded by this
+    private long processedTick;
+
+    private static final class Entry<T> {
+        final T element;
+        final long deadlineTick;
+
+        Entry(final T pElement, final long pDeadlineTick) {
+            element = pElement;
+            deadlineTick = pDeadlineTick;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(final ScheduledExecutorService pExecutor,
+                final long pTickMillis,
+                final Consumer<? super Collection<T>> pExpiryConsumer) {
+        if (pTickMillis <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than zero");
+        }
+        buckets = new Deque[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        expiryConsumer = pExpiryConsumer;
+        tickNanos = MILLISECONDS.toNanos(pTickMillis);
+        ticker = pExecutor.scheduleAtFixedRate(this::advance, pTickMillis, pTickMillis, MILLISECONDS);
+    }
+
+    private long currentTick() {
+        return (nanoTime() - startNanos) / tickNanos;
+    }
+
+    /**
+     * Arms the element specified. The element will be passed to the expiry consumer as soon as the
+     * delay specified has elapsed (rounded up to the next tick).
+     *
+     * @param pElement     Element to delay, must not be {@code null}
+     * @param pDelayMillis Delay in milliseconds
+     */
+    void schedule(final T pElement, final long pDelayMillis) {
+        final long delayNanos = MILLISECONDS.toNanos(pDelayMillis);
+        final long deadline = (nanoTime() - startNanos + delayNanos + tickNanos - 1) / tickNanos;
+        synchronized (this) {
+            // Never put an element into a bucket which has already been processed
+            final long deadlineTick = max(deadline, processedTick + 1);
+            buckets[(int) (deadlineTick & MASK)].addLast(new Entry<>(pElement, deadlineTick));
+        }
+    }
+
+    private List<T> expire(final long pTick) {
+        final List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            processedTick = pTick;
+            for (final Iterator<Entry<T>> it = buckets[(int) (pTick & MASK)].iterator(); it.hasNext(); ) {
+                final Entry<T> entry = it.next();
+
+                // Entries with a later deadline remain in the bucket for one of the next rounds
+                if (entry.deadlineTick <= pTick) {
+                    expired.add(entry.element);
+                    it.remove();
+                }
+            }
+        }
+        return expired;
+    }
+
+    private void advance() {
+        final long now = currentTick();
+        long tick;
+        synchronized (this) {
+            tick = processedTick;
+        }
+
+        // If the ticker has been delayed, catch up all ticks which were missed
+        while (tick < now) {
+            final List<T> expired = expire(++tick);
+            if (!expired.isEmpty()) {
+                try {
+                    expiryConsumer.accept(expired);
+                } catch (final RuntimeException e) {
+                    LOG.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.cancel(false);
+    }
+}
@@ -0,0 +1,88 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import java.nio.file.WatchEvent;
+
+import static java.lang.System.nanoTime;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+/**
+ * <p>Collapses the events received for a single path into one state. Instances are not thread-safe; they are
+ * guarded by the {@link DirectoryBatch} which owns them. Once drained from the batch, a state is only read.</p>
+ *
+ * <p>Transitions (rows: current state, columns: pushed event kind):</p>
+ * <pre>
+ *                 CREATE         MODIFY         DELETE
+ * NONE            CREATE         MODIFY         DELETE
+ * CREATE          CREATE         CREATE         DELETE
+ * MODIFY          MODIFY         MODIFY         DELETE
+ * DELETE          DELETE_CREATE  DELETE_CREATE  DELETE
+ * DELETE_CREATE   DELETE_CREATE  DELETE_CREATE  DELETE
+ * </pre>
+ */
+final class WatchEventState {
+    static final int NONE = 0;
+    static final int CREATE = 1;
+    static final int MODIFY = 2;
+    static final int DELETE = 3;
+    static final int DELETE_CREATE = 4;
+    private final long receivedNanos = nanoTime();
+    private int state = NONE;
+
+    private static int onCreateOrModify(final int pCurrent, final int pKind) {
+        switch (pCurrent) {
+            case NONE:
+                return pKind;
+            case DELETE:
+                return DELETE_CREATE;
+            default:
+                // CREATE, MODIFY and DELETE_CREATE remain unchanged
+                return pCurrent;
+        }
+    }
+
+    static int next(final int pCurrent, final WatchEvent.Kind<?> pKind) {
+        if (ENTRY_DELETE == pKind) {
+            return DELETE;
+        }
+        return onCreateOrModify(pCurrent, ENTRY_CREATE == pKind ? CREATE : MODIFY);
+    }
+
+    /**
+     * @return Value of {@link System#nanoTime()} when this state has been created, i.e. when the first
+     * event has been received
+     */
+    long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * Collapses the event kind specified into the current state.
+     *
+     * @param pKind Event kind, must be one of {@code ENTRY_CREATE}, {@code ENTRY_MODIFY} or {@code ENTRY_DELETE}.
+     */
+    void push(final WatchEvent.Kind<?> pKind) {
+        state = next(state, pKind);
+    }
+
+    /**
+     * @return Collapsed state, one of {@link #NONE}, {@link #CREATE}, {@link #MODIFY}, {@link #DELETE} or
+     * {@link #DELETE_CREATE}.
+     */
+    int getState() {
+        return state;
+    }
+}
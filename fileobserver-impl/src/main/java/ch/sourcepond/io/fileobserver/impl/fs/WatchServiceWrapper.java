@@ -13,49 +13,195 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.fs;
 
+import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
 import org.slf4j.Logger;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.lang.Integer.MAX_VALUE;
+import static java.lang.Math.min;
 import static java.lang.String.format;
-import static java.nio.file.StandardWatchEventKinds.*;
+import static java.nio.file.Files.getFileStore;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * Wraps the {@link WatchService} specified.
+ * Wraps the {@link WatchService} instances of a file system. By default, all directories are registered with the
+ * watch service of the file system. If other {@link WatchBackend} instances are specified, the backend of each
+ * directory is chosen by the file store of the directory, see {@link #register(Path)}.
+ *
+ * <p>If a polling backend is available, directories which would be watched natively are polled instead when no
+ * native watch can be obtained for them, or, when the native watch budget has been spent (see
+ * {@link Config#nativeWatchBudget()} and {@link Config#nativeWatchMaxDepth()}).</p>
  */
 public class WatchServiceWrapper implements Closeable {
     private static final Logger LOG = getLogger(WatchServiceWrapper.class);
+
+    // How long the receiver waits on the fallback watch service before it checks the other watch services again
+    private static final long MULTIPLEX_POLL_MILLIS = 100L;
     private final FileSystem fs;
-    private final WatchService watchService;
+    private final List<WatchBackend> backends;
+    private final WatchBackend fallback;
+    private final WatchService fallbackService;
+    private final Map<WatchBackend, WatchService> watchServices = new ConcurrentHashMap<>();
+    private final WatchBackend pollingOrNull;
+    private final DirectoryIndex dirsOrNull;
+    private final AtomicInteger nativeWatches = new AtomicInteger();
+    private volatile int nativeWatchBudget = MAX_VALUE;
+    private volatile int nativeWatchMaxDepth = MAX_VALUE;
+
+    // Number of native watches when the last native registration failed
+    private volatile int nativeWatchLimit = MAX_VALUE;
+    private volatile boolean closed;
 
     public WatchServiceWrapper(final FileSystem pFs) throws IOException {
+        this(pFs, emptyList(), null, null);
+    }
+
+    /**
+     * Creates a new wrapper.
+     *
+     * @param pFs              File system, must not be {@code null}
+     * @param pBackends        Backends to be asked in order whether they support the file store of a
+     *                         directory; must not be {@code null}
+     * @param pPollingOrNull   Backend to be used if the file system does not provide a watch service, or, if no
+     *                         native watch can be obtained for a directory; may be {@code null}
+     * @param pDirsOrNull      Registered directories, used to determine the depth of a directory below its root;
+     *                         may be {@code null}
+     * @throws IOException Thrown, if the watch service of the file system could not be created
+     */
+    public WatchServiceWrapper(final FileSystem pFs,
+                               final List<WatchBackend> pBackends,
+                               final WatchBackend pPollingOrNull,
+                               final DirectoryIndex pDirsOrNull) throws IOException {
         fs = pFs;
-        watchService = pFs.newWatchService();
+        backends = new ArrayList<>(pBackends);
+        pollingOrNull = pPollingOrNull;
+        dirsOrNull = pDirsOrNull;
+        WatchBackend fallbackBackend = NativeWatchBackend.INSTANCE;
+        WatchService service;
+        try {
+            service = fallbackBackend.newWatchService(pFs);
+        } catch (final UnsupportedOperationException e) {
+            if (pPollingOrNull == null) {
+                throw e;
+            }
+            LOG.info("File system {} does not provide a watch service; its directories will be polled", pFs);
+            fallbackBackend = pPollingOrNull;
+            service = fallbackBackend.newWatchService(pFs);
+        }
+        fallback = fallbackBackend;
+        fallbackService = service;
+        watchServices.put(fallback, service);
+    }
+
+    public void setConfig(final Config pConfig) {
+        final int budget = pConfig == null ? 0 : pConfig.nativeWatchBudget();
+        final int maxDepth = pConfig == null ? 0 : pConfig.nativeWatchMaxDepth();
+        nativeWatchBudget = budget > 0 ? budget : MAX_VALUE;
+        nativeWatchMaxDepth = maxDepth > 0 ? maxDepth : MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of directories which are currently watched by the native watch service.
+     *
+     * @return Number of native watches
+     */
+    int getNativeWatches() {
+        return nativeWatches.get();
     }
 
     @Override
     public void close() {
-        try {
-            watchService.close();
-        } catch (final IOException e) {
-            LOG.warn(e.getMessage(), e);
+        closed = true;
+        for (final WatchService watchService : watchServices.values()) {
+            try {
+                watchService.close();
+            } catch (final IOException e) {
+                LOG.warn(e.getMessage(), e);
+            }
         }
     }
 
     /**
-     * See {@link WatchService#take}.
+     * See {@link WatchService#take}. If directories are watched by multiple watch services (for instance, because
+     * some directories are polled), they are checked in turn.
      *
-     * @return
+     * @return Signalled key, never {@code null}
      */
     public WatchKey take() throws InterruptedException {
-        return watchService.take();
+        if (watchServices.size() == 1) {
+            return fallbackService.take();
+        }
+        while (true) {
+            final WatchKey key = pollServices();
+            if (key != null) {
+                return key;
+            }
+            final WatchKey fallbackKey = fallbackService.poll(MULTIPLEX_POLL_MILLIS, MILLISECONDS);
+            if (fallbackKey != null) {
+                return fallbackKey;
+            }
+        }
     }
 
     /**
-     * Registers the path specified with the {@link java.nio.file.WatchService} held by this object.
+     * See {@link WatchService#poll()}. Returns the next signalled key of any watch service without waiting.
+     *
+     * @return Signalled key, or {@code null} if none is present
+     */
+    public WatchKey poll() {
+        final WatchKey key = pollServices();
+        return key == null ? fallbackService.poll() : key;
+    }
+
+    private WatchKey pollServices() {
+        for (final WatchService watchService : watchServices.values()) {
+            final WatchKey key = watchService.poll();
+            if (key != null) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private WatchBackend selectBackend(final Path pDirectory) throws IOException {
+        if (!backends.isEmpty()) {
+            final FileStore store = getFileStore(pDirectory);
+            for (final WatchBackend backend : backends) {
+                if (backend.supports(store)) {
+                    return backend;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private synchronized WatchService getWatchService(final WatchBackend pBackend) throws IOException {
+        WatchService watchService = watchServices.get(pBackend);
+        if (watchService == null) {
+            if (closed) {
+                throw new ClosedWatchServiceException();
+            }
+            watchService = pBackend.newWatchService(fs);
+            watchServices.put(pBackend, watchService);
+        }
+        return watchService;
+    }
+
+    /**
+     * Registers the path specified with a watch service. The first backend which supports the file store of the
+     * directory determines the watch service; if no backend supports it, the watch service of the file system
+     * is used. If no native watch can be obtained, the directory is polled, see class comment.
      * If the path specified is not a directory, an {@link java.io.UncheckedIOException} will be caused to be thrown.
      *
      * @param pDirectory Directory to be watched, must not be {@code null}
@@ -64,14 +210,62 @@ public class WatchServiceWrapper implements Closeable {
      */
     public WatchKey register(final Path pDirectory) throws IOException {
         try {
-            final WatchKey key = pDirectory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-            LOG.debug("Added Directory {}", pDirectory);
-            return key;
+            final WatchBackend backend = selectBackend(pDirectory);
+            if (NativeWatchBackend.INSTANCE == backend && pollingOrNull != null) {
+                return registerNativeOrPolling(pDirectory);
+            }
+            return register(backend, pDirectory);
         } catch (final ClosedWatchServiceException e) {
             throw new IOException(format("Closed WatchService! Registration failed for %s", pDirectory), e);
         }
     }
 
+    private WatchKey register(final WatchBackend pBackend, final Path pDirectory) throws IOException {
+        final WatchKey key = pBackend.register(getWatchService(pBackend), pDirectory);
+        LOG.debug("Added Directory {} ({})", pDirectory, pBackend);
+        return key;
+    }
+
+    /**
+     * Counts how many parents of the directory specified are registered, i.e. how deep the directory is
+     * nested below its root.
+     */
+    private int depthOf(final Path pDirectory) {
+        int depth = 0;
+        if (dirsOrNull != null) {
+            for (Path p = pDirectory.getParent(); p != null && dirsOrNull.containsKey(p); p = p.getParent()) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private boolean isNativeWatchGranted(final Path pDirectory) {
+        return nativeWatches.get() < min(nativeWatchBudget, nativeWatchLimit) &&
+                (nativeWatchMaxDepth == MAX_VALUE || depthOf(pDirectory) <= nativeWatchMaxDepth);
+    }
+
+    private WatchKey registerNativeOrPolling(final Path pDirectory) throws IOException {
+        if (isNativeWatchGranted(pDirectory)) {
+            try {
+                return new NativeWatchKey(register(NativeWatchBackend.INSTANCE, pDirectory), nativeWatches);
+            } catch (final NoSuchFileException | NotDirectoryException e) {
+                // The directory cannot be polled either
+                throw e;
+            } catch (final IOException e) {
+                // Most likely, the operating system refuses further watches (for instance, when
+                // fs.inotify.max_user_watches has been reached). Poll until native watches are released.
+                final int watches = nativeWatches.get();
+                if (nativeWatchLimit == MAX_VALUE) {
+                    LOG.warn("No native watch could be obtained for {} ({}); {} directories are watched natively," +
+                            " further directories will be polled", pDirectory, e.getMessage(), watches);
+                }
+                nativeWatchLimit = watches;
+            }
+        }
+        return register(pollingOrNull, pDirectory);
+    }
+
     @Override
     public String toString() {
         return format("scheme:%s", fs.provider().getScheme());
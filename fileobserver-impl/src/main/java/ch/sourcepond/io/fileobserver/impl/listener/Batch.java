@@ -0,0 +1,78 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.api.BatchPathChangeListener;
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
+import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Collects the events which should be delivered to a single {@link BatchPathChangeListener} at once.
+ */
+final class Batch {
+    private final List<PathChangeEvent> events = new ArrayList<>();
+    private final List<Collection<DispatchKey>> parentKeys = new ArrayList<>();
+    private final Set<DispatchKey> discardedKeys = new LinkedHashSet<>();
+
+    synchronized void modified(final PathChangeEvent pEvent, final Collection<DispatchKey> pParentKeys) {
+        events.add(pEvent);
+        parentKeys.add(pParentKeys);
+    }
+
+    synchronized void discard(final DispatchKey pKey) {
+        discardedKeys.add(pKey);
+    }
+
+    synchronized boolean isEmpty() {
+        return events.isEmpty() && discardedKeys.isEmpty();
+    }
+
+    synchronized void beforeDelivery(final KeyDeliveryHook pHook) {
+        discardedKeys.forEach(pHook::beforeDiscard);
+        events.forEach(e -> pHook.beforeModify(e.getKey(), e.getFile()));
+    }
+
+    synchronized void afterDelivery(final KeyDeliveryHook pHook) {
+        discardedKeys.forEach(pHook::afterDiscard);
+        events.forEach(e -> pHook.afterModify(e.getKey(), e.getFile()));
+    }
+
+    synchronized void deliver(final BatchPathChangeListener pListener) {
+        if (!discardedKeys.isEmpty()) {
+            pListener.discard(unmodifiableList(new ArrayList<>(discardedKeys)));
+        }
+        if (!events.isEmpty()) {
+            for (int i = 0; i < events.size(); i++) {
+                ListenerManager.supplement(pListener, events.get(i).getKey(), parentKeys.get(i));
+                DefaultPathChangeEvent.deliveryStarted(events.get(i));
+            }
+            try {
+                pListener.modified(unmodifiableList(events));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.api.BatchPathChangeListener;
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Dispatcher which collects the events for {@link BatchPathChangeListener} instances and delivers
+ * them at once as soon as this dispatcher has been closed <em>and</em> every asynchronous operation
+ * which retained this dispatcher (see {@link #retain()}) has released it. Events for any other listener are
+ * dispatched immediately.</p>
+ *
+ * <p>Events which are passed to this dispatcher after the batch has been delivered are dispatched
+ * one-by-one.</p>
+ */
+public class BatchEventDispatcher extends EventDispatcher implements Closeable {
+    private final ListenerManager manager;
+    private final Map<BatchPathChangeListener, Batch> batches = new ConcurrentHashMap<>();
+
+    // The creator of this dispatcher holds the first reference
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile boolean delivered;
+
+    BatchEventDispatcher(final ListenerManager pManager, final Collection<PathChangeListener> pListeners) {
+        super(pManager, pListeners);
+        manager = pManager;
+    }
+
+    Batch getBatch(final BatchPathChangeListener pListener) {
+        return batches.computeIfAbsent(pListener, l -> new Batch());
+    }
+
+    @Override
+    public void modified(final DispatchKey pKey, final Path pFile, final Collection<DispatchKey> pParentKeys) {
+        if (delivered) {
+            super.modified(pKey, pFile, pParentKeys);
+        } else {
+            manager.modified(this, getListeners(), pKey, pFile, pParentKeys);
+        }
+    }
+
+    @Override
+    public void discard(final DispatchKey pKey) {
+        if (delivered) {
+            super.discard(pKey);
+        } else {
+            manager.discard(this, getListeners(), pKey);
+        }
+    }
+
+    @Override
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            delivered = true;
+            batches.forEach(manager::deliver);
+            batches.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
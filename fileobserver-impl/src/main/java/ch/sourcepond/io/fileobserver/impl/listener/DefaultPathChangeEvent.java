@@ -16,10 +16,15 @@ package ch.sourcepond.io.fileobserver.impl.listener;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+
 /**
  *
  */
@@ -29,6 +34,9 @@ class DefaultPathChangeEvent implements PathChangeEvent {
     private final Collection<DispatchKey> parentKeys;
     private final PathChangeListener listener;
     private final ReplayDispatcher replayDispatcher;
+    private final EventTimestamps timestamps;
+    private volatile long deliveryNanos;
+    private volatile boolean deliveryStarted;
     private volatile int numReplays;
 
     DefaultPathChangeEvent(final PathChangeListener pListener,
@@ -41,6 +49,26 @@ class DefaultPathChangeEvent implements PathChangeEvent {
         file = pFile;
         parentKeys = pParentKeys;
         replayDispatcher = pReplayDispatcher;
+        timestamps = EventTimestamps.currentOrNow();
+
+        // Until the delivery has been started, see deliveryStarted()
+        deliveryNanos = timestamps.getChecksumNanos();
+    }
+
+    /**
+     * Records that the delivery of the event specified to its listener starts now. Only the first delivery is
+     * recorded; replays do not change the delivery timestamp. Events of other types are ignored.
+     *
+     * @param pEvent Event, must not be {@code null}
+     */
+    static void deliveryStarted(final PathChangeEvent pEvent) {
+        if (pEvent instanceof DefaultPathChangeEvent) {
+            final DefaultPathChangeEvent event = (DefaultPathChangeEvent) pEvent;
+            if (!event.deliveryStarted) {
+                event.deliveryNanos = nanoTime();
+                event.deliveryStarted = true;
+            }
+        }
     }
 
     @Override
@@ -58,12 +86,39 @@ class DefaultPathChangeEvent implements PathChangeEvent {
         return numReplays;
     }
 
+    @Override
+    public long getReceivedNanos() {
+        return timestamps.getReceivedNanos();
+    }
+
+    @Override
+    public long getDebouncedNanos() {
+        return timestamps.getDebouncedNanos();
+    }
+
+    @Override
+    public long getChecksumNanos() {
+        return timestamps.getChecksumNanos();
+    }
+
+    @Override
+    public long getDeliveryNanos() {
+        return deliveryNanos;
+    }
+
     @Override
     public void replay() {
         numReplays++;
         replayDispatcher.replay(listener, this, parentKeys);
     }
 
+    @Override
+    public void replay(final Duration pDelay) {
+        requireNonNull(pDelay, "Delay is null");
+        numReplays++;
+        replayDispatcher.replay(listener, this, parentKeys, pDelay);
+    }
+
     @Override
     public String toString() {
         return "PathChangeEvent[key: " + key + ", numReplays: " + numReplays + ", file: " + file + "]";
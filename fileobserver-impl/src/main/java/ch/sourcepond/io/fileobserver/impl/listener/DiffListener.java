@@ -13,13 +13,12 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.listener;
 
-import ch.sourcepond.io.checksum.api.Resource;
-import ch.sourcepond.io.checksum.api.Update;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 import ch.sourcepond.io.fileobserver.impl.Config;
 import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import ch.sourcepond.io.fileobserver.impl.directory.FileChecksum;
 import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystem;
 import org.slf4j.Logger;
 
@@ -56,32 +55,33 @@ class DiffListener implements PathChangeListener, Closeable {
         config = pConfig;
     }
 
-    private void informModified(final Update pUpdate, final DispatchKey pKey, final Path pFile) {
-        if (pUpdate.hasChanged()) {
+    private void informModified(final boolean pChanged, final DispatchKey pKey, final Path pFile) {
+        if (pChanged) {
             final Collection<DispatchKey> supplementKeysOrNull = supplementKeys.computeIfAbsent(pKey, k -> emptyList());
             dispatcher.modified(pKey, pFile, supplementKeysOrNull);
         }
     }
 
-    private Resource getResource(final Path pFile) {
+    private FileChecksum getChecksum(final Path pFile) {
         final Directory dir = fs.getDirectory(pFile.getParent());
         if (dir == null) {
             LOG.warn("Checksum update cancelled because no directory registered for {}", pFile);
             return null;
         }
-        return dir.getResource(pFile);
+        return dir.getChecksum(pFile);
     }
 
-    private void updateResource(final DispatchKey pKey, final Path pFile) {
-        final Resource resource = getResource(pFile);
-        if (resource != null) {
-            resource.update(config.writeDeadlineMillis(), u -> informModified(u, pKey, pFile));
+    private void updateChecksum(final DispatchKey pKey, final Path pFile) {
+        final FileChecksum checksum = getChecksum(pFile);
+        if (checksum != null) {
+            checksum.update(config.writeDeadlineMillis(),
+                    (changed, current, hashedBytes) -> informModified(changed, pKey, pFile));
         }
     }
 
     @Override
     public void close() {
-        modifiedKeys.forEach(this::updateResource);
+        modifiedKeys.forEach(this::updateChecksum);
         discardedKeys.removeAll(modifiedKeys.keySet());
         discardedKeys.forEach(k -> dispatcher.discard(k));
     }
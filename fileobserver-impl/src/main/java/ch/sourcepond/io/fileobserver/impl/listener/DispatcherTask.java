@@ -16,6 +16,7 @@ package ch.sourcepond.io.fileobserver.impl.listener;
 import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 import ch.sourcepond.io.fileobserver.impl.dispatch.KeyDeliveryConsumer;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
 import org.slf4j.Logger;
 
 import java.util.Collection;
@@ -34,6 +35,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 class DispatcherTask<T> implements Runnable {
     private static final Logger LOG = getLogger(DispatcherTask.class);
     private final ExecutorService listenerExecutor;
+    private final Metrics metrics;
     private final Collection<KeyDeliveryHook> hooks;
     private final Collection<PathChangeListener> listeners;
     private final Consumer<PathChangeListener> fireEventConsumer;
@@ -42,6 +44,7 @@ class DispatcherTask<T> implements Runnable {
     private final T keyOrEvent;
 
     DispatcherTask(final ExecutorService pListenerExecutor,
+                   final Metrics pMetrics,
                    final Collection<KeyDeliveryHook> pHooks,
                    final Collection<PathChangeListener> pListeners,
                    final T pKeyOrEvent,
@@ -49,6 +52,7 @@ class DispatcherTask<T> implements Runnable {
                    final KeyDeliveryConsumer<T> pBeforeConsumer,
                    final KeyDeliveryConsumer<T> pAfterConsumer) {
         listenerExecutor = pListenerExecutor;
+        metrics = pMetrics;
         hooks = pHooks;
         listeners = pListeners;
         keyOrEvent = pKeyOrEvent;
@@ -77,8 +81,18 @@ class DispatcherTask<T> implements Runnable {
 
     private void submitObserverTask(final PathChangeListener pObserver, final Collection<Future<?>> pJoins) {
         if (!currentThread().isInterrupted()) {
-            pJoins.add(listenerExecutor.submit(() ->
-                    fireEventConsumer.accept(pObserver)));
+            pJoins.add(listenerExecutor.submit(() -> deliver(pObserver)));
+        }
+    }
+
+    private void deliver(final PathChangeListener pObserver) {
+        final long start = metrics.startTimer();
+        boolean failed = true;
+        try {
+            fireEventConsumer.accept(pObserver);
+            failed = false;
+        } finally {
+            metrics.delivered(pObserver, start, failed);
         }
     }
 
@@ -39,10 +39,30 @@ public class EventDispatcher {
         listeners = pListeners;
     }
 
+    Collection<PathChangeListener> getListeners() {
+        return listeners;
+    }
+
     public boolean hasListeners() {
         return !listeners.isEmpty();
     }
 
+    /**
+     * Signals that an asynchronous operation has been started which possibly delivers events through
+     * this dispatcher when it's done, for instance a checksum update. Every call to this method must be
+     * followed by exactly one call to {@link #release()} when the operation is done.
+     */
+    public void retain() {
+        // noop by default
+    }
+
+    /**
+     * Signals that an asynchronous operation started with {@link #retain()} is done.
+     */
+    public void release() {
+        // noop by default
+    }
+
     public void modified(final DispatchKey pKey, final Path pFile, final Collection<DispatchKey> pParentKeys) {
         dispatcher.modified(listeners, pKey, pFile, pParentKeys);
     }
@@ -13,21 +13,27 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.listener;
 
+import ch.sourcepond.io.fileobserver.api.BatchPathChangeListener;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.SharedScheduler;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
 import ch.sourcepond.io.fileobserver.impl.dispatch.KeyDeliveryConsumer;
 import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystem;
+import ch.sourcepond.io.fileobserver.impl.metrics.Metrics;
 import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestriction;
 import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestrictionFactory;
-import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,26 +41,31 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
-import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * This class handles everything necessary to inform registered {@link PathChangeListener} and
  * {@link KeyDeliveryHook} instances.
  */
 public class ListenerManager implements ReplayDispatcher {
-    private static final Logger LOG = getLogger(ListenerManager.class);
     private final DefaultDispatchRestrictionFactory restrictionFactory;
     private final DispatchEventFactory dispatchEventFactory;
     private final Set<KeyDeliveryHook> hooks = new CopyOnWriteArraySet<>();
     private final ConcurrentMap<PathChangeListener, Map<FileSystem, DefaultDispatchRestriction>> listeners = new ConcurrentHashMap<>();
     private final EventDispatcher defaultDispatcher = new EventDispatcher(this, listeners.keySet());
     private volatile Executor dispatcherExecutor;
+    private volatile StripedExecutor stripedExecutorOrNull;
     private volatile ExecutorService listenerExecutor;
+    private volatile SharedScheduler scheduler = new SharedScheduler();
     private volatile Config config;
+    private volatile Metrics metrics = new Metrics();
 
     // Constructor for activator
     public ListenerManager() {
@@ -70,6 +81,7 @@ public class ListenerManager implements ReplayDispatcher {
 
     public EventDispatcher addListener(final PathChangeListener pListener) {
         listeners.computeIfAbsent(pListener, o -> new ConcurrentHashMap<>());
+        metrics.listenerAdded(pListener);
         return new EventDispatcher(this, pListener);
     }
 
@@ -77,6 +89,16 @@ public class ListenerManager implements ReplayDispatcher {
         return new DiffEventDispatcher(this, new DiffListener(pFs, defaultDispatcher, config));
     }
 
+    /**
+     * Opens a new dispatcher which collects the events for {@link BatchPathChangeListener} instances
+     * until it has been closed, see {@link BatchEventDispatcher}.
+     *
+     * @return New batch dispatcher, never {@code null}
+     */
+    public BatchEventDispatcher openBatch() {
+        return new BatchEventDispatcher(this, listeners.keySet());
+    }
+
     public EventDispatcher getDefaultDispatcher() {
         return defaultDispatcher;
     }
@@ -87,11 +109,51 @@ public class ListenerManager implements ReplayDispatcher {
 
     public void setConfig(final Config pConfig) {
         config = pConfig;
+        updateStripedExecutor();
     }
 
     public void setExecutors(final ExecutorService pDispatcherExecutor, final ExecutorService pListenerExecutor) {
         dispatcherExecutor = pDispatcherExecutor;
         listenerExecutor = pListenerExecutor;
+        updateStripedExecutor();
+    }
+
+    /**
+     * Creates the lanes for ordered delivery if configured (see {@link Config#deliveryLanes()}). Tasks which
+     * are already queued on previous lanes will still be executed, but may overlap with tasks on the new lanes.
+     */
+    private synchronized void updateStripedExecutor() {
+        final Config cfg = config;
+        final Executor executor = dispatcherExecutor;
+        final int laneCount = cfg == null ? 0 : cfg.deliveryLanes();
+        final StripedExecutor current = stripedExecutorOrNull;
+        if (laneCount <= 0 || executor == null) {
+            stripedExecutorOrNull = null;
+        } else if (current == null || current.getLaneCount() != laneCount || current.getExecutor() != executor) {
+            stripedExecutorOrNull = new StripedExecutor(executor, laneCount);
+        }
+    }
+
+    public void setMetrics(final Metrics pMetrics) {
+        metrics = pMetrics;
+    }
+
+    /**
+     * Sets the scheduler whose timer delays replayed events. The timer only enqueues the events; they are
+     * delivered by the dispatcher executor.
+     *
+     * @param pScheduler Scheduler, must not be {@code null}
+     */
+    public void setScheduler(final SharedScheduler pScheduler) {
+        scheduler = pScheduler;
+    }
+
+    /**
+     * Stops the timer which delays replayed events. Events which are waiting for their delay to expire
+     * are dropped.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
     }
 
     public void addHook(final KeyDeliveryHook pHook) {
@@ -100,46 +162,54 @@ public class ListenerManager implements ReplayDispatcher {
 
     public void removeObserver(final PathChangeListener pListener) {
         listeners.remove(pListener);
+        metrics.listenerRemoved(pListener);
     }
 
     public void removeHook(final KeyDeliveryHook pHook) {
         hooks.remove(pHook);
     }
 
+    static void supplement(final PathChangeListener pListener,
+                           final DispatchKey pKey,
+                           final Collection<DispatchKey> pParentKeys) {
+        for (final DispatchKey parentKey : pParentKeys) {
+            /*
+             * Suppose:
+             * Parent /A [dirKey:K2] -> Has been added as new root
+             *    Child /A/B [dirKey:K2] -> Derived from new root = nothing to supplement
+             *               [dirKey:K1] -> Was there before new root had been added = A/B supplements B
+             *
+             * When iterating over parent keys ignore those which are derived from new parent.
+             *
+             */
+            if (!pKey.getDirectoryKey().equals(parentKey.getDirectoryKey())) {
+                pListener.supplement(pKey, parentKey);
+            }
+        }
+    }
+
     private static void fireModification(final PathChangeListener pListener,
                                          final PathChangeEvent pEvent,
                                          final Collection<DispatchKey> pParentKeys) {
-        final DispatchKey key = pEvent.getKey();
-        if (!pParentKeys.isEmpty()) {
-            for (final DispatchKey parentKey : pParentKeys) {
-                /*
-                 * Suppose:
-                 * Parent /A [dirKey:K2] -> Has been added as new root
-                 *    Child /A/B [dirKey:K2] -> Derived from new root = nothing to supplement
-                 *               [dirKey:K1] -> Was there before new root had been added = A/B supplements B
-                 *
-                 * When iterating over parent keys ignore those which are derived from new parent.
-                 *
-                 */
-                if (!key.getDirectoryKey().equals(parentKey.getDirectoryKey())) {
-                    pListener.supplement(key, parentKey);
-                }
-            }
-        }
+        supplement(pListener, pEvent.getKey(), pParentKeys);
+        DefaultPathChangeEvent.deliveryStarted(pEvent);
         try {
             pListener.modified(pEvent);
         } catch (final IOException e) {
-            LOG.warn(e.getMessage(), e);
+            // Logged by the dispatcher task, which also counts the failure
+            throw new UncheckedIOException(e.getMessage(), e);
         }
     }
 
     private void fireModification(final PathChangeListener pListener,
                                   final DispatchKey pKey,
                                   final Path pFile,
-                                  final Collection<DispatchKey> pParentKeys) {
-        fireModification(pListener,
+                                  final Collection<DispatchKey> pParentKeys,
+                                  final EventTimestamps pTimestamps) {
+        // The event is created on the listener thread; bind the timestamps captured on submission
+        pTimestamps.runWith(() -> fireModification(pListener,
                 dispatchEventFactory.create(pListener, pKey, pFile, pParentKeys, this),
-                pParentKeys);
+                pParentKeys));
     }
 
     private DefaultDispatchRestriction createRestriction(final PathChangeListener pListener, final FileSystem pFs) {
@@ -150,25 +220,54 @@ public class ListenerManager implements ReplayDispatcher {
 
     private boolean isAccepted(final PathChangeListener pListener, final DispatchKey pDispatchKey) {
         final FileSystem fs = pDispatchKey.getRelativePath().getFileSystem();
-        return listeners.computeIfAbsent(
-                pListener, o -> new ConcurrentHashMap<>()).
-                computeIfAbsent(fs, f -> createRestriction(pListener, f)).isAccepted(pDispatchKey);
+
+        // Look up with get first; computeIfAbsent locks even if the mapping exists
+        Map<FileSystem, DefaultDispatchRestriction> restrictions = listeners.get(pListener);
+        if (restrictions == null) {
+            restrictions = listeners.computeIfAbsent(pListener, o -> new ConcurrentHashMap<>());
+        }
+        DefaultDispatchRestriction restriction = restrictions.get(fs);
+        if (restriction == null) {
+            restriction = restrictions.computeIfAbsent(fs, f -> createRestriction(pListener, f));
+        }
+        final Metrics m = metrics;
+        final long start = m.startTimer();
+        final boolean accepted = restriction.isAccepted(pDispatchKey);
+        m.restrictionEvaluated(start);
+        return accepted;
     }
 
-    private <T> void submitTask(final Collection<PathChangeListener> pListeners,
+    /**
+     * Submits a dispatcher task. If ordered delivery is enabled, tasks with equal lane keys are executed
+     * one after another in submission order.
+     */
+    private <T> void submitTask(final Object pLaneKey,
+                                final Collection<PathChangeListener> pListeners,
                                 final T pKeyOrEvent,
                                 final Consumer<PathChangeListener> pFireEventConsumer,
                                 final KeyDeliveryConsumer<T> pBeforeConsumer,
                                 final KeyDeliveryConsumer<T> pAfterConsumer) {
-        dispatcherExecutor.execute(new DispatcherTask(
+        final DispatcherTask<T> task = new DispatcherTask<>(
                 listenerExecutor,
+                metrics,
                 hooks,
                 pListeners,
                 pKeyOrEvent,
                 pFireEventConsumer,
                 pBeforeConsumer,
                 pAfterConsumer
-        ));
+        );
+        final StripedExecutor stripedExecutor = stripedExecutorOrNull;
+        if (stripedExecutor == null) {
+            dispatcherExecutor.execute(task);
+        } else {
+            stripedExecutor.execute(pLaneKey, task);
+        }
+    }
+
+    private Collection<PathChangeListener> acceptingListeners(final Collection<PathChangeListener> pListeners,
+                                                              final DispatchKey pKey) {
+        return pListeners.stream().filter(o -> isAccepted(o, pKey)).collect(toList());
     }
 
     private void submitDispatchTask(final Collection<PathChangeListener> pListeners,
@@ -176,10 +275,21 @@ public class ListenerManager implements ReplayDispatcher {
                                     final Consumer<PathChangeListener> pFireEventConsumer,
                                     final KeyDeliveryConsumer<DispatchKey> pBeforeConsumer,
                                     final KeyDeliveryConsumer<DispatchKey> pAfterConsumer) {
-        final Collection<PathChangeListener> acceptingListeners = pListeners.stream().filter(
-                o -> isAccepted(o, pKey)).collect(toList());
-        if (!acceptingListeners.isEmpty()) {
-            submitTask(acceptingListeners,
+        submitAcceptedTask(acceptingListeners(pListeners, pKey),
+                pKey,
+                pFireEventConsumer,
+                pBeforeConsumer,
+                pAfterConsumer);
+    }
+
+    private void submitAcceptedTask(final Collection<PathChangeListener> pAcceptingListeners,
+                                    final DispatchKey pKey,
+                                    final Consumer<PathChangeListener> pFireEventConsumer,
+                                    final KeyDeliveryConsumer<DispatchKey> pBeforeConsumer,
+                                    final KeyDeliveryConsumer<DispatchKey> pAfterConsumer) {
+        if (!pAcceptingListeners.isEmpty()) {
+            submitTask(pKey,
+                    pAcceptingListeners,
                     pKey,
                     pFireEventConsumer,
                     pBeforeConsumer,
@@ -192,7 +302,36 @@ public class ListenerManager implements ReplayDispatcher {
     public void replay(final PathChangeListener pListener,
                        final PathChangeEvent pEvent,
                        final Collection<DispatchKey> pParentKeys) {
-        submitTask(asList(pListener),
+        replay(pListener, pEvent, pParentKeys, ReplayBackoff.delayMillis(config, pEvent.getNumReplays()), MILLISECONDS);
+    }
+
+    @Override
+    public void replay(final PathChangeListener pListener,
+                       final PathChangeEvent pEvent,
+                       final Collection<DispatchKey> pParentKeys,
+                       final Duration pDelay) {
+        // Durations beyond roughly 292 years cannot be expressed in nanoseconds
+        replay(pListener, pEvent, pParentKeys, pDelay.getSeconds() >= Long.MAX_VALUE / 1_000_000_000L ?
+                Long.MAX_VALUE : pDelay.toNanos(), NANOSECONDS);
+    }
+
+    private void replay(final PathChangeListener pListener,
+                        final PathChangeEvent pEvent,
+                        final Collection<DispatchKey> pParentKeys,
+                        final long pDelay,
+                        final TimeUnit pUnit) {
+        if (pDelay <= 0L) {
+            replayNow(pListener, pEvent, pParentKeys);
+        } else {
+            scheduler.get().schedule(() -> replayNow(pListener, pEvent, pParentKeys), pDelay, pUnit);
+        }
+    }
+
+    private void replayNow(final PathChangeListener pListener,
+                           final PathChangeEvent pEvent,
+                           final Collection<DispatchKey> pParentKeys) {
+        submitTask(pEvent.getKey(),
+                asList(pListener),
                 pEvent,
                 observer -> fireModification(pListener, pEvent, pParentKeys),
                 (hook, event) -> hook.beforeModify(event.getKey(), event.getFile()),
@@ -201,10 +340,11 @@ public class ListenerManager implements ReplayDispatcher {
     }
 
     void modified(final Collection<PathChangeListener> pListeners, final DispatchKey pKey, final Path pFile, final Collection<DispatchKey> pParentKeys) {
+        final EventTimestamps timestamps = EventTimestamps.currentOrNow();
         submitDispatchTask(
                 pListeners,
                 pKey,
-                observer -> fireModification(observer, pKey, pFile, pParentKeys),
+                observer -> fireModification(observer, pKey, pFile, pParentKeys, timestamps),
                 (hook, key) -> hook.beforeModify(key, pFile),
                 (hook, key) -> hook.afterModify(key, pFile)
         );
@@ -220,6 +360,66 @@ public class ListenerManager implements ReplayDispatcher {
         );
     }
 
+    /**
+     * Splits the listeners specified into batch listeners and ordinary listeners. Accepting batch listeners
+     * are returned and removed from the collection specified, the ordinary listeners remain.
+     */
+    private static Collection<BatchPathChangeListener> extractBatchListeners(final Collection<PathChangeListener> pAcceptingListeners) {
+        final Collection<BatchPathChangeListener> batchListeners = new LinkedList<>();
+        pAcceptingListeners.removeIf(l -> {
+            if (l instanceof BatchPathChangeListener) {
+                batchListeners.add((BatchPathChangeListener) l);
+                return true;
+            }
+            return false;
+        });
+        return batchListeners;
+    }
+
+    void modified(final BatchEventDispatcher pBatchDispatcher,
+                  final Collection<PathChangeListener> pListeners,
+                  final DispatchKey pKey,
+                  final Path pFile,
+                  final Collection<DispatchKey> pParentKeys) {
+        final Collection<PathChangeListener> acceptingListeners = acceptingListeners(pListeners, pKey);
+        final EventTimestamps timestamps = EventTimestamps.currentOrNow();
+        extractBatchListeners(acceptingListeners).forEach(l -> pBatchDispatcher.getBatch(l).modified(
+                dispatchEventFactory.create(l, pKey, pFile, pParentKeys, this), pParentKeys));
+        submitAcceptedTask(
+                acceptingListeners,
+                pKey,
+                observer -> fireModification(observer, pKey, pFile, pParentKeys, timestamps),
+                (hook, key) -> hook.beforeModify(key, pFile),
+                (hook, key) -> hook.afterModify(key, pFile)
+        );
+    }
+
+    void discard(final BatchEventDispatcher pBatchDispatcher,
+                 final Collection<PathChangeListener> pListeners,
+                 final DispatchKey pKey) {
+        final Collection<PathChangeListener> acceptingListeners = acceptingListeners(pListeners, pKey);
+        extractBatchListeners(acceptingListeners).forEach(l -> pBatchDispatcher.getBatch(l).discard(pKey));
+        submitAcceptedTask(
+                acceptingListeners,
+                pKey,
+                observer -> observer.discard(pKey),
+                (hook, key) -> hook.beforeDiscard(key),
+                (hook, key) -> hook.afterDiscard(key)
+        );
+    }
+
+    void deliver(final BatchPathChangeListener pListener, final Batch pBatch) {
+        if (!pBatch.isEmpty()) {
+            submitTask(pListener,
+                    singletonList((PathChangeListener) pListener),
+                    pBatch,
+                    observer -> pBatch.deliver(pListener),
+                    (hook, batch) -> batch.beforeDelivery(hook),
+                    (hook, batch) -> batch.afterDelivery(hook)
+            );
+        }
+    }
+
     public void removeFileSystem(final FileSystem pFs) {
         listeners.values().forEach(m -> m.remove(pFs));
     }
@@ -0,0 +1,49 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.impl.Config;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.pow;
+
+/**
+ * Exponential backoff for replayed events, see {@link Config#replayBackoffInitialMillis()}.
+ */
+final class ReplayBackoff {
+
+    private ReplayBackoff() {
+        // No instance needed
+    }
+
+    /**
+     * Calculates the delay until an event which has been replayed the number of times specified is
+     * delivered again.
+     *
+     * @param pConfig     Configuration, may be {@code null}
+     * @param pNumReplays Number of replays including the current one
+     * @return Delay in milliseconds, 0 if the event should be delivered immediately
+     */
+    static long delayMillis(final Config pConfig, final int pNumReplays) {
+        final long initial = pConfig == null ? 0L : pConfig.replayBackoffInitialMillis();
+        if (initial <= 0L) {
+            return 0L;
+        }
+        final long maxDelay = max(initial, pConfig.replayBackoffMaxMillis());
+        final double multiplier = max(1.0, pConfig.replayBackoffMultiplier());
+        final double delay = initial * pow(multiplier, max(0, pNumReplays - 1));
+        return (long) min(maxDelay, delay);
+    }
+}
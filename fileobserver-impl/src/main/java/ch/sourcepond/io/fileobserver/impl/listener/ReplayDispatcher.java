@@ -17,15 +17,26 @@ import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 
+import java.time.Duration;
 import java.util.Collection;
 
 /**
  *
  */
-@FunctionalInterface
 interface ReplayDispatcher {
 
+    /**
+     * Replays the event specified after the delay determined by the configured backoff policy.
+     */
     void replay(PathChangeListener pListener,
                 PathChangeEvent pEvent,
                 Collection<DispatchKey> pParentKeys);
+
+    /**
+     * Replays the event specified after the delay specified.
+     */
+    void replay(PathChangeListener pListener,
+                PathChangeEvent pEvent,
+                Collection<DispatchKey> pParentKeys,
+                Duration pDelay);
 }
@@ -0,0 +1,120 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import org.slf4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Distributes tasks by the hash of a key onto a fixed number of serial lanes. Tasks of the same lane
+ * are executed one after another in submission order, tasks of different lanes run in parallel on the
+ * underlying executor. Because a lane occupies at most one thread at a time, the number of threads used
+ * is bounded by the number of lanes.
+ */
+final class StripedExecutor {
+    private static final Logger LOG = getLogger(StripedExecutor.class);
+    private final Executor executor;
+    private final Lane[] lanes;
+
+    private static final class Lane implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Executor executor;
+
+        Lane(final Executor pExecutor) {
+            executor = pExecutor;
+        }
+
+        void execute(final Runnable pTask) {
+            tasks.offer(pTask);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (final RuntimeException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (final RuntimeException e) {
+                        LOG.warn(e.getMessage(), e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // A task could have been offered after the last poll, but before the
+                // flag had been reset; in this case nobody else would schedule this lane.
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * @param pExecutor  Executor which runs the lanes, must not be {@code null}
+     * @param pLaneCount Number of lanes, must be greater than zero
+     */
+    StripedExecutor(final Executor pExecutor, final int pLaneCount) {
+        if (pLaneCount < 1) {
+            throw new IllegalArgumentException("Lane count must be greater than zero");
+        }
+        executor = pExecutor;
+        lanes = new Lane[pLaneCount];
+        for (int i = 0; i < pLaneCount; i++) {
+            lanes[i] = new Lane(pExecutor);
+        }
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    int getLaneCount() {
+        return lanes.length;
+    }
+
+    int laneOf(final Object pKey) {
+        final int h = pKey.hashCode();
+        // Spread higher bits downwards, the same as HashMap does
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % lanes.length;
+    }
+
+    /**
+     * Executes the task specified on the lane of the key specified. Tasks whose keys are equal
+     * are executed in the order they have been submitted.
+     *
+     * @param pKey  Key which determines the lane, must not be {@code null}
+     * @param pTask Task to execute, must not be {@code null}
+     */
+    void execute(final Object pKey, final Runnable pTask) {
+        lanes[laneOf(pKey)].execute(pTask);
+    }
+}
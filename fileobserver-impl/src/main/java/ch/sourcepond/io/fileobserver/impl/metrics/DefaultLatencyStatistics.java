@@ -0,0 +1,72 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.LatencyStatistics;
+
+import static java.lang.String.format;
+
+/**
+ * Immutable snapshot of a {@link LatencyHistogram}.
+ */
+final class DefaultLatencyStatistics implements LatencyStatistics {
+    private final long count;
+    private final long meanNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+
+    DefaultLatencyStatistics(final long pCount,
+                             final long pMeanNanos,
+                             final long pMaxNanos,
+                             final long pP50Nanos,
+                             final long pP99Nanos) {
+        count = pCount;
+        meanNanos = pMeanNanos;
+        maxNanos = pMaxNanos;
+        p50Nanos = pP50Nanos;
+        p99Nanos = pP99Nanos;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    @Override
+    public String toString() {
+        return format("count: %d, mean: %dns, p50: %dns, p99: %dns, max: %dns",
+                count, meanNanos, p50Nanos, p99Nanos, maxNanos);
+    }
+}
@@ -0,0 +1,84 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.LatencyStatistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations. Durations are counted in buckets whose bounds are powers of two; bucket
+ * {@code i} holds durations {@code d} with {@code 2^(i-1) <= d < 2^i}.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = 65;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    static int bucketOf(final long pNanos) {
+        return 64 - Long.numberOfLeadingZeros(pNanos);
+    }
+
+    void record(final long pNanos) {
+        final long nanos = pNanos < 0 ? 0 : pNanos;
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    private static long upperBound(final int pBucket) {
+        return pBucket >= 63 ? Long.MAX_VALUE : (1L << pBucket) - 1;
+    }
+
+    private long percentile(final long[] pCounts, final long pTotal, final double pQuantile, final long pMax) {
+        final long rank = (long) Math.ceil(pTotal * pQuantile);
+        long seen = 0;
+        for (int i = 0; i < pCounts.length; i++) {
+            seen += pCounts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), pMax);
+            }
+        }
+        return pMax;
+    }
+
+    /**
+     * Creates a snapshot of the current statistics. Durations which are recorded concurrently may
+     * or may not be included.
+     *
+     * @return Snapshot, never {@code null}
+     */
+    LatencyStatistics snapshot() {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return new DefaultLatencyStatistics(0, 0, 0, 0, 0);
+        }
+        final long maxNanos = max.get();
+        return new DefaultLatencyStatistics(total,
+                sum.sum() / Math.max(1, count.sum()),
+                maxNanos,
+                percentile(counts, total, 0.5, maxNanos),
+                percentile(counts, total, 0.99, maxNanos));
+    }
+}
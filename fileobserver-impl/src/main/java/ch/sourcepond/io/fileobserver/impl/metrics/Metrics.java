@@ -0,0 +1,231 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.FileObserverMetrics;
+import ch.sourcepond.io.fileobserver.api.LatencyStatistics;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+
+import java.nio.file.WatchEvent;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Collects the metrics of the file observer. Counters are maintained with {@link LongAdder} instances which
+ * are cheap to update even under contention. Durations are only measured after the metrics have been read
+ * once (see {@link #startTimer()}); before, the instrumented code does not even read the clock.
+ */
+public class Metrics implements FileObserverMetrics {
+    /**
+     * Returned by {@link #startTimer()} when durations are not measured.
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final String LAMBDA_MARKER = "$$Lambda";
+    private final ConcurrentMap<String, LongAdder> watchEvents = new ConcurrentHashMap<>();
+    private final LongAdder debouncedEvents = new LongAdder();
+    private final LongAdder unchangedChecksums = new LongAdder();
+    private final LongAdder hashedBytes = new LongAdder();
+    private final LatencyHistogram hashingTime = new LatencyHistogram();
+    private final LatencyHistogram restrictionTime = new LatencyHistogram();
+    private final ConcurrentMap<PathChangeListener, ListenerMetrics> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong listenerSequence = new AtomicLong();
+    private volatile IntSupplier pendingEvents = () -> 0;
+    private volatile boolean timingEnabled;
+
+    private static final class ListenerMetrics {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder failures = new LongAdder();
+
+        ListenerMetrics(final String pName) {
+            name = pName;
+        }
+    }
+
+    private static <T> T get(final ConcurrentMap<String, T> pMap, final String pKey, final Supplier<T> pFactory) {
+        // Look up with get first; computeIfAbsent locks even if the mapping exists
+        final T value = pMap.get(pKey);
+        return value == null ? pMap.computeIfAbsent(pKey, k -> pFactory.get()) : value;
+    }
+
+    static String nameOf(final PathChangeListener pListener, final long pSequence) {
+        final String className = pListener.getClass().getName();
+
+        // The generated part of a lambda class name changes from run to run
+        final int lambda = className.indexOf(LAMBDA_MARKER);
+        return format("%s#%d", lambda < 0 ? className : className.substring(0, lambda + LAMBDA_MARKER.length()),
+                pSequence);
+    }
+
+    /**
+     * Starts collecting the metrics of the listener specified. Every registration gets its own name,
+     * so that instances of the same class are not merged.
+     *
+     * @param pListener Listener which has been registered, must not be {@code null}
+     */
+    public void listenerAdded(final PathChangeListener pListener) {
+        listeners.computeIfAbsent(pListener, l -> new ListenerMetrics(nameOf(l, listenerSequence.incrementAndGet())));
+    }
+
+    /**
+     * Discards the metrics of the listener specified.
+     *
+     * @param pListener Listener which has been unregistered, must not be {@code null}
+     */
+    public void listenerRemoved(final PathChangeListener pListener) {
+        listeners.remove(pListener);
+    }
+
+    private void enableTiming() {
+        if (!timingEnabled) {
+            timingEnabled = true;
+        }
+    }
+
+    private static void record(final LatencyHistogram pHistogram, final long pStartNanos) {
+        if (pStartNanos != NOT_TIMED) {
+            pHistogram.record(nanoTime() - pStartNanos);
+        }
+    }
+
+    public boolean isTimingEnabled() {
+        return timingEnabled;
+    }
+
+    /**
+     * Starts measuring a duration.
+     *
+     * @return Current value of {@link System#nanoTime()}, or {@link #NOT_TIMED} if durations are not measured
+     */
+    public long startTimer() {
+        return timingEnabled ? nanoTime() : NOT_TIMED;
+    }
+
+    public void setPendingEventsGauge(final IntSupplier pPendingEvents) {
+        pendingEvents = pPendingEvents;
+    }
+
+    public void watchEventReceived(final WatchEvent.Kind<?> pKind) {
+        get(watchEvents, pKind.name(), LongAdder::new).increment();
+    }
+
+    public void eventDebounced() {
+        debouncedEvents.increment();
+    }
+
+    public void checksumUnchanged() {
+        unchangedChecksums.increment();
+    }
+
+    /**
+     * @param pStartNanos Value returned by {@link #startTimer()} before the checksum update has been started
+     * @param pBytes      Size of the file; counted even if durations are not measured
+     */
+    public void checksumUpdated(final long pStartNanos, final long pBytes) {
+        hashedBytes.add(pBytes);
+        record(hashingTime, pStartNanos);
+    }
+
+    /**
+     * @param pStartNanos Value returned by {@link #startTimer()} before the restriction has been evaluated
+     */
+    public void restrictionEvaluated(final long pStartNanos) {
+        record(restrictionTime, pStartNanos);
+    }
+
+    /**
+     * @param pListener   Listener which has been informed, must not be {@code null}
+     * @param pStartNanos Value returned by {@link #startTimer()} before the listener has been informed
+     * @param pFailed     Whether the listener has thrown an exception
+     */
+    public void delivered(final PathChangeListener pListener, final long pStartNanos, final boolean pFailed) {
+        final ListenerMetrics metrics = pFailed || pStartNanos != NOT_TIMED ? listeners.get(pListener) : null;
+        if (metrics != null) {
+            if (pFailed) {
+                metrics.failures.increment();
+            }
+            record(metrics.latency, pStartNanos);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getWatchEvents() {
+        enableTiming();
+        final Map<String, Long> counts = new TreeMap<>();
+        watchEvents.forEach((k, v) -> counts.put(k, v.sum()));
+        return unmodifiableMap(counts);
+    }
+
+    @Override
+    public long getDebouncedEvents() {
+        enableTiming();
+        return debouncedEvents.sum();
+    }
+
+    @Override
+    public int getPendingEvents() {
+        enableTiming();
+        return pendingEvents.getAsInt();
+    }
+
+    @Override
+    public long getUnchangedChecksums() {
+        enableTiming();
+        return unchangedChecksums.sum();
+    }
+
+    @Override
+    public long getHashedBytes() {
+        enableTiming();
+        return hashedBytes.sum();
+    }
+
+    @Override
+    public LatencyStatistics getHashingTime() {
+        enableTiming();
+        return hashingTime.snapshot();
+    }
+
+    @Override
+    public LatencyStatistics getRestrictionTime() {
+        enableTiming();
+        return restrictionTime.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getListenerLatencies() {
+        enableTiming();
+        final Map<String, LatencyStatistics> latencies = new TreeMap<>();
+        listeners.values().forEach(v -> latencies.put(v.name, v.latency.snapshot()));
+        return unmodifiableMap(latencies);
+    }
+
+    @Override
+    public Map<String, Long> getListenerFailures() {
+        enableTiming();
+        final Map<String, Long> failures = new TreeMap<>();
+        listeners.values().forEach(v -> failures.put(v.name, v.failures.sum()));
+        return unmodifiableMap(failures);
+    }
+}
@@ -0,0 +1,94 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.FileObserverMetrics;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Publishes {@link Metrics} as OSGi service and as MXBean on the platform MBean server.
+ */
+public class MetricsRegistration {
+    private static final Logger LOG = getLogger(MetricsRegistration.class);
+    private final MBeanServer server;
+    private final ServiceRegistration<FileObserverMetrics> serviceRegistrationOrNull;
+    private final ObjectName objectNameOrNull;
+
+    private MetricsRegistration(final MBeanServer pServer,
+                                final ServiceRegistration<FileObserverMetrics> pServiceRegistrationOrNull,
+                                final ObjectName pObjectNameOrNull) {
+        server = pServer;
+        serviceRegistrationOrNull = pServiceRegistrationOrNull;
+        objectNameOrNull = pObjectNameOrNull;
+    }
+
+    /**
+     * Publishes the metrics specified. Failures are logged, they do not prevent the file observer from working.
+     *
+     * @param pContextOrNull Bundle context used to register the OSGi service, or {@code null} if no service
+     *                       should be registered
+     * @param pMetrics       Metrics to publish, must not be {@code null}
+     * @return New registration, never {@code null}
+     */
+    public static MetricsRegistration register(final BundleContext pContextOrNull, final Metrics pMetrics) {
+        return register(getPlatformMBeanServer(), pContextOrNull, pMetrics);
+    }
+
+    // Package-private for testing
+    static MetricsRegistration register(final MBeanServer pServer,
+                                        final BundleContext pContextOrNull,
+                                        final Metrics pMetrics) {
+        final ServiceRegistration<FileObserverMetrics> serviceRegistration = pContextOrNull == null ? null :
+                pContextOrNull.registerService(FileObserverMetrics.class, pMetrics, null);
+        ObjectName objectName = null;
+        try {
+            objectName = new ObjectName(FileObserverMetrics.OBJECT_NAME);
+            pServer.registerMBean(new StandardMBean(pMetrics, FileObserverMetrics.class, true), objectName);
+        } catch (final JMException e) {
+            LOG.warn("Metrics could not be registered as MXBean {}", FileObserverMetrics.OBJECT_NAME, e);
+            objectName = null;
+        }
+        return new MetricsRegistration(pServer, serviceRegistration, objectName);
+    }
+
+    /**
+     * Removes the OSGi service and the MXBean.
+     */
+    public void unregister() {
+        if (serviceRegistrationOrNull != null) {
+            try {
+                serviceRegistrationOrNull.unregister();
+            } catch (final IllegalStateException e) {
+                LOG.debug("Metrics service already unregistered", e);
+            }
+        }
+        if (objectNameOrNull != null) {
+            try {
+                server.unregisterMBean(objectNameOrNull);
+            } catch (final JMException e) {
+                LOG.warn("MXBean {} could not be unregistered", objectNameOrNull, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Entry of the index of a polled directory. Holds the attributes which are compared to detect a modification.
+ */
+final class IndexEntry {
+    private final long lastModifiedNanos;
+    private final long size;
+
+    IndexEntry(final long pLastModifiedNanos, final long pSize) {
+        lastModifiedNanos = pLastModifiedNanos;
+        size = pSize;
+    }
+
+    static IndexEntry of(final BasicFileAttributes pAttributes) {
+        return new IndexEntry(pAttributes.lastModifiedTime().to(NANOSECONDS), pAttributes.size());
+    }
+
+    boolean isModified(final IndexEntry pPrevious) {
+        return lastModifiedNanos != pPrevious.lastModifiedNanos || size != pPrevious.size;
+    }
+}
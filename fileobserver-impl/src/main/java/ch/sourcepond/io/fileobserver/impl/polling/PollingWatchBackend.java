@@ -0,0 +1,159 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.SharedScheduler;
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.util.Arrays.stream;
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * {@link WatchBackend} which polls the watched directories, see {@link Config#pollingFileStoreTypes()}. A
+ * single timer thread schedules the sweeps of all directories; the sweeps themselves, which read the attributes
+ * of every entry of a directory, are executed in parallel (see {@link Config#pollingParallelism()}). The threads
+ * are started when the first directory is registered. If a {@link SharedScheduler} has been set, its timer is used
+ * instead of a dedicated one.
+ */
+public class PollingWatchBackend implements WatchBackend {
+    private static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000L;
+    private static final long DEFAULT_MAX_INTERVAL_MILLIS = 30000L;
+    private volatile Set<String> storeTypes = emptySet();
+    private volatile long minIntervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+    private volatile long maxIntervalMillis = DEFAULT_MAX_INTERVAL_MILLIS;
+    private volatile int parallelism = 2;
+    private volatile SharedScheduler schedulerOrNull;
+
+    // Guarded by this
+    private ScheduledExecutorService timerOrNull;
+    private ExecutorService sweepersOrNull;
+
+    private static ThreadFactory daemonThreads(final String pName) {
+        final AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread(r, format("%s-%d", pName, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public void setScheduler(final SharedScheduler pScheduler) {
+        schedulerOrNull = pScheduler;
+    }
+
+    public void setConfig(final Config pConfig) {
+        final String types = pConfig.pollingFileStoreTypes();
+        storeTypes = types == null ? emptySet() :
+                stream(types.split(",")).map(String::trim).filter(t -> !t.isEmpty()).collect(toSet());
+        final long min = pConfig.pollingMinIntervalMillis();
+        minIntervalMillis = min > 0L ? min : DEFAULT_MIN_INTERVAL_MILLIS;
+        maxIntervalMillis = Math.max(minIntervalMillis, pConfig.pollingMaxIntervalMillis());
+        parallelism = Math.max(1, pConfig.pollingParallelism());
+    }
+
+    /**
+     * Checks whether any file store type has been configured to be polled.
+     *
+     * @return {@code true} if this backend should be asked whether it supports a file store, {@code false} otherwise
+     */
+    public boolean isConfigured() {
+        return !storeTypes.isEmpty();
+    }
+
+    long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    synchronized ScheduledExecutorService getTimer() {
+        final SharedScheduler scheduler = schedulerOrNull;
+        if (scheduler != null) {
+            return scheduler.get();
+        }
+        if (timerOrNull == null) {
+            timerOrNull = newSingleThreadScheduledExecutor(daemonThreads("fileobserver polling timer"));
+        }
+        return timerOrNull;
+    }
+
+    synchronized ExecutorService getSweepers() {
+        if (sweepersOrNull == null) {
+            sweepersOrNull = newFixedThreadPool(parallelism, daemonThreads("fileobserver polling sweeper"));
+        }
+        return sweepersOrNull;
+    }
+
+    /**
+     * Checks whether the key specified has been created by a polling backend.
+     *
+     * @param pKey Key, must not be {@code null}
+     * @return {@code true} if the directory of the key is polled, {@code false} otherwise
+     */
+    public static boolean isPolled(final WatchKey pKey) {
+        return pKey instanceof PollingWatchKey;
+    }
+
+    @Override
+    public boolean supports(final FileStore pStore) {
+        return storeTypes.contains(pStore.type());
+    }
+
+    @Override
+    public WatchService newWatchService(final FileSystem pFs) {
+        return new PollingWatchService(this);
+    }
+
+    @Override
+    public WatchKey register(final WatchService pWatchService, final Path pDirectory) throws IOException {
+        if (!(pWatchService instanceof PollingWatchService)) {
+            throw new ProviderMismatchException(format("%s has not been created by this backend", pWatchService));
+        }
+        return ((PollingWatchService) pWatchService).register(pDirectory);
+    }
+
+    /**
+     * Stops the polling threads. Directories which are still registered are not polled anymore.
+     */
+    public synchronized void shutdown() {
+        if (timerOrNull != null) {
+            timerOrNull.shutdownNow();
+            timerOrNull = null;
+        }
+        if (sweepersOrNull != null) {
+            sweepersOrNull.shutdownNow();
+            sweepersOrNull = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import java.nio.file.WatchEvent;
+
+/**
+ * Watch event produced by {@link PollingWatchKey}.
+ */
+final class PollingWatchEvent<T> implements WatchEvent<T> {
+    private final Kind<T> kind;
+    private final T context;
+
+    PollingWatchEvent(final Kind<T> pKind, final T pContext) {
+        kind = pKind;
+        context = pContext;
+    }
+
+    @Override
+    public Kind<T> kind() {
+        return kind;
+    }
+
+    @Override
+    public int count() {
+        return 1;
+    }
+
+    @Override
+    public T context() {
+        return context;
+    }
+
+    @Override
+    public String toString() {
+        return "PollingWatchEvent[kind: " + kind + ", context: " + context + "]";
+    }
+}
@@ -0,0 +1,219 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.Watchable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.readAttributes;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Watch key of a polled directory. The key holds an index with the modification time and size of every entry
+ * of the directory; every sweep reads the attributes of all entries again and reports the differences as
+ * watch events. The interval between two sweeps adapts to the activity of the directory: it is reset to the
+ * minimum when a change is detected, and doubled (up to the maximum) otherwise.
+ */
+final class PollingWatchKey implements WatchKey {
+    private static final Logger LOG = getLogger(PollingWatchKey.class);
+
+    // Same limit as the JDK watch services; further events are replaced by an OVERFLOW event
+    static final int MAX_EVENTS = 512;
+    private final PollingWatchService service;
+    private final Path directory;
+
+    // Only accessed by sweeps, which never overlap for the same key
+    private Map<Path, IndexEntry> index;
+    private long intervalMillis;
+
+    // Guarded by this
+    private List<WatchEvent<?>> events = new ArrayList<>();
+    private boolean signalled;
+
+    private volatile boolean valid = true;
+    private volatile Future<?> scheduledSweepOrNull;
+
+    PollingWatchKey(final PollingWatchService pService, final Path pDirectory) throws IOException {
+        service = pService;
+        directory = pDirectory;
+        index = scan();
+    }
+
+    private Map<Path, IndexEntry> scan() throws IOException {
+        final Map<Path, IndexEntry> entries = new HashMap<>();
+        try (final DirectoryStream<Path> stream = newDirectoryStream(directory)) {
+            for (final Path child : stream) {
+                try {
+                    entries.put(child.getFileName(), IndexEntry.of(
+                            readAttributes(child, BasicFileAttributes.class, NOFOLLOW_LINKS)));
+                } catch (final NoSuchFileException e) {
+                    // Deleted in the meantime; it will be reported as deleted
+                    // if it has been in the index before.
+                    LOG.debug(e.getMessage(), e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Compares the current entries of the directory with the index and signals this key if any entry has been
+     * created, modified or deleted since the last sweep.
+     *
+     * @return {@code true} if a change has been detected, {@code false} otherwise
+     */
+    boolean sweep() {
+        if (!valid) {
+            return false;
+        }
+        final Map<Path, IndexEntry> current;
+        try {
+            current = scan();
+        } catch (final NoSuchFileException | NotDirectoryException e) {
+            // The directory itself has been deleted; this is reported by the key of its parent
+            LOG.debug(e.getMessage(), e);
+            cancel();
+            signal();
+            return true;
+        } catch (final IOException e) {
+            LOG.warn("Directory {} could not be polled", directory, e);
+            return false;
+        }
+
+        final Map<Path, IndexEntry> previous = index;
+        final List<WatchEvent<?>> detected = new ArrayList<>();
+        for (final Map.Entry<Path, IndexEntry> entry : current.entrySet()) {
+            final IndexEntry previousEntry = previous.remove(entry.getKey());
+            if (previousEntry == null) {
+                detected.add(new PollingWatchEvent<>(ENTRY_CREATE, entry.getKey()));
+            } else if (entry.getValue().isModified(previousEntry)) {
+                detected.add(new PollingWatchEvent<>(ENTRY_MODIFY, entry.getKey()));
+            }
+        }
+        for (final Path deleted : previous.keySet()) {
+            detected.add(new PollingWatchEvent<>(ENTRY_DELETE, deleted));
+        }
+        index = current;
+
+        if (!detected.isEmpty()) {
+            synchronized (this) {
+                for (final WatchEvent<?> event : detected) {
+                    if (events.size() < MAX_EVENTS) {
+                        events.add(event);
+                    } else {
+                        events.set(MAX_EVENTS - 1, new PollingWatchEvent<>(OVERFLOW, null));
+                        break;
+                    }
+                }
+            }
+            signal();
+        }
+        return !detected.isEmpty();
+    }
+
+    /**
+     * Calculates the delay until the next sweep, see class comment.
+     *
+     * @param pChanged     Whether the last sweep detected a change
+     * @param pMinInterval Minimum interval in milliseconds
+     * @param pMaxInterval Maximum interval in milliseconds
+     * @return Delay in milliseconds
+     */
+    long nextInterval(final boolean pChanged, final long pMinInterval, final long pMaxInterval) {
+        intervalMillis = pChanged || intervalMillis <= 0L ?
+                pMinInterval : max(pMinInterval, min(pMaxInterval, intervalMillis * 2));
+        return intervalMillis;
+    }
+
+    void setScheduledSweep(final Future<?> pScheduledSweep) {
+        scheduledSweepOrNull = pScheduledSweep;
+    }
+
+    private synchronized void signal() {
+        if (!signalled) {
+            signalled = true;
+            service.enqueue(this);
+        }
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public synchronized List<WatchEvent<?>> pollEvents() {
+        final List<WatchEvent<?>> result = events;
+        events = new ArrayList<>();
+        return result;
+    }
+
+    @Override
+    public synchronized boolean reset() {
+        if (!valid) {
+            return false;
+        }
+        if (signalled) {
+            if (events.isEmpty()) {
+                signalled = false;
+            } else {
+                // Events arrived after they had been polled; signal again
+                service.enqueue(this);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        valid = false;
+        final Future<?> scheduledSweep = scheduledSweepOrNull;
+        if (scheduledSweep != null) {
+            scheduledSweep.cancel(false);
+        }
+        service.cancelled(this);
+    }
+
+    @Override
+    public Watchable watchable() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return "PollingWatchKey[" + directory + "]";
+    }
+}
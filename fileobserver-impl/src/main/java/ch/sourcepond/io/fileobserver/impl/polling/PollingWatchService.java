@@ -0,0 +1,171 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.Watchable;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * {@link WatchService} which detects changes by polling the registered directories, see {@link PollingWatchKey}.
+ * The sweeps of all registered directories are executed on the threads of the {@link PollingWatchBackend}
+ * which created this service.
+ */
+class PollingWatchService implements WatchService {
+    private static final Logger LOG = getLogger(PollingWatchService.class);
+
+    // Wakes up threads which are waiting for a key when this service is closed
+    private static final WatchKey CLOSE_SIGNAL = new WatchKey() {
+        @Override
+        public boolean isValid() {
+            return false;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            return emptyList();
+        }
+
+        @Override
+        public boolean reset() {
+            return false;
+        }
+
+        @Override
+        public void cancel() {
+            // noop
+        }
+
+        @Override
+        public Watchable watchable() {
+            return null;
+        }
+    };
+    private final PollingWatchBackend backend;
+    private final BlockingQueue<WatchKey> signalledKeys = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<Path, PollingWatchKey> keys = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    PollingWatchService(final PollingWatchBackend pBackend) {
+        backend = pBackend;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new ClosedWatchServiceException();
+        }
+    }
+
+    /**
+     * Registers the directory specified. Like with the JDK watch services, registering a directory
+     * twice returns the same key.
+     *
+     * @param pDirectory Directory to be polled, must not be {@code null}
+     * @return Key, never {@code null}
+     * @throws IOException Thrown, if the entries of the directory could not be read
+     */
+    WatchKey register(final Path pDirectory) throws IOException {
+        checkOpen();
+        final PollingWatchKey existing = keys.get(pDirectory);
+        if (existing != null) {
+            return existing;
+        }
+        final PollingWatchKey key = new PollingWatchKey(this, pDirectory);
+        final PollingWatchKey concurrentlyRegistered = keys.putIfAbsent(pDirectory, key);
+        if (concurrentlyRegistered != null) {
+            return concurrentlyRegistered;
+        }
+        scheduleSweep(key, key.nextInterval(false, backend.getMinIntervalMillis(), backend.getMaxIntervalMillis()));
+        return key;
+    }
+
+    private void scheduleSweep(final PollingWatchKey pKey, final long pDelayMillis) {
+        try {
+            pKey.setScheduledSweep(backend.getTimer().schedule(() ->
+                    backend.getSweepers().execute(() -> sweep(pKey)), pDelayMillis, MILLISECONDS));
+        } catch (final RejectedExecutionException e) {
+            // Backend has been shut down
+            LOG.debug(e.getMessage(), e);
+        }
+    }
+
+    private void sweep(final PollingWatchKey pKey) {
+        final boolean changed = pKey.sweep();
+        if (pKey.isValid() && !closed) {
+            scheduleSweep(pKey, pKey.nextInterval(changed, backend.getMinIntervalMillis(), backend.getMaxIntervalMillis()));
+        }
+    }
+
+    void enqueue(final PollingWatchKey pKey) {
+        signalledKeys.offer(pKey);
+    }
+
+    void cancelled(final PollingWatchKey pKey) {
+        keys.remove(pKey.watchable(), pKey);
+    }
+
+    private WatchKey checkClosed(final WatchKey pKeyOrNull) {
+        if (pKeyOrNull == CLOSE_SIGNAL) {
+            // Wake up other waiting threads too
+            signalledKeys.offer(CLOSE_SIGNAL);
+            throw new ClosedWatchServiceException();
+        }
+        return pKeyOrNull;
+    }
+
+    @Override
+    public WatchKey poll() {
+        checkOpen();
+        return checkClosed(signalledKeys.poll());
+    }
+
+    @Override
+    public WatchKey poll(final long pTimeout, final TimeUnit pUnit) throws InterruptedException {
+        checkOpen();
+        return checkClosed(signalledKeys.poll(pTimeout, pUnit));
+    }
+
+    @Override
+    public WatchKey take() throws InterruptedException {
+        checkOpen();
+        return checkClosed(signalledKeys.take());
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            keys.values().forEach(PollingWatchKey::cancel);
+            signalledKeys.clear();
+            signalledKeys.offer(CLOSE_SIGNAL);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.restriction;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * <p>Combines many {@code glob:} and {@code regex:} patterns into one {@link PathMatcher}. Patterns are
+ * matched against {@link Path#toString()} with the same semantics as the matchers returned by the default
+ * file system on platforms where the name separator is {@code /}. Glob patterns which fit into one of the
+ * following categories are not evaluated as regular expressions at all:</p>
+ * <ul>
+ *     <li>Literal paths like {@code dir/file.txt}: hash lookup</li>
+ *     <li>Extensions like {@code *.ext} or {@code **}{@code /*.ext}: hash lookup of the extensions of the file name</li>
+ *     <li>Directory prefixes like {@code dir/**}: lookup in a trie of path segments</li>
+ * </ul>
+ * <p>All remaining patterns are joined into a single alternation, so the path needs to be passed to the
+ * regex engine only once. Regular expressions containing back-references, named groups, quotations
+ * ({@code \Q}) or the comments flag ({@code x}) cannot be joined; they are matched one after another. An
+ * unterminated quotation or a trailing comment would otherwise swallow the rest of the joined pattern.</p>
+ */
+final class CompiledPathMatcher implements PathMatcher {
+    static final String GLOB_SYNTAX = "glob";
+    static final String REGEX_SYNTAX = "regex";
+    private static final String REGEX_META_CHARS = ".^$+{[]|()";
+    private static final String GLOB_META_CHARS = "\\*?[{";
+    private static final String NON_LITERAL_CHARS = "\\*?[]{},";
+    private static final Pattern NOT_JOINABLE = Pattern.compile("\\\\[0-9kQ]|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z-]*x");
+    private static final char EOL = 0;
+    private final Set<String> literals = new HashSet<>();
+    private final Set<String> topLevelExtensions = new HashSet<>();
+    private final Set<String> nestedExtensions = new HashSet<>();
+    private final PrefixNode prefixes = new PrefixNode();
+    private final List<Pattern> separatePatterns = new ArrayList<>();
+    private final Pattern joinedPatternOrNull;
+
+    private static final class PrefixNode {
+        final Map<String, PrefixNode> children = new HashMap<>();
+        boolean terminal;
+    }
+
+    /**
+     * @param pSyntaxAndPatterns Patterns in the form {@code syntax:pattern}, see
+     *                           {@link java.nio.file.FileSystem#getPathMatcher(String)}. Only
+     *                           {@code glob} and {@code regex} syntaxes are supported (see
+     *                           {@link #isSupported(String)}).
+     * @throws PatternSyntaxException Thrown, if a pattern is invalid
+     */
+    CompiledPathMatcher(final Collection<String> pSyntaxAndPatterns) {
+        final List<String> joinable = new ArrayList<>();
+        for (final String syntaxAndPattern : pSyntaxAndPatterns) {
+            final int pos = syntaxAndPattern.indexOf(':');
+            final String syntax = syntaxAndPattern.substring(0, pos);
+            final String pattern = syntaxAndPattern.substring(pos + 1);
+            if (GLOB_SYNTAX.equalsIgnoreCase(syntax)) {
+                if (!addFastPath(pattern)) {
+                    joinable.add(toRegexPattern(pattern));
+                }
+            } else if (NOT_JOINABLE.matcher(pattern).find()) {
+                separatePatterns.add(Pattern.compile(pattern));
+            } else {
+                // Validate the pattern on its own; errors would be hard to locate in the joined pattern
+                Pattern.compile(pattern);
+                joinable.add(pattern);
+            }
+        }
+        joinedPatternOrNull = joinable.isEmpty() ? null : Pattern.compile(join(joinable));
+    }
+
+    /**
+     * Checks whether the pattern specified can be compiled by this class.
+     *
+     * @param pSyntaxAndPattern Pattern in the form {@code syntax:pattern}, must not be {@code null}
+     * @return {@code true} if the syntax is either {@code glob} or {@code regex}, {@code false} otherwise
+     */
+    static boolean isSupported(final String pSyntaxAndPattern) {
+        final int pos = pSyntaxAndPattern.indexOf(':');
+        if (pos <= 0) {
+            return false;
+        }
+        final String syntax = pSyntaxAndPattern.substring(0, pos);
+        return GLOB_SYNTAX.equalsIgnoreCase(syntax) || REGEX_SYNTAX.equalsIgnoreCase(syntax);
+    }
+
+    private static String join(final List<String> pRegexPatterns) {
+        final StringBuilder joined = new StringBuilder();
+        for (final String regex : pRegexPatterns) {
+            if (joined.length() > 0) {
+                joined.append('|');
+            }
+            joined.append("(?:").append(regex).append(')');
+        }
+        return joined.toString();
+    }
+
+    private static boolean isLiteral(final String pPart) {
+        for (int i = 0; i < pPart.length(); i++) {
+            if (NON_LITERAL_CHARS.indexOf(pPart.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean addFastPath(final String pGlob) {
+        boolean added = true;
+        if (isLiteral(pGlob)) {
+            literals.add(pGlob);
+        } else if (pGlob.startsWith("*.") && isLiteral(pGlob.substring(1)) && pGlob.indexOf('/') < 0) {
+            topLevelExtensions.add(pGlob.substring(1));
+        } else if (pGlob.startsWith("**/*.") && isLiteral(pGlob.substring(4)) && pGlob.indexOf('/', 3) < 0) {
+            nestedExtensions.add(pGlob.substring(4));
+        } else if (pGlob.endsWith("/**") && pGlob.length() > 3 && isLiteral(pGlob.substring(0, pGlob.length() - 3))) {
+            PrefixNode node = prefixes;
+            for (final String segment : pGlob.substring(0, pGlob.length() - 3).split("/", -1)) {
+                node = node.children.computeIfAbsent(segment, s -> new PrefixNode());
+            }
+            node.terminal = true;
+        } else {
+            added = false;
+        }
+        return added;
+    }
+
+    private boolean matchesExtension(final String pPath) {
+        final int lastSeparator = pPath.lastIndexOf('/');
+        final Set<String> extensions = lastSeparator < 0 ? topLevelExtensions : nestedExtensions;
+        if (!extensions.isEmpty()) {
+            for (int i = pPath.indexOf('.', lastSeparator + 1); i >= 0; i = pPath.indexOf('.', i + 1)) {
+                if (extensions.contains(pPath.substring(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesPrefix(final String pPath) {
+        PrefixNode node = prefixes;
+        int start = 0;
+        for (int separator = pPath.indexOf('/'); separator >= 0 && !node.children.isEmpty(); separator = pPath.indexOf('/', start)) {
+            node = node.children.get(pPath.substring(start, separator));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            start = separator + 1;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean matches(final Path pPath) {
+        final String path = pPath.toString();
+        if (literals.contains(path) || matchesExtension(path) || matchesPrefix(path)) {
+            return true;
+        }
+        if (joinedPatternOrNull != null && joinedPatternOrNull.matcher(path).matches()) {
+            return true;
+        }
+        for (final Pattern pattern : separatePatterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRegexMeta(final char c) {
+        return REGEX_META_CHARS.indexOf(c) != -1;
+    }
+
+    private static boolean isGlobMeta(final char c) {
+        return GLOB_META_CHARS.indexOf(c) != -1;
+    }
+
+    private static char next(final String glob, final int i) {
+        return i < glob.length() ? glob.charAt(i) : EOL;
+    }
+
+    /**
+     * Converts the glob specified into a regular expression. The conversion is equivalent to
+     * the one of the default file system on platforms where {@code /} is the name separator.
+     *
+     * @param pGlob Glob pattern, must not be {@code null}
+     * @return Regular expression, never {@code null}
+     * @throws PatternSyntaxException Thrown, if the glob is invalid
+     */
+    static String toRegexPattern(final String pGlob) {
+        boolean inGroup = false;
+        final StringBuilder regex = new StringBuilder("^");
+
+        int i = 0;
+        while (i < pGlob.length()) {
+            char c = pGlob.charAt(i++);
+            switch (c) {
+                case '\\':
+                    // Escape special characters
+                    if (i == pGlob.length()) {
+                        throw new PatternSyntaxException("No character to escape", pGlob, i - 1);
+                    }
+                    final char escaped = pGlob.charAt(i++);
+                    if (isGlobMeta(escaped) || isRegexMeta(escaped)) {
+                        regex.append('\\');
+                    }
+                    regex.append(escaped);
+                    break;
+                case '/':
+                    regex.append(c);
+                    break;
+                case '[':
+                    // Do not match name separator in class
+                    regex.append("[[^/]&&[");
+                    if (next(pGlob, i) == '^') {
+                        // Escape the regex negation char if it appears
+                        regex.append("\\^");
+                        i++;
+                    } else {
+                        // Negation
+                        if (next(pGlob, i) == '!') {
+                            regex.append('^');
+                            i++;
+                        }
+                        // Hyphen allowed at start
+                        if (next(pGlob, i) == '-') {
+                            regex.append('-');
+                            i++;
+                        }
+                    }
+                    boolean hasRangeStart = false;
+                    char last = 0;
+                    while (i < pGlob.length()) {
+                        c = pGlob.charAt(i++);
+                        if (c == ']') {
+                            break;
+                        }
+                        if (c == '/') {
+                            throw new PatternSyntaxException("Explicit 'name separator' in class", pGlob, i - 1);
+                        }
+                        if (c == '\\' || c == '[' || c == '&' && next(pGlob, i) == '&') {
+                            // Escape '\', '[' or "&&" for regex class
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+
+                        if (c == '-') {
+                            if (!hasRangeStart) {
+                                throw new PatternSyntaxException("Invalid range", pGlob, i - 1);
+                            }
+                            if ((c = next(pGlob, i++)) == EOL || c == ']') {
+                                break;
+                            }
+                            if (c < last) {
+                                throw new PatternSyntaxException("Invalid range", pGlob, i - 3);
+                            }
+                            regex.append(c);
+                            hasRangeStart = false;
+                        } else {
+                            hasRangeStart = true;
+                            last = c;
+                        }
+                    }
+                    if (c != ']') {
+                        throw new PatternSyntaxException("Missing ']", pGlob, i - 1);
+                    }
+                    regex.append("]]");
+                    break;
+                case '{':
+                    if (inGroup) {
+                        throw new PatternSyntaxException("Cannot nest groups", pGlob, i - 1);
+                    }
+                    regex.append("(?:(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        regex.append("))");
+                        inGroup = false;
+                    } else {
+                        regex.append('}');
+                    }
+                    break;
+                case ',':
+                    if (inGroup) {
+                        regex.append(")|(?:");
+                    } else {
+                        regex.append(',');
+                    }
+                    break;
+                case '*':
+                    if (next(pGlob, i) == '*') {
+                        // Crosses directory boundaries
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        // Within directory boundary
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                default:
+                    if (isRegexMeta(c)) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+            }
+        }
+
+        if (inGroup) {
+            throw new PatternSyntaxException("Missing '}", pGlob, i - 1);
+        }
+
+        return regex.append('$').toString();
+    }
+}
@@ -18,29 +18,52 @@ import ch.sourcepond.io.fileobserver.api.DispatchRestriction;
 import ch.sourcepond.io.fileobserver.api.SimpleDispatchRestriction;
 
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import static java.util.Objects.requireNonNull;
 
 /**
+ * Restriction of a single listener on a single file system. The accept/reject decision of every
+ * {@link DispatchKey} is cached, so that files which change repeatedly do not need to be matched again. The
+ * cache is bounded; when it's full, it will be cleared. Any change on the restriction invalidates the cache,
+ * this means that custom {@link PathMatcher} instances are expected to always return the same result for
+ * the same path.
  *
+ * <p>On the default file system, patterns added through {@link #addPathMatcher(String)} are compiled
+ * into a single {@link CompiledPathMatcher}, so that the costs of a match do not grow with the number of
+ * patterns. Custom matchers are evaluated one after another.</p>
  */
 public class DefaultDispatchRestriction implements DispatchRestriction {
+    static final int DECISION_CACHE_CAPACITY = 4096;
     private static final Object ACCEPT_ALL = new Object();
     private final Set<Object> acceptedDirectoryKeys = new CopyOnWriteArraySet<>();
     private final List<PathMatcher> matchers = new CopyOnWriteArrayList<>();
+    private final List<String> compiledPatterns = new ArrayList<>();
     private final FileSystem fs;
+    private volatile CompiledPathMatcher compiledOrNull;
+
+    // Replaced (not cleared) on every change, so that decisions which are concurrently
+    // evaluated against the previous state are put into the discarded cache.
+    private volatile ConcurrentMap<DispatchKey, Boolean> decisions = new ConcurrentHashMap<>();
 
     // Constructor for activator
     DefaultDispatchRestriction(final FileSystem pFs) {
         fs = pFs;
     }
 
+    private void invalidateDecisions() {
+        decisions = new ConcurrentHashMap<>();
+    }
+
     private void validateInitialState() {
         if (!acceptedDirectoryKeys.isEmpty()) {
             throw new IllegalStateException("Either accept or acceptAll has already been called!");
@@ -56,6 +79,7 @@ public class DefaultDispatchRestriction implements DispatchRestriction {
         for (final Object directoryKey : pDirectoryKeys) {
             acceptedDirectoryKeys.add(requireNonNull(directoryKey, "Directory-key is null"));
         }
+        invalidateDecisions();
         return this;
     }
 
@@ -66,34 +90,63 @@ public class DefaultDispatchRestriction implements DispatchRestriction {
         return this;
     }
 
+    private boolean isCompilable(final String pSyntaxAndPattern) {
+        return fs == FileSystems.getDefault() && "/".equals(fs.getSeparator()) &&
+                CompiledPathMatcher.isSupported(pSyntaxAndPattern);
+    }
+
     @Override
     public PathMatcher addPathMatcher(final String pSyntaxAndPattern) {
-        return addPathMatcher(fs.getPathMatcher(pSyntaxAndPattern));
+        // Let the file system validate the pattern; the matcher is returned to the caller
+        final PathMatcher matcher = fs.getPathMatcher(pSyntaxAndPattern);
+        if (!isCompilable(pSyntaxAndPattern)) {
+            return addPathMatcher(matcher);
+        }
+        synchronized (compiledPatterns) {
+            compiledPatterns.add(pSyntaxAndPattern);
+            compiledOrNull = new CompiledPathMatcher(compiledPatterns);
+        }
+        invalidateDecisions();
+        return matcher;
     }
 
     @Override
     public PathMatcher addPathMatcher(final PathMatcher pCustomMatcher) {
         matchers.add(pCustomMatcher);
+        invalidateDecisions();
         return pCustomMatcher;
     }
 
     public boolean isAccepted(final DispatchKey pDispatchKey) {
+        final ConcurrentMap<DispatchKey, Boolean> cache = decisions;
+        Boolean accepted = cache.get(pDispatchKey);
+        if (accepted == null) {
+            accepted = evaluate(pDispatchKey);
+            if (cache.size() >= DECISION_CACHE_CAPACITY) {
+                cache.clear();
+            }
+            cache.put(pDispatchKey, accepted);
+        }
+        return accepted;
+    }
+
+    private boolean evaluate(final DispatchKey pDispatchKey) {
         final Object directoryKey = pDispatchKey.getDirectoryKey();
         final Path relativePath = pDispatchKey.getRelativePath();
         final List<PathMatcher> m = matchers;
         final int size = m.size();
+        final CompiledPathMatcher compiled = compiledOrNull;
 
         boolean accept = acceptedDirectoryKeys.contains(ACCEPT_ALL) ||
                 acceptedDirectoryKeys.contains(directoryKey);
 
-        if (accept) {
+        if (accept && (compiled != null || size > 0)) {
+            accept = compiled != null && compiled.matches(relativePath);
+
             // To avoid creating to many objects we use a traditional
             // for-loop here
-            for (int i = 0; i < size; i++) {
+            for (int i = 0; !accept && i < size; i++) {
                 accept = m.get(i).matches(relativePath);
-                if (accept) {
-                    break;
-                }
             }
         }
         return accept;
@@ -0,0 +1,59 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.snapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * State of all files of a watched-directory. Files are identified by their path relative to the
+ * watched-directory (see {@link ch.sourcepond.io.fileobserver.api.DispatchKey#getRelativePath()}).
+ */
+public class Snapshot {
+    private final ConcurrentMap<String, SnapshotEntry> entries = new ConcurrentHashMap<>();
+
+    public void put(final String pRelativePath, final SnapshotEntry pEntry) {
+        entries.put(pRelativePath, pEntry);
+    }
+
+    /**
+     * Removes and returns the entry of the relative path specified.
+     *
+     * @param pRelativePath Relative path, must not be {@code null}
+     * @return Entry, or {@code null} if no such entry exists
+     */
+    public SnapshotEntry take(final String pRelativePath) {
+        return entries.remove(pRelativePath);
+    }
+
+    /**
+     * Returns a live view of the entries of this snapshot which must not be modified.
+     *
+     * @return Entries mapped by their relative paths, never {@code null}
+     */
+    public Map<String, SnapshotEntry> getEntries() {
+        return unmodifiableMap(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
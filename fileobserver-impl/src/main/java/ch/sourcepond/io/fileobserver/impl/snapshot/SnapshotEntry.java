@@ -0,0 +1,103 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.snapshot;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Immutable state of a single file as it has been recorded in a {@link Snapshot}.
+ */
+public final class SnapshotEntry {
+    // Many file-systems store modification times with a resolution of one second
+    public static final long AMBIGUITY_MILLIS = 1000L;
+    private final long size;
+    private final long lastModifiedMillis;
+    private final long recordedAtMillis;
+    private final String checksum;
+
+    public SnapshotEntry(final long pSize,
+                         final long pLastModifiedMillis,
+                         final long pRecordedAtMillis,
+                         final String pChecksum) {
+        size = pSize;
+        lastModifiedMillis = pLastModifiedMillis;
+        recordedAtMillis = pRecordedAtMillis;
+        checksum = pChecksum;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    /**
+     * @return Time in milliseconds when size and last-modification time have been read from the file
+     */
+    public long getRecordedAtMillis() {
+        return recordedAtMillis;
+    }
+
+    /**
+     * @return Hex value of the checksum, never {@code null}
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Checks whether size and last-modification time of the attributes specified are equal to the recorded values.
+     * If the file had been modified within {@link #AMBIGUITY_MILLIS} before the values were recorded, the entry
+     * never matches because a subsequent write could have left the modification time untouched.
+     *
+     * @param pAttrs Current attributes of the file, must not be {@code null}
+     * @return {@code true} if the file is considered to be unchanged, {@code false} otherwise
+     */
+    public boolean matches(final BasicFileAttributes pAttrs) {
+        return recordedAtMillis - lastModifiedMillis >= AMBIGUITY_MILLIS &&
+                size == pAttrs.size() &&
+                lastModifiedMillis == pAttrs.lastModifiedTime().toMillis();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final SnapshotEntry other = (SnapshotEntry) o;
+        return size == other.size &&
+                lastModifiedMillis == other.lastModifiedMillis &&
+                recordedAtMillis == other.recordedAtMillis &&
+                checksum.equals(other.checksum);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (size ^ (size >>> 32));
+        result = 31 * result + (int) (lastModifiedMillis ^ (lastModifiedMillis >>> 32));
+        result = 31 * result + (int) (recordedAtMillis ^ (recordedAtMillis >>> 32));
+        return 31 * result + checksum.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotEntry[size: " + size + ", lastModified: " + lastModifiedMillis +
+                ", recordedAt: " + recordedAtMillis + ", checksum: " + checksum + "]";
+    }
+}
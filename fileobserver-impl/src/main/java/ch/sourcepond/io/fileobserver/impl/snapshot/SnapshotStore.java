@@ -0,0 +1,128 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.snapshot;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Reads and writes {@link Snapshot} objects from/to a local directory. Every watched-directory key is
+ * stored in its own compressed file; the file name is derived from {@link Object#toString()} of the key.
+ */
+public class SnapshotStore {
+    private static final Logger LOG = getLogger(SnapshotStore.class);
+    private static final int MAGIC = 0x46534e50;
+    private static final int VERSION = 2;
+    static final String SUFFIX = ".snapshot";
+    private final Path directory;
+
+    public SnapshotStore(final Path pDirectory) {
+        directory = pDirectory;
+    }
+
+    Path getFile(final Object pDirectoryKey) {
+        try {
+            return directory.resolve(URLEncoder.encode(pDirectoryKey.toString(), "UTF-8") + SUFFIX);
+        } catch (final UnsupportedEncodingException e) {
+            // Every JVM must support UTF-8
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads the snapshot of the directory-key specified. If no snapshot has been stored yet, or, if
+     * the stored snapshot cannot be read, an empty snapshot will be returned.
+     *
+     * @param pDirectoryKey Directory-key, must not be {@code null}
+     * @return Snapshot, never {@code null}
+     */
+    public Snapshot load(final Object pDirectoryKey) {
+        final Snapshot snapshot = new Snapshot();
+        final Path file = getFile(pDirectoryKey);
+        if (isRegularFile(file)) {
+            try (final DataInputStream in = new DataInputStream(new GZIPInputStream(
+                    new BufferedInputStream(newInputStream(file))))) {
+                if (MAGIC != in.readInt() || VERSION != in.readInt()) {
+                    LOG.warn("Ignored {} because it has an unknown format", file);
+                } else {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        final String relativePath = in.readUTF();
+                        snapshot.put(relativePath, new SnapshotEntry(in.readLong(), in.readLong(), in.readLong(),
+                                in.readUTF()));
+                    }
+                    LOG.info("Loaded {} entries of {} from {}", snapshot.size(), pDirectoryKey, file);
+                }
+            } catch (final IOException e) {
+                LOG.warn("Snapshot {} could not be read; all files of {} will be checked", file, pDirectoryKey, e);
+                return new Snapshot();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stores the snapshot specified. The snapshot is written to a temporary file first which then replaces
+     * the previous snapshot, so a crash during writing never leaves a corrupted snapshot behind.
+     *
+     * @param pDirectoryKey Directory-key, must not be {@code null}
+     * @param pSnapshot     Snapshot to store, must not be {@code null}
+     * @throws IOException Thrown, if the snapshot could not be written
+     */
+    public void store(final Object pDirectoryKey, final Snapshot pSnapshot) throws IOException {
+        createDirectories(directory);
+        final Path file = getFile(pDirectoryKey);
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            final Map<String, SnapshotEntry> entries = pSnapshot.getEntries();
+            try (final DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (final Map.Entry<String, SnapshotEntry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().getSize());
+                    out.writeLong(entry.getValue().getLastModifiedMillis());
+                    out.writeLong(entry.getValue().getRecordedAtMillis());
+                    out.writeUTF(entry.getValue().getChecksum());
+                }
+            }
+            move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            LOG.debug("Stored {} entries of {} to {}", entries.size(), pDirectoryKey, file);
+        } finally {
+            deleteIfExists(tmp);
+        }
+    }
+}
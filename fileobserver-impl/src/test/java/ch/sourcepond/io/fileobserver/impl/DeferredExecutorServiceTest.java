@@ -0,0 +1,74 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class DeferredExecutorServiceTest {
+    private final Supplier<ExecutorService> factory = mock(Supplier.class);
+    private final ExecutorService delegate = mock(ExecutorService.class);
+    private final Runnable command = mock(Runnable.class);
+    private final DeferredExecutorService executor = new DeferredExecutorService(factory);
+
+    @Test
+    public void delegateCreatedOnFirstUse() {
+        when(factory.get()).thenReturn(delegate);
+        verifyZeroInteractions(factory);
+        executor.execute(command);
+        executor.execute(command);
+        verify(factory).get();
+        verify(delegate, times(2)).execute(command);
+    }
+
+    @Test
+    public void shutdownDelegate() {
+        when(factory.get()).thenReturn(delegate);
+        executor.execute(command);
+        executor.shutdown();
+        verify(delegate).shutdown();
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void shutdownBeforeFirstUse() throws Exception {
+        executor.shutdown();
+        assertTrue(executor.isTerminated());
+        assertTrue(executor.awaitTermination(1, SECONDS));
+        assertEquals(0, executor.shutdownNow().size());
+        try {
+            executor.execute(command);
+            fail("Exception expected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        verifyZeroInteractions(factory);
+    }
+}
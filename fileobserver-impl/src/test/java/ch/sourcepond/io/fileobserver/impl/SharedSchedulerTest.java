@@ -0,0 +1,67 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class SharedSchedulerTest {
+    private final Config config = mock(Config.class);
+    private final SharedScheduler scheduler = new SharedScheduler();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void sameSchedulerForAllCallers() {
+        assertSame(scheduler.get(), scheduler.get());
+    }
+
+    @Test
+    public void atLeastOneThread() {
+        scheduler.setConfig(config);
+        assertEquals(1, ((ScheduledThreadPoolExecutor) scheduler.get()).getCorePoolSize());
+    }
+
+    @Test
+    public void reconfigureThreads() {
+        final ScheduledThreadPoolExecutor executor = (ScheduledThreadPoolExecutor) scheduler.get();
+        when(config.timerThreads()).thenReturn(3);
+        scheduler.setConfig(config);
+        assertEquals(3, executor.getCorePoolSize());
+    }
+
+    @Test
+    public void restartAfterShutdown() {
+        final ScheduledExecutorService executor = scheduler.get();
+        scheduler.shutdown();
+        assertTrue(executor.isShutdown());
+        assertNotSame(executor, scheduler.get());
+    }
+}
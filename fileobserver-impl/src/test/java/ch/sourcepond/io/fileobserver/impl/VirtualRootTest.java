@@ -263,6 +263,7 @@ public class VirtualRootTest {
         virtualRoot.deactivate();
         verify(dedicatedFs).close();
         verify(dedicatedFsFactory).shutdown();
+        verify(manager).shutdown();
         final PathChangeListener otherListener = mock(PathChangeListener.class);
         virtualRoot.addListener(otherListener);
         verifyZeroInteractions(otherListener);
@@ -0,0 +1,61 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ */
+public class VirtualThreadsTest {
+
+    private static boolean isJava21OrNewer() {
+        final String version = System.getProperty("java.specification.version");
+        return version.indexOf('.') < 0 && Integer.parseInt(version) >= 21;
+    }
+
+    @Test
+    public void isAvailable() {
+        assertEquals(isJava21OrNewer(), VirtualThreads.isAvailable());
+    }
+
+    @Test
+    public void newVirtualThreadPerTaskExecutor() throws Exception {
+        if (VirtualThreads.isAvailable()) {
+            final ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            try {
+                final Future<Boolean> virtual = executor.submit(() ->
+                        (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+                assertTrue(virtual.get(5, SECONDS));
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            try {
+                VirtualThreads.newVirtualThreadPerTaskExecutor();
+                fail("Exception expected");
+            } catch (final UnsupportedOperationException expected) {
+                // expected
+            }
+        }
+    }
+}
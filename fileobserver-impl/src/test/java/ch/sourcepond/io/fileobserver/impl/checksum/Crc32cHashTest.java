@@ -0,0 +1,66 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ *
+ */
+public class Crc32cHashTest {
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(US_ASCII);
+    private static final long CHECK_VALUE = 0xe3069283L;
+
+    @Test
+    public void fallbackKnownValue() {
+        final Crc32cHash hash = new Crc32cHash(false);
+        assertFalse(hash.isJdk());
+        hash.update(wrap(CHECK_INPUT));
+        assertEquals(CHECK_VALUE, hash.getValue());
+    }
+
+    @Test
+    public void defaultKnownValue() {
+        final Crc32cHash hash = new Crc32cHash();
+        hash.update(wrap(CHECK_INPUT));
+        assertEquals(CHECK_VALUE, hash.getValue());
+    }
+
+    @Test
+    public void fallbackDirectBuffer() {
+        final Crc32cHash hash = new Crc32cHash(false);
+        hash.update(wrap("1234".getBytes(US_ASCII)));
+        final ByteBuffer direct = allocateDirect(5);
+        direct.put("56789".getBytes(US_ASCII)).flip();
+        hash.update(direct);
+        assertEquals(CHECK_VALUE, hash.getValue());
+    }
+
+    @Test
+    public void reset() {
+        final Crc32cHash hash = new Crc32cHash(false);
+        hash.update(wrap("garbage".getBytes(US_ASCII)));
+        hash.reset();
+        hash.update(wrap(CHECK_INPUT));
+        assertEquals(CHECK_VALUE, hash.getValue());
+    }
+}
@@ -0,0 +1,139 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm.CRC32C;
+import static ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm.SHA256;
+import static ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm.XXHASH64;
+import static java.lang.Thread.sleep;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.write;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class FileHasherTest {
+    private Path file;
+
+    @After
+    public void tearDown() throws Exception {
+        if (file != null) {
+            deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void toHexIsPadded() {
+        assertEquals("0000000000000001", FileHasher.toHex(1L));
+        assertEquals("ffffffffffffffff", FileHasher.toHex(-1L));
+    }
+
+    @Test
+    public void hashFile() throws Exception {
+        file = createTempFile("fileobserver", ".txt");
+        write(file, "123456789".getBytes(US_ASCII));
+        assertEquals("00000000e3069283", FileHasher.hash(file, StreamingHash.create(CRC32C)));
+        assertEquals(16, FileHasher.hash(file, StreamingHash.create(XXHASH64)).length());
+    }
+
+    @Test
+    public void hashFileLargerThanBuffer() throws Exception {
+        file = createTempFile("fileobserver", ".bin");
+        final byte[] data = new byte[FileHasher.BUFFER_SIZE * 2 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        write(file, data);
+        final StreamingHash expected = StreamingHash.create(XXHASH64);
+        expected.update(ByteBuffer.wrap(data));
+        assertEquals(FileHasher.toHex(expected.getValue()), FileHasher.hash(file, StreamingHash.create(XXHASH64)));
+    }
+
+    @Test
+    public void lengthOfHashedBytes() throws Exception {
+        file = createTempFile("fileobserver", ".txt");
+        write(file, "123456789".getBytes(US_ASCII));
+        final StreamingHash crc = StreamingHash.create(CRC32C);
+        FileHasher.hash(file, crc);
+        assertEquals(9L, crc.getLength());
+        final StreamingHash xx = StreamingHash.create(XXHASH64);
+        FileHasher.hash(file, xx);
+        assertEquals(9L, xx.getLength());
+        FileHasher.hash(file, xx);
+        assertEquals(9L, xx.getLength());
+    }
+
+    @Test
+    public void buffersAreShared() throws Exception {
+        final ByteBuffer buffer = FileHasher.acquire();
+        assertTrue(buffer.isDirect());
+        FileHasher.release(buffer);
+        final ByteBuffer[] taken = new ByteBuffer[1];
+        final Thread other = new Thread(() -> {
+            try {
+                taken[0] = FileHasher.acquire();
+            } catch (final InterruptedIOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertSame(buffer, taken[0]);
+        FileHasher.release(taken[0]);
+    }
+
+    @Test
+    public void buffersAreBounded() throws Exception {
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < FileHasher.MAX_BUFFERS; i++) {
+            buffers.add(FileHasher.acquire());
+        }
+        final CompletableFuture<ByteBuffer> waiting = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                waiting.complete(FileHasher.acquire());
+            } catch (final InterruptedIOException e) {
+                waiting.completeExceptionally(e);
+            }
+        }).start();
+        sleep(200);
+        assertFalse(waiting.isDone());
+        FileHasher.release(buffers.get(0));
+        assertSame(buffers.get(0), waiting.get(5, SECONDS));
+        buffers.set(0, waiting.get());
+        buffers.forEach(FileHasher::release);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sha256NotBuiltIn() {
+        StreamingHash.create(SHA256);
+    }
+}
@@ -0,0 +1,64 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.checksum;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class XxHash64Test {
+    private final XxHash64 hash = new XxHash64();
+
+    private String hash(final String pInput) {
+        hash.reset();
+        hash.update(wrap(pInput.getBytes(US_ASCII)));
+        return FileHasher.toHex(hash.getValue());
+    }
+
+    @Test
+    public void knownValues() {
+        assertEquals("ef46db3751d8e999", hash(""));
+        assertEquals("d24ec4f1a98c6e5b", hash("a"));
+        assertEquals("44bc2cf5ad770999", hash("abc"));
+    }
+
+    @Test
+    public void chunkedEqualsOneShot() {
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        hash.update(wrap(data));
+        final long expected = hash.getValue();
+
+        hash.reset();
+        for (int i = 0; i < data.length; i += 7) {
+            hash.update(ByteBuffer.wrap(data, i, Math.min(7, data.length - i)));
+        }
+        assertEquals(expected, hash.getValue());
+    }
+
+    @Test
+    public void getValueDoesNotChangeState() {
+        hash.update(wrap("abc".getBytes(US_ASCII)));
+        assertEquals(hash.getValue(), hash.getValue());
+    }
+}
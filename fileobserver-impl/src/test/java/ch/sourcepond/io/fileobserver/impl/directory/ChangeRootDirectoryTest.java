@@ -102,8 +102,8 @@ public class ChangeRootDirectoryTest extends DirectoryTest {
 
     @Test
     public void forceInformModifiedAfterSubRootUnregistration() throws Exception {
-        existing_root_11.getResource(testfile_111_txt_path);
-        existing_root_12.getResource(testfile_121_txt_path);
+        existing_root_11.getChecksum(testfile_111_txt_path);
+        existing_root_12.getChecksum(testfile_121_txt_path);
         existing_root_11.removeWatchedDirectory(dispatcher, watchedSubDir1, potentialSubDirs);
         existing_root_12.removeWatchedDirectory(dispatcher, watchedSubDir2, potentialSubDirs);
 
@@ -0,0 +1,117 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.fileobserver.impl.checksum.FileHasher;
+import ch.sourcepond.io.fileobserver.impl.checksum.StreamingHash;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+import static ch.sourcepond.io.fileobserver.spi.ChecksumAlgorithm.XXHASH64;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.sleep;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.write;
+import static java.nio.file.attribute.FileTime.fromMillis;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ */
+public class FastChecksumTest {
+    private final FileChecksum.Observer observer = mock(FileChecksum.Observer.class);
+    private Path file;
+    private FastChecksum checksum;
+
+    @Before
+    public void setup() throws Exception {
+        file = createTempFile("fileobserver", ".txt");
+        write(file, "one".getBytes(US_ASCII));
+        checksum = new FastChecksum(file, XXHASH64, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        deleteIfExists(file);
+    }
+
+    @Test
+    public void initialize() {
+        assertNull(checksum.getCurrentHexOrNull());
+        checksum.initialize();
+        assertNotNull(checksum.getCurrentHexOrNull());
+    }
+
+    @Test
+    public void unchanged() {
+        checksum.initialize();
+        final String initial = checksum.getCurrentHexOrNull();
+        checksum.update(0L, observer);
+        verify(observer).done(false, initial, 3L);
+    }
+
+    @Test
+    public void changed() throws Exception {
+        checksum.initialize();
+        write(file, "two".getBytes(US_ASCII));
+        checksum.update(0L, observer);
+        verify(observer).done(eq(true), notNull(), eq(3L));
+    }
+
+    @Test
+    public void fileDeleted() throws Exception {
+        checksum.initialize();
+        final String initial = checksum.getCurrentHexOrNull();
+        delete(file);
+        checksum.update(0L, observer);
+        verify(observer).done(false, initial, 0L);
+    }
+
+    @Test
+    public void waitUntilWritten() throws Exception {
+        checksum.initialize();
+        final long start = currentTimeMillis();
+
+        // Modification times in the future prevent the file from being considered as written
+        // regardless of the time resolution of the file-system.
+        setLastModifiedTime(file, fromMillis(start + 1000L));
+        final Thread writer = new Thread(() -> {
+            try {
+                sleep(100L);
+                write(file, "three".getBytes(US_ASCII));
+                setLastModifiedTime(file, fromMillis(currentTimeMillis() + 1000L));
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        checksum.update(300L, observer);
+        writer.join();
+        assertTrue(currentTimeMillis() - start >= 600L);
+        verify(observer).done(true, FileHasher.hash(file, StreamingHash.create(XXHASH64)), 5L);
+    }
+}
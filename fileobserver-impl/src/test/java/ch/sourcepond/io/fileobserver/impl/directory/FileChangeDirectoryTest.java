@@ -16,6 +16,9 @@ package ch.sourcepond.io.fileobserver.impl.directory;
 import ch.sourcepond.io.checksum.api.Resource;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
+import ch.sourcepond.io.fileobserver.impl.snapshot.Snapshot;
+import ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -23,16 +26,32 @@ import org.junit.Test;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
 
 import static ch.sourcepond.io.checksum.api.Algorithm.SHA256;
+import static ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry.AMBIGUITY_MILLIS;
+import static ch.sourcepond.io.fileobserver.spi.ChangeDetection.CHECKSUM;
+import static ch.sourcepond.io.fileobserver.spi.ChangeDetection.METADATA;
+import static java.lang.System.currentTimeMillis;
 import static java.lang.Thread.sleep;
+import static java.nio.file.Files.readAttributes;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.attribute.FileTime.fromMillis;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.notNull;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.timeout;
@@ -154,6 +173,139 @@ public class FileChangeDirectoryTest extends DirectoryTest {
         verifyNoMoreInteractions(listener);
     }
 
+    /**
+     *
+     */
+    @Test
+    public void rootDirBatchInformIfChangedChecksumsDifferent() throws Exception {
+        setupChecksumAnswer(testfile_txt_resource, checksum2);
+        root_dir.informIfChanged(dispatcher, singletonMap(testfile_txt_path, new EventTimestamps(10L, 20L)), false);
+        verify(listener, timeout(500)).modified(argThat(e -> isKeyEqual(e.getKey(), root_dir_path, testfile_txt_path)
+                && e.getReceivedNanos() == 10L && e.getDebouncedNanos() == 20L));
+        sleep(500);
+        verify(listener).restrict(notNull(), same(root_dir_path.getFileSystem()));
+        verifyNoMoreInteractions(listener);
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void formerRootBatchInformIfChangedChecksumsDifferent() throws Exception {
+        subdir_1.addWatchedDirectory(watchedSubDir1);
+        setupChecksumAnswer(testfile_11_xml_resource, checksum2);
+        subdir_1.informIfChanged(dispatcher, singletonMap(testfile_11_xml_path, new EventTimestamps(10L, 20L)), false);
+        verify(listener, timeout(500)).modified(toEvent(root_dir_path, testfile_11_xml_path));
+        verify(listener, timeout(500)).modified(toEvent(subdir_1_path, testfile_11_xml_path));
+        sleep(500);
+        verify(listener).restrict(notNull(), same(root_dir_path.getFileSystem()));
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void batchInformIfChangedWithoutFiles() {
+        root_dir.informIfChanged(dispatcher, emptyMap(), false);
+        verifyZeroInteractions(listener, testfile_txt_resource);
+    }
+
+    private void setupMetadataChangeDetection() throws IOException {
+        when(watchedRootDir.getChangeDetection()).thenReturn(METADATA);
+        setLastModifiedTime(testfile_txt_path, fromMillis(currentTimeMillis() - 10000L));
+        root_dir.informCreatedOrInitial(dispatcher, null, testfile_txt_path);
+        verify(listener, timeout(500)).modified(toEvent(root_dir_path, testfile_txt_path));
+    }
+
+    @Test
+    public void metadataUnchangedNoChecksumCalculated() throws Exception {
+        setupMetadataChangeDetection();
+        root_dir.informIfChanged(dispatcher, testfile_txt_path, false);
+        verify(testfile_txt_resource, never()).update(anyLong(), any());
+    }
+
+    @Test
+    public void metadataChangedChecksumCalculated() throws Exception {
+        setupMetadataChangeDetection();
+        setupChecksumAnswer(testfile_txt_resource, checksum2);
+        write(testfile_txt_path, "changed".getBytes(), APPEND);
+        root_dir.informIfChanged(dispatcher, testfile_txt_path, false);
+        verify(listener, timeout(500).times(2)).modified(toEvent(root_dir_path, testfile_txt_path));
+    }
+
+    @Test
+    public void metadataChecksumAlwaysCalculatedIfRequiredByAnyWatchedDirectory() throws Exception {
+        subdir_1.addWatchedDirectory(watchedSubDir1);
+        when(watchedRootDir.getChangeDetection()).thenReturn(METADATA);
+        when(watchedSubDir1.getChangeDetection()).thenReturn(CHECKSUM);
+        setLastModifiedTime(testfile_11_xml_path, fromMillis(currentTimeMillis() - 10000L));
+        setupChecksumAnswer(testfile_11_xml_resource, checksum1);
+        subdir_1.informCreatedOrInitial(dispatcher, null, testfile_11_xml_path);
+        subdir_1.informIfChanged(dispatcher, testfile_11_xml_path, false);
+        verify(testfile_11_xml_resource).update(eq(TIMEOUT), notNull());
+    }
+
+    private void restoreSnapshot(final long pSize) throws IOException {
+        when(config.stateDirectory()).thenReturn("state");
+        when(config.initialEventsForChangedFilesOnly()).thenReturn(true);
+        when(watchedRootDir.getDirectory()).thenReturn(root_dir_path);
+        final BasicFileAttributes attrs = readAttributes(testfile_txt_path, BasicFileAttributes.class);
+        final Snapshot snapshot = new Snapshot();
+        snapshot.put(root_dir_path.relativize(testfile_txt_path).toString(),
+                new SnapshotEntry(pSize, attrs.lastModifiedTime().toMillis(),
+                        attrs.lastModifiedTime().toMillis() + AMBIGUITY_MILLIS, "cafe"));
+        snapshot.put("deleted.txt", new SnapshotEntry(1L, 1L, 1L + AMBIGUITY_MILLIS, "babe"));
+        final Collection<DispatchKey> discarded = factory.restore(watchedRootDir, snapshot);
+        assertEquals(1, discarded.size());
+        assertEquals(ROOT_DIR_KEY, discarded.iterator().next().getDirectoryKey());
+    }
+
+    @Test
+    public void restoredFileUnchanged() throws Exception {
+        restoreSnapshot(readAttributes(testfile_txt_path, BasicFileAttributes.class).size());
+        root_dir.informCreatedOrInitial(dispatcher, null, testfile_txt_path);
+        sleep(500);
+        verify(resourcesFactory, never()).create(SHA256, testfile_txt_path);
+        verify(listener, never()).modified(any());
+
+        // Changed files are informed after restart, unchanged files are skipped
+        root_dir.forceInform(dispatcher, true);
+        sleep(500);
+        verify(listener, never()).modified(any());
+    }
+
+    @Test
+    public void restoredFileChanged() throws Exception {
+        restoreSnapshot(Long.MAX_VALUE);
+        root_dir.informCreatedOrInitial(dispatcher, null, testfile_txt_path);
+        verify(resourcesFactory).create(SHA256, testfile_txt_path);
+        verify(listener, timeout(500)).modified(toEvent(root_dir_path, testfile_txt_path));
+    }
+
+    @Test
+    public void restoredFileModifiedWithSameContent() throws Exception {
+        restoreSnapshot(readAttributes(testfile_txt_path, BasicFileAttributes.class).size());
+        root_dir.informCreatedOrInitial(dispatcher, null, testfile_txt_path);
+        when(checksum2.getHexValue()).thenReturn("cafe");
+        setupChecksumAnswer(testfile_txt_resource, checksum2);
+        root_dir.informIfChanged(dispatcher, testfile_txt_path, false);
+        sleep(500);
+        verify(listener, never()).modified(any());
+    }
+
+    @Test
+    public void collectSnapshot() throws Exception {
+        when(config.stateDirectory()).thenReturn("state");
+        when(testfile_txt_resource.getCurrent()).thenReturn(checksum1);
+        when(checksum1.getHexValue()).thenReturn("cafe");
+        root_dir.informCreatedOrInitial(dispatcher, null, testfile_txt_path);
+        final Snapshot snapshot = new Snapshot();
+        root_dir.collectSnapshot(watchedRootDir, snapshot);
+        final BasicFileAttributes attrs = readAttributes(testfile_txt_path, BasicFileAttributes.class);
+        final SnapshotEntry entry = snapshot.getEntries().get(root_dir_path.relativize(testfile_txt_path).toString());
+        assertEquals(attrs.size(), entry.getSize());
+        assertEquals(attrs.lastModifiedTime().toMillis(), entry.getLastModifiedMillis());
+        assertEquals("cafe", entry.getChecksum());
+    }
+
     /**
      *
      */
@@ -178,7 +330,7 @@ public class FileChangeDirectoryTest extends DirectoryTest {
      */
     @Test
     public void checkDiscardAfterDirectoryKeyRemoval() throws IOException, InterruptedException {
-        root_dir.getResource(testfile_txt_path);
+        root_dir.getChecksum(testfile_txt_path);
         root_dir.removeWatchedDirectory(dispatcher, watchedRootDir, potentialSubDirs);
         verify(listener, timeout(1000)).discard(toKey(root_dir_path, testfile_txt_path));
 
@@ -217,6 +369,16 @@ public class FileChangeDirectoryTest extends DirectoryTest {
         verify(listener, timeout(500)).modified(toEvent(root_dir_path, testfile_txt_path));
     }
 
+    @Test
+    public void verifyTrackedFiles() {
+        assertTrue(root_dir.getTrackedFiles().isEmpty());
+        root_dir.getChecksum(testfile_txt_path);
+        assertEquals(1, root_dir.getTrackedFiles().size());
+        assertTrue(root_dir.getTrackedFiles().contains(testfile_txt_path));
+        root_dir.informDiscard(dispatcher, testfile_txt_path);
+        assertTrue(root_dir.getTrackedFiles().isEmpty());
+    }
+
     @Test
     public void verifyCancelKey() {
         final WatchKey key = root_dir.getWatchKey();
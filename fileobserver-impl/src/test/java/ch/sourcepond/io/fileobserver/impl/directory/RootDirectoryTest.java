@@ -14,13 +14,17 @@ limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.directory;
 
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.polling.PollingWatchBackend;
 import ch.sourcepond.io.fileobserver.spi.WatchedDirectory;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.file.WatchService;
 import java.util.Collection;
 
+import static java.nio.file.FileSystems.getDefault;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -68,6 +72,22 @@ public class RootDirectoryTest extends DirectoryTest {
         assertFalse(root.hasKeys());
     }
 
+    @Test
+    public void nativeWatchMode() {
+        assertEquals(WatchMode.NATIVE, root.getWatchMode());
+    }
+
+    @Test
+    public void pollingWatchMode() throws IOException {
+        final PollingWatchBackend polling = new PollingWatchBackend();
+        try (final WatchService pollingWatchService = polling.newWatchService(getDefault())) {
+            final Directory polled = factory.newRoot(polling.register(pollingWatchService, subdir_2_path));
+            assertEquals(WatchMode.POLLING, polled.getWatchMode());
+        } finally {
+            polling.shutdown();
+        }
+    }
+
     @Test
     public void toRootDirectory() {
         assertSame(root, root.toRootDirectory());
@@ -69,4 +69,33 @@ public class SubDirectoryTest extends DirectoryTest {
     public void getParent() {
         assertSame(root, ((SubDirectory)subdir).getParent());
     }
+
+    @Test
+    public void cacheEffectiveWatchedDirectories() throws IOException {
+        root.addWatchedDirectory(watchedRootDir);
+        subdir.addWatchedDirectory(watchedSubDir1);
+        final Collection<WatchedDirectory> dirs = subdir.getWatchedDirectories();
+        assertEquals(2, dirs.size());
+        assertSame(dirs, subdir.getWatchedDirectories());
+
+        // Change on the parent must invalidate the cached directories of the child
+        root.addWatchedDirectory(watchedSubDir2);
+        final Collection<WatchedDirectory> changed = subdir.getWatchedDirectories();
+        assertNotSame(dirs, changed);
+        assertEquals(3, changed.size());
+        assertTrue(changed.contains(watchedSubDir2));
+
+        root.remove(watchedSubDir2);
+        assertFalse(subdir.getWatchedDirectories().contains(watchedSubDir2));
+
+        // Rebase onto a parent without watched-directories
+        subdir.rebase(factory.newRoot(wrapper.register(root_dir_path)));
+        assertEquals(1, subdir.getWatchedDirectories().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void effectiveWatchedDirectoriesAreImmutable() {
+        subdir.addWatchedDirectory(watchedSubDir1);
+        subdir.getWatchedDirectories().clear();
+    }
 }
@@ -0,0 +1,154 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.directory;
+
+import ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.file.attribute.FileTime.fromMillis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TrackedFileTest {
+    private static final long SIZE = 1024L;
+    private static final Object FILE_KEY = new Object();
+    private final BasicFileAttributes recorded = mock(BasicFileAttributes.class);
+    private final BasicFileAttributes current = mock(BasicFileAttributes.class);
+    private final FileChecksum checksum = mock(FileChecksum.class);
+    private final TrackedFile trackedFile = new TrackedFile(() -> checksum);
+    private final long lastModified = currentTimeMillis() - 10000L;
+
+    @Before
+    public void setup() {
+        when(recorded.size()).thenReturn(SIZE);
+        when(recorded.lastModifiedTime()).thenReturn(fromMillis(lastModified));
+        when(recorded.fileKey()).thenReturn(FILE_KEY);
+        when(current.size()).thenReturn(SIZE);
+        when(current.lastModifiedTime()).thenReturn(fromMillis(lastModified));
+        when(current.fileKey()).thenReturn(FILE_KEY);
+    }
+
+    @Test
+    public void getChecksum() {
+        assertSame(checksum, trackedFile.getChecksum());
+    }
+
+    @Test
+    public void nothingRecorded() {
+        assertFalse(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void unchanged() {
+        trackedFile.record(recorded);
+        assertTrue(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void sizeChanged() {
+        trackedFile.record(recorded);
+        when(current.size()).thenReturn(SIZE + 1);
+        assertFalse(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void lastModifiedChanged() {
+        trackedFile.record(recorded);
+        when(current.lastModifiedTime()).thenReturn(fromMillis(lastModified + 1));
+        assertFalse(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void fileKeyChanged() {
+        trackedFile.record(recorded);
+        when(current.fileKey()).thenReturn(new Object());
+        assertFalse(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void fileKeyNotSupported() {
+        when(recorded.fileKey()).thenReturn(null);
+        when(current.fileKey()).thenReturn(null);
+        trackedFile.record(recorded);
+        assertTrue(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void ambiguousWhenRecordedWithinSameSecond() {
+        final long now = currentTimeMillis();
+        when(recorded.lastModifiedTime()).thenReturn(fromMillis(now));
+        when(current.lastModifiedTime()).thenReturn(fromMillis(now));
+        trackedFile.record(recorded);
+        assertFalse(trackedFile.isUnchanged(current));
+    }
+
+    @Test
+    public void restoredChecksumEqual() {
+        trackedFile.restore("cafe");
+        assertTrue(trackedFile.isRestored());
+        assertFalse(trackedFile.hasChanged(true, "cafe"));
+        assertFalse(trackedFile.isRestored());
+    }
+
+    @Test
+    public void restoredChecksumDifferent() {
+        trackedFile.restore("babe");
+        assertTrue(trackedFile.hasChanged(false, "cafe"));
+
+        // The restored checksum is only considered once
+        assertFalse(trackedFile.hasChanged(false, "cafe"));
+    }
+
+    @Test
+    public void toSnapshotEntry() {
+        assertNull(trackedFile.toSnapshotEntry());
+        trackedFile.record(recorded);
+        assertNull(trackedFile.toSnapshotEntry());
+        when(checksum.getCurrentHexOrNull()).thenReturn("cafe");
+        trackedFile.getChecksum();
+        final SnapshotEntry entry = trackedFile.toSnapshotEntry();
+        assertEquals(SIZE, entry.getSize());
+        assertEquals(lastModified, entry.getLastModifiedMillis());
+        assertEquals("cafe", entry.getChecksum());
+    }
+
+    @Test
+    public void toSnapshotEntryRestored() {
+        trackedFile.record(recorded);
+        trackedFile.restore("babe");
+        assertEquals("babe", trackedFile.toSnapshotEntry().getChecksum());
+    }
+
+    @Test
+    public void toSnapshotEntryRecordedAt() {
+        when(checksum.getCurrentHexOrNull()).thenReturn("cafe");
+        trackedFile.getChecksum();
+        final long before = currentTimeMillis();
+        trackedFile.record(recorded);
+        final long recordedAt = trackedFile.toSnapshotEntry().getRecordedAtMillis();
+        assertTrue(recordedAt >= before && recordedAt <= currentTimeMillis());
+    }
+}
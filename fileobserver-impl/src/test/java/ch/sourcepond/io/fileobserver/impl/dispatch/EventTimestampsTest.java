@@ -0,0 +1,84 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.dispatch;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class EventTimestampsTest {
+    private final EventTimestamps timestamps = new EventTimestamps(10L, 20L);
+
+    @Test
+    public void checksumDefaultsToDebounced() {
+        assertEquals(10L, timestamps.getReceivedNanos());
+        assertEquals(20L, timestamps.getDebouncedNanos());
+        assertEquals(20L, timestamps.getChecksumNanos());
+    }
+
+    @Test
+    public void checksumComputed() {
+        final long before = System.nanoTime();
+        final EventTimestamps computed = timestamps.checksumComputed();
+        assertEquals(10L, computed.getReceivedNanos());
+        assertEquals(20L, computed.getDebouncedNanos());
+        assertTrue(computed.getChecksumNanos() >= before);
+    }
+
+    @Test
+    public void currentOrNowWithoutBinding() {
+        final long before = System.nanoTime();
+        final EventTimestamps now = EventTimestamps.currentOrNow();
+        assertTrue(now.getReceivedNanos() >= before);
+        assertEquals(now.getReceivedNanos(), now.getDebouncedNanos());
+        assertEquals(now.getDebouncedNanos(), now.getChecksumNanos());
+    }
+
+    @Test
+    public void runWith() {
+        final EventTimestamps outer = new EventTimestamps(1L, 2L);
+        final AtomicReference<EventTimestamps> inOuter = new AtomicReference<>();
+        final AtomicReference<EventTimestamps> inInner = new AtomicReference<>();
+        final AtomicReference<EventTimestamps> afterInner = new AtomicReference<>();
+        outer.runWith(() -> {
+            inOuter.set(EventTimestamps.currentOrNow());
+            timestamps.runWith(() -> inInner.set(EventTimestamps.currentOrNow()));
+            afterInner.set(EventTimestamps.currentOrNow());
+        });
+        assertSame(outer, inOuter.get());
+        assertSame(timestamps, inInner.get());
+        assertSame(outer, afterInner.get());
+        assertNotSame(outer, EventTimestamps.currentOrNow());
+    }
+
+    @Test
+    public void bindingRemovedAfterException() {
+        try {
+            timestamps.runWith(() -> {
+                throw new IllegalStateException("expected");
+            });
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+        assertNotSame(timestamps, EventTimestamps.currentOrNow());
+    }
+}
@@ -0,0 +1,70 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.dispatch;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+import static java.lang.Thread.sleep;
+import static java.nio.file.Paths.get;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ *
+ */
+public class InterningDispatchKeyFactoryTest {
+    private static final String DIRECTORY_KEY_1 = "directoryKey1";
+    private static final String DIRECTORY_KEY_2 = "directoryKey2";
+    private final Path path = get("a", "b");
+    private final InterningDispatchKeyFactory factory = new InterningDispatchKeyFactory();
+
+    @Test
+    public void sameInstanceForEqualKeys() {
+        final DispatchKey key = factory.newKey(DIRECTORY_KEY_1, path);
+        assertSame(key, factory.newKey(DIRECTORY_KEY_1, get("a", "b")));
+        assertEquals(1, factory.size());
+    }
+
+    @Test
+    public void differentInstancesForDifferentKeys() {
+        final DispatchKey key = factory.newKey(DIRECTORY_KEY_1, path);
+        assertNotSame(key, factory.newKey(DIRECTORY_KEY_2, path));
+        assertNotSame(key, factory.newKey(DIRECTORY_KEY_1, get("a", "c")));
+        assertEquals(3, factory.size());
+    }
+
+    @Test
+    public void equalToDefaultKey() {
+        final DispatchKey key = factory.newKey(DIRECTORY_KEY_1, path);
+        final DispatchKey defaultKey = new DefaultDispatchKeyFactory().newKey(DIRECTORY_KEY_1, path);
+        assertEquals(defaultKey, key);
+        assertEquals(defaultKey.hashCode(), key.hashCode());
+    }
+
+    @Test
+    public void collectedKeysArePurged() throws Exception {
+        final DispatchKey retained = factory.newKey(DIRECTORY_KEY_1, path);
+        factory.newKey(DIRECTORY_KEY_2, path);
+        for (int i = 0; i < 100 && factory.size() > 1; i++) {
+            System.gc();
+            sleep(10);
+            assertSame(retained, factory.newKey(DIRECTORY_KEY_1, path));
+        }
+        assertEquals(1, factory.size());
+    }
+}
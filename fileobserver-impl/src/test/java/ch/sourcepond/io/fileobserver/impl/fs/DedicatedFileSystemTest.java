@@ -30,8 +30,6 @@ import java.io.IOException;
 import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -50,7 +48,7 @@ import static org.mockito.Mockito.when;
 public class DedicatedFileSystemTest {
     private static final Object DIRECTORY_KEY_1 = "dirKey1";
     private static final Object DIRECTORY_KEY_2 = "dirKey2";
-    private final ConcurrentMap<Path, Directory> dirs = new ConcurrentHashMap<>();
+    private final DirectoryIndex dirs = new DirectoryIndex();
     private final ListenerManager manager = mock(ListenerManager.class);
     private final DirectoryRegistrationWalker walker = mock(DirectoryRegistrationWalker.class);
     private final EventDispatcher dispatcher = mock(EventDispatcher.class);
@@ -186,6 +184,7 @@ public class DedicatedFileSystemTest {
         dirs.put(rootDirPath1, rootDir1);
         fs.close();
         verify(fsEventDispatcher, timeout(2000)).close();
+        verify(walker).close();
         assertTrue(dirs.isEmpty());
         verify(root).removeFileSystem(fs);
     }
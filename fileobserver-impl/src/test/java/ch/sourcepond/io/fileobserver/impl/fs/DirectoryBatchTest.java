@@ -0,0 +1,101 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.sourcepond.io.fileobserver.impl.fs.DirectoryBatch.ADDED;
+import static ch.sourcepond.io.fileobserver.impl.fs.DirectoryBatch.DRAINED;
+import static ch.sourcepond.io.fileobserver.impl.fs.DirectoryBatch.MERGED;
+import static java.lang.System.nanoTime;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ */
+public class DirectoryBatchTest {
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Path file1 = mock(Path.class);
+    private final Path file2 = mock(Path.class);
+    private final DirectoryBatch batch = new DirectoryBatch(pending);
+
+    @Test
+    public void pushCollapsesEventsPerFile() {
+        assertEquals(ADDED, batch.push(file1, ENTRY_CREATE));
+        assertEquals(MERGED, batch.push(file1, ENTRY_MODIFY));
+        assertEquals(ADDED, batch.push(file2, ENTRY_DELETE));
+        assertEquals(2, pending.get());
+        assertTrue(batch.contains(file1));
+
+        final Map<Path, WatchEventState> states = batch.drainExpired(nanoTime());
+        assertTrue(batch.isDrained());
+        assertEquals(2, states.size());
+        assertEquals(WatchEventState.CREATE, states.get(file1).getState());
+        assertEquals(WatchEventState.DELETE, states.get(file2).getState());
+    }
+
+    @Test
+    public void rejectEventsWhenDrained() {
+        batch.push(file1, ENTRY_MODIFY);
+        batch.drainExpired(nanoTime());
+        assertEquals(DRAINED, batch.push(file2, ENTRY_MODIFY));
+        assertFalse(batch.contains(file1));
+        assertTrue(batch.drainExpired(nanoTime()).isEmpty());
+        assertEquals(1, pending.get());
+    }
+
+    @Test
+    public void keepFilesWhichHaveNotExpired() {
+        batch.push(file1, ENTRY_MODIFY);
+        final long expired = nanoTime();
+        batch.push(file2, ENTRY_MODIFY);
+
+        final Map<Path, WatchEventState> states = batch.drainExpired(expired);
+        assertEquals(1, states.size());
+        assertTrue(states.containsKey(file1));
+        assertFalse(batch.isDrained());
+        assertTrue(batch.contains(file2));
+        assertTrue(batch.getOldestReceivedNanos(nanoTime()) - expired >= 0);
+
+        // Further events of a remaining file are accepted
+        assertEquals(MERGED, batch.push(file2, ENTRY_DELETE));
+        assertEquals(1, batch.drainExpired(nanoTime()).size());
+        assertTrue(batch.isDrained());
+    }
+
+    @Test
+    public void drainInArrivalOrder() {
+        batch.push(file2, ENTRY_MODIFY);
+        batch.push(file1, ENTRY_MODIFY);
+        assertArrayEquals(new Path[]{file2, file1}, batch.drainExpired(nanoTime()).keySet().toArray());
+    }
+
+    @Test
+    public void oldestReceivedNanosOfDrainedBatch() {
+        batch.push(file1, ENTRY_MODIFY);
+        batch.drainExpired(nanoTime());
+        assertEquals(42L, batch.getOldestReceivedNanos(42L));
+    }
+}
@@ -0,0 +1,175 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Thread.currentThread;
+import static java.lang.Thread.sleep;
+import static java.nio.file.Paths.get;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ */
+public class DirectoryIndexTest {
+    private final Path root = get("/root");
+    private final Path sub = root.resolve("sub");
+    private final Path subSub1 = sub.resolve("subSub1");
+    private final Path subSub2 = sub.resolve("subSub2");
+    private final Path other = get("/other/deep/path");
+    private final Directory rootDir = mock(Directory.class);
+    private final Directory subDir = mock(Directory.class);
+    private final Directory subSub1Dir = mock(Directory.class);
+    private final Directory subSub2Dir = mock(Directory.class);
+    private final Directory otherDir = mock(Directory.class);
+    private final DirectoryIndex index = new DirectoryIndex();
+
+    @Before
+    public void setup() {
+        index.put(root, rootDir);
+        index.put(sub, subDir);
+        index.put(subSub1, subSub1Dir);
+        index.put(subSub2, subSub2Dir);
+        index.put(other, otherDir);
+    }
+
+    @Test
+    public void getDirectory() {
+        assertSame(subDir, index.get(sub));
+        assertNull(index.get(get("/other")));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void subtree() {
+        final Collection<Directory> subtree = index.subtree(sub);
+        assertEquals(3, subtree.size());
+        assertTrue(subtree.containsAll(asList(subDir, subSub1Dir, subSub2Dir)));
+        assertSame(subDir, subtree.iterator().next());
+        assertTrue(index.subtree(get("/unknown")).isEmpty());
+
+        // Intermediate nodes have no directory but contain the registered descendants
+        assertEquals(1, index.subtree(get("/other")).size());
+    }
+
+    @Test
+    public void directChildren() {
+        final Collection<Path> children = index.directChildren(sub);
+        assertEquals(2, children.size());
+        assertTrue(children.containsAll(asList(subSub1, subSub2)));
+        assertTrue(index.directChildren(get("/other")).isEmpty());
+    }
+
+    @Test
+    public void removeSubtree() {
+        final Collection<Directory> removed = index.removeSubtree(sub);
+        assertEquals(3, removed.size());
+        assertSame(subDir, removed.iterator().next());
+        assertEquals(2, index.size());
+        assertNull(index.get(subSub1));
+        assertTrue(index.directChildren(root).isEmpty());
+    }
+
+    @Test
+    public void removeSubtreeOfIntermediateNode() {
+        assertTrue(index.removeSubtree(get("/other")).isEmpty());
+        assertSame(otherDir, index.get(other));
+    }
+
+    @Test
+    public void removeKeepsChildren() {
+        assertSame(subDir, index.remove(sub));
+        assertNull(index.get(sub));
+        assertEquals(2, index.directChildren(sub).size());
+        index.remove(subSub1);
+        index.remove(subSub2);
+        assertTrue(index.subtree(sub).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void replace() {
+        final Directory replacement = mock(Directory.class);
+        assertSame(subDir, index.replace(sub, replacement));
+        assertSame(replacement, index.get(sub));
+        assertNull(index.replace(get("/other"), replacement));
+        assertNull(index.get(get("/other")));
+    }
+
+    @Test
+    public void computeIfAbsent() {
+        assertSame(subDir, index.computeIfAbsent(sub, p -> mock(Directory.class)));
+        final Path newPath = subSub1.resolve("new");
+        final Directory newDir = mock(Directory.class);
+        assertSame(newDir, index.computeIfAbsent(newPath, p -> newDir));
+        assertTrue(index.directChildren(subSub1).contains(newPath));
+    }
+
+    @Test
+    public void computeIfAbsentCallsFactoryOnce() throws Exception {
+        final Path newPath = subSub1.resolve("new");
+        final Directory newDir = mock(Directory.class);
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = newFixedThreadPool(4);
+        try {
+            final List<Future<Directory>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return index.computeIfAbsent(newPath, p -> {
+                        calls.incrementAndGet();
+                        try {
+                            sleep(100);
+                        } catch (final InterruptedException e) {
+                            currentThread().interrupt();
+                        }
+                        return newDir;
+                    });
+                }));
+            }
+            start.countDown();
+            for (final Future<Directory> result : results) {
+                assertSame(newDir, result.get());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void clear() {
+        index.clear();
+        assertTrue(index.isEmpty());
+    }
+}
@@ -29,8 +29,6 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 
 import static java.nio.file.FileSystems.getDefault;
@@ -44,7 +42,7 @@ import static org.mockito.Mockito.when;
  */
 public class DirectoryRebaseTest extends CopyResourcesTest {
     private static final String DIRECTORY_KEY = "getDirectoryKey";
-    private final ConcurrentMap<Path, Directory> dirs = new ConcurrentHashMap<>();
+    private final DirectoryIndex dirs = new DirectoryIndex();
     private final ResourcesFactory resourcesFactory = mock(ResourcesFactory.class);
     private final ExecutorService directoryWalkerExecutor = newSingleThreadExecutor();
     private final ExecutorService listenerExecutor = newSingleThreadExecutor();
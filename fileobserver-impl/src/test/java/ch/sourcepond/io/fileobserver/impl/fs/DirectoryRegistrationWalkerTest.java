@@ -27,13 +27,13 @@ import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
@@ -53,7 +53,7 @@ public class DirectoryRegistrationWalkerTest extends CopyResourcesTest {
     private final ExecutorService directoryWalkerExecutor = newSingleThreadExecutor();
     private final WatchServiceWrapper wrapper = mock(WatchServiceWrapper.class);
     private final DirectoryFactory directoryFactory = mock(DirectoryFactory.class);
-    private final ConcurrentMap<Path, Directory> dirs = new ConcurrentHashMap<>();
+    private final DirectoryIndex dirs = new DirectoryIndex();
     private final Collection<PathChangeListener> listeners = mock(Collection.class);
     private final WatchKey subdir_1_watchKey = mock(WatchKey.class);
     private final WatchKey subdir_11_watchKey = mock(WatchKey.class);
@@ -153,6 +153,65 @@ public class DirectoryRegistrationWalkerTest extends CopyResourcesTest {
         verifyDirectoryWalk(newRoot);
     }
 
+    @Test
+    public void verifyActivatorConstructorWithParallelism() {
+        new DirectoryRegistrationWalker(wrapper, directoryFactory, directoryWalkerExecutor, dirs, 4).close();
+    }
+
+    @Test
+    public void directoryCreatedInParallel() throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        walker = new DirectoryRegistrationWalker(
+                logger,
+                directoryFactory,
+                directoryWalkerExecutor,
+                wrapper,
+                dirs,
+                pool);
+        walker.directoryCreated(dispatcher, root_dir_path);
+        verifyDirectoryWalk(null);
+        walker.close();
+        assertTrue(pool.isShutdown());
+    }
+
+    @Test
+    public void rootRebasedInParallel() throws IOException {
+        walker = new DirectoryRegistrationWalker(
+                logger,
+                directoryFactory,
+                directoryWalkerExecutor,
+                wrapper,
+                dirs,
+                new ForkJoinPool(4));
+        final Directory newRoot = mock(Directory.class);
+        when(newRoot.getPath()).thenReturn(root_dir_path);
+        walker.rootAdded(dispatcher, newRoot);
+        verifyDirectoryWalk(newRoot);
+        walker.close();
+    }
+
+    @Test
+    public void logWarnWhenIOExceptionOccursInParallel() throws IOException {
+        walker = new DirectoryRegistrationWalker(
+                logger,
+                directoryFactory,
+                directoryWalkerExecutor,
+                wrapper,
+                dirs,
+                new ForkJoinPool(4));
+        final IOException expected = new IOException(ANY_MESSAGE);
+        doThrow(expected).when(wrapper).register(subdir_11_path);
+        walker.directoryCreated(dispatcher, root_dir_path);
+        verify(logger, timeout(200)).warn(eq(ANY_MESSAGE), argThat((Throwable th) -> {
+            Throwable cause = th.getCause();
+            return (cause instanceof UncheckedIOException) && expected == cause.getCause();
+        }));
+
+        // Other sub-trees must not be affected
+        verify(subdir_22, timeout(200)).informCreatedOrInitial(dispatcher, null, testfile_221_txt_path);
+        walker.close();
+    }
+
     @Test
     public void logWarnWhenIOExceptionOccurs() throws IOException {
         walker = new DirectoryRegistrationWalker(
@@ -168,6 +227,9 @@ public class DirectoryRegistrationWalkerTest extends CopyResourcesTest {
             Throwable cause = th.getCause();
             return (cause instanceof UncheckedIOException) && expected == cause.getCause();
         }));
+
+        // Other sub-trees must not be affected
+        verify(subdir_22, timeout(200)).informCreatedOrInitial(dispatcher, null, testfile_221_txt_path);
     }
 
     @Test
@@ -14,33 +14,52 @@ limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.fs;
 
 import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.PendingEventsPolicy;
+import ch.sourcepond.io.fileobserver.impl.SharedScheduler;
 import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
+import ch.sourcepond.io.fileobserver.impl.listener.BatchEventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.EventDispatcher;
 import ch.sourcepond.io.fileobserver.impl.listener.ListenerManager;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.spi.FileSystemProvider;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static java.lang.Thread.currentThread;
 import static java.lang.Thread.sleep;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -50,10 +69,11 @@ import static org.mockito.Mockito.withSettings;
 public class FsEventDispatcherTest {
     private final long EXPECTED_DELAY = 1000L;
     private final Config config = mock(Config.class);
-    private final ConcurrentMap<Path, Directory> dirs = new ConcurrentHashMap<>();
+    private final DirectoryIndex dirs = new DirectoryIndex();
     private final DirectoryRegistrationWalker walker = mock(DirectoryRegistrationWalker.class);
     private final WatchServiceWrapper wrapper = mock(WatchServiceWrapper.class);
     private final EventDispatcher defaultDispatcher = mock(EventDispatcher.class);
+    private final BatchEventDispatcher batchDispatcher = mock(BatchEventDispatcher.class);
     private final ListenerManager manager = mock(ListenerManager.class);
     private final WatchKey watchKey = mock(WatchKey.class);
     private final WatchEvent<Path> watchEvent = mock(WatchEvent.class);
@@ -85,6 +105,7 @@ public class FsEventDispatcherTest {
         when(watchEvent.context()).thenReturn(context);
         when(watchable.resolve(context)).thenReturn(path);
         when(manager.getDefaultDispatcher()).thenReturn(defaultDispatcher);
+        when(manager.openBatch()).thenReturn(batchDispatcher);
         dispatcher.setConfig(config);
     }
 
@@ -100,6 +121,93 @@ public class FsEventDispatcherTest {
         assertTrue(dispatcher.receiverThread.isAlive());
     }
 
+    @Test
+    public void verifyFileModifiedReceivedByMultiplexer() throws Exception {
+        final ReceiverMultiplexer multiplexer = mock(ReceiverMultiplexer.class);
+        final SharedScheduler scheduler = new SharedScheduler();
+        final FsEventDispatcher shared = new FsEventDispatcher(dirs, walker, wrapper, manager, Runnable::run,
+                scheduler, multiplexer);
+        try {
+            shared.setConfig(config);
+            when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+            when(wrapper.poll()).thenReturn(watchKey, (WatchKey) null);
+            shared.start();
+            verify(multiplexer).add(shared);
+            assertFalse(shared.receiverThread.isAlive());
+            assertTrue(shared.receiveAvailable());
+            assertFalse(shared.receiveAvailable());
+            verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+            verify(watchKey).reset();
+        } finally {
+            shared.close();
+            scheduler.shutdown();
+        }
+        verify(multiplexer).remove(shared);
+    }
+
+    @Test
+    public void expiredEventsDispatchedByExecutor() throws Exception {
+        final ExecutorService executor = newSingleThreadExecutor(r -> new Thread(r, "dispatch"));
+        final SharedScheduler scheduler = new SharedScheduler();
+        final FsEventDispatcher shared = new FsEventDispatcher(dirs, walker, wrapper, manager, executor,
+                scheduler, null);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+        doAnswer(inv -> {
+            threadName.set(currentThread().getName());
+            return null;
+        }).when(watchableDirectory).informIfChanged(batchDispatcher, path, false);
+        try {
+            shared.setConfig(config);
+            when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+            shared.start();
+            verify(watchableDirectory, timeout(1500)).informIfChanged(batchDispatcher, path, false);
+            assertEquals("dispatch", threadName.get());
+        } finally {
+            shared.close();
+            scheduler.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void drainAllSignalledKeys() {
+        final WatchKey otherKey = mock(WatchKey.class);
+        final Path otherDirectory = mock(Path.class);
+        when(otherKey.watchable()).thenReturn(otherDirectory);
+        when(otherKey.pollEvents()).thenReturn(asList(watchEvent));
+        when(wrapper.poll()).thenReturn(otherKey, (WatchKey) null);
+        final List<ReceivedEvents> batch = dispatcher.drain(watchKey);
+        assertEquals(2, batch.size());
+        assertSame(watchable, batch.get(0).getDirectory());
+        assertSame(otherDirectory, batch.get(1).getDirectory());
+        assertEquals(asList(watchEvent), batch.get(1).getEvents());
+        verify(watchKey).reset();
+        verify(otherKey).reset();
+    }
+
+    @Test
+    public void drainIsLimited() {
+        when(wrapper.poll()).thenReturn(watchKey);
+        assertEquals(FsEventDispatcher.MAX_KEYS_PER_BATCH, dispatcher.drain(watchKey).size());
+        verify(watchKey, times(FsEventDispatcher.MAX_KEYS_PER_BATCH)).reset();
+    }
+
+    @Test
+    public void resetKeyBeforeEventsAreDelayed() throws Exception {
+        when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(watchKey.pollEvents()).thenAnswer(iom -> {
+            verify(watchKey, never()).reset();
+            return asList(watchEvent);
+        });
+        when(watchKey.reset()).thenAnswer(iom -> {
+            assertTrue(dispatcher.queues.isEmpty());
+            return true;
+        });
+        dispatcher.start();
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+        verify(watchKey).reset();
+    }
+
     @Test
     public void verifyBreakLoopWhenInterrupted() throws Exception {
         dispatcher.receiverThread.interrupt();
@@ -137,13 +245,13 @@ public class FsEventDispatcherTest {
         dirs.put(path, pathDirectory);
         final Path subPath = mock(Path.class, withSettings().name("subPath"));
         final Directory subDirectory = mock(Directory.class);
-        when(subPath.startsWith(path)).thenReturn(true);
+        when(subPath.getParent()).thenReturn(path);
         dirs.put(subPath, subDirectory);
         dispatcher.start();
 
-        verify(pathDirectory, after(1500)).cancelKeyAndDiscardResources(defaultDispatcher);
-        verify(subDirectory, after(1500)).cancelKeyAndDiscardResources(defaultDispatcher);
-        verify(watchableDirectory, never()).cancelKeyAndDiscardResources(defaultDispatcher);
+        verify(pathDirectory, after(1500)).cancelKeyAndDiscardResources(batchDispatcher);
+        verify(subDirectory, after(1500)).cancelKeyAndDiscardResources(batchDispatcher);
+        verify(watchableDirectory, never()).cancelKeyAndDiscardResources(batchDispatcher);
         verify(watchKey).reset();
 
         assertEquals(1, dirs.size());
@@ -156,22 +264,109 @@ public class FsEventDispatcherTest {
     public void verifyFileCreated() throws Exception {
         when(watchEvent.kind()).thenReturn(ENTRY_CREATE);
         dispatcher.start();
-        verify(watchableDirectory, after(1500)).informIfChanged(defaultDispatcher, path, true);
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, true);
         verifyNoMoreInteractions(watchableDirectory);
         verify(watchKey).reset();
         assertTrue(dispatcher.queues.isEmpty());
     }
 
+    @Test
+    public void fileAddedToPendingBatchIsDebouncedForFullDelay() throws Exception {
+        final WatchKey otherKey = mock(WatchKey.class);
+        final WatchEvent<Path> otherEvent = mock(WatchEvent.class);
+        final Path otherContext = mock(Path.class, withSettings().name("otherContext"));
+        final Path otherPath = mock(Path.class, withSettings().name("otherPath"));
+        final BasicFileAttributes otherAttrs = mock(BasicFileAttributes.class);
+        when(otherKey.watchable()).thenReturn(watchable);
+        when(otherKey.pollEvents()).thenReturn(asList(otherEvent));
+        when(otherEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(otherEvent.context()).thenReturn(otherContext);
+        when(watchable.resolve(otherContext)).thenReturn(otherPath);
+        when(otherPath.getFileSystem()).thenReturn(fs);
+        when(otherPath.getParent()).thenReturn(watchable);
+        when(provider.readAttributes(otherPath, BasicFileAttributes.class)).thenReturn(otherAttrs);
+        when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(wrapper.take()).thenReturn(watchKey).thenAnswer(iom -> {
+            sleep(700);
+            return otherKey;
+        }).thenAnswer(iom -> {
+            sleep(100000);
+            return null;
+        });
+        dispatcher.start();
+
+        // The other file joined the batch shortly before it expired; it must not be dispatched along
+        verify(watchableDirectory, timeout(1500)).informIfChanged(batchDispatcher, path, false);
+        verify(watchableDirectory, never()).informIfChanged(batchDispatcher, otherPath, false);
+        verify(watchableDirectory, timeout(1500)).informIfChanged(batchDispatcher, otherPath, false);
+        assertEquals(0, dispatcher.getPendingEvents());
+    }
+
+    @Test
+    public void verifyFilesOfSameDirectoryDispatchedTogether() throws Exception {
+        final WatchEvent<Path> otherEvent = mock(WatchEvent.class);
+        final Path otherContext = mock(Path.class, withSettings().name("otherContext"));
+        final Path otherPath = mock(Path.class, withSettings().name("otherPath"));
+        final BasicFileAttributes otherAttrs = mock(BasicFileAttributes.class);
+        when(otherEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(otherEvent.context()).thenReturn(otherContext);
+        when(watchable.resolve(otherContext)).thenReturn(otherPath);
+        when(otherPath.getFileSystem()).thenReturn(fs);
+        when(otherPath.getParent()).thenReturn(watchable);
+        when(provider.readAttributes(otherPath, BasicFileAttributes.class)).thenReturn(otherAttrs);
+        when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(watchKey.pollEvents()).thenReturn(asList(watchEvent, otherEvent));
+        dispatcher.start();
+        verify(watchableDirectory, after(1500)).informIfChanged(same(batchDispatcher),
+                argThat((Map<Path, EventTimestamps> files) -> files.size() == 2 &&
+                        files.containsKey(path) && files.containsKey(otherPath)),
+                eq(false));
+        verifyNoMoreInteractions(watchableDirectory);
+        verify(batchDispatcher).close();
+        assertTrue(dispatcher.queues.isEmpty());
+        assertEquals(0, dispatcher.getPendingEvents());
+    }
+
     @Test
     public void verifyFileModified() throws Exception {
         when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
         dispatcher.start();
-        verify(watchableDirectory, after(1500)).informIfChanged(defaultDispatcher, path, false);
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
         verifyNoMoreInteractions(watchableDirectory);
+        verify(batchDispatcher).close();
         verify(watchKey).reset();
         assertTrue(dispatcher.queues.isEmpty());
     }
 
+    @Test
+    public void verifyFileRecreated() throws Exception {
+        final WatchEvent<Path> createEvent = mock(WatchEvent.class);
+        when(createEvent.context()).thenReturn(context);
+        when(createEvent.kind()).thenReturn(ENTRY_CREATE);
+        when(watchEvent.kind()).thenReturn(ENTRY_DELETE);
+        when(watchKey.pollEvents()).thenReturn(asList(watchEvent, createEvent));
+        dispatcher.start();
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+        verifyNoMoreInteractions(watchableDirectory);
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
+    @Test
+    public void verifyDirectoryRecreated() throws Exception {
+        when(pathAttrs.isDirectory()).thenReturn(true);
+        final Directory pathDirectory = mock(Directory.class);
+        dirs.put(path, pathDirectory);
+        final WatchEvent<Path> createEvent = mock(WatchEvent.class);
+        when(createEvent.context()).thenReturn(context);
+        when(createEvent.kind()).thenReturn(ENTRY_CREATE);
+        when(watchEvent.kind()).thenReturn(ENTRY_DELETE);
+        when(watchKey.pollEvents()).thenReturn(asList(watchEvent, createEvent));
+        dispatcher.start();
+        verify(pathDirectory, after(1500)).cancelKeyAndDiscardResources(batchDispatcher);
+        verify(walker).directoryCreated(defaultDispatcher, path);
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
     @Test
     public void verifyFileWithUnknownParentModified() throws Exception {
         when(path.getParent()).thenReturn(mock(Path.class));
@@ -188,7 +383,7 @@ public class FsEventDispatcherTest {
     public void verifyFileDiscarded() throws Exception {
         when(watchEvent.kind()).thenReturn(ENTRY_DELETE);
         dispatcher.start();
-        verify(watchableDirectory, after(1500)).informDiscard(defaultDispatcher, path);
+        verify(watchableDirectory, after(1500)).informDiscard(batchDispatcher, path);
         verifyNoMoreInteractions(watchableDirectory);
         verify(watchKey).reset();
         assertTrue(dispatcher.queues.isEmpty());
@@ -204,4 +399,122 @@ public class FsEventDispatcherTest {
         verify(watchKey).reset();
         assertTrue(dispatcher.queues.isEmpty());
     }
+
+    @Test
+    public void verifyOverflowRescan() throws Exception {
+        final Path knownPath = mock(Path.class, withSettings().name("knownPath"));
+        final Path deletedPath = mock(Path.class, withSettings().name("deletedPath"));
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+        when(knownPath.getFileSystem()).thenReturn(fs);
+        when(knownPath.getParent()).thenReturn(watchable);
+        when(provider.readAttributes(knownPath, BasicFileAttributes.class)).thenReturn(mock(BasicFileAttributes.class));
+        when(deletedPath.getFileSystem()).thenReturn(fs);
+        when(deletedPath.getParent()).thenReturn(watchable);
+        when(provider.readAttributes(deletedPath, BasicFileAttributes.class)).thenThrow(NoSuchFileException.class);
+        when(stream.iterator()).thenReturn(asList(path, knownPath).iterator());
+        when(provider.newDirectoryStream(same(watchable), any())).thenReturn(stream);
+        when(watchableDirectory.getTrackedFiles()).thenReturn(asList(knownPath, deletedPath));
+        when(watchEvent.kind()).thenReturn(OVERFLOW);
+        dispatcher.start();
+
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, true);
+        verify(watchableDirectory).informIfChanged(batchDispatcher, knownPath, false);
+        verify(watchableDirectory).informDiscard(batchDispatcher, deletedPath);
+        verify(watchKey).reset();
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
+    @Test
+    public void verifyOverflowOnDeletedDirectory() throws Exception {
+        when(provider.newDirectoryStream(same(watchable), any())).thenThrow(NoSuchFileException.class);
+        when(watchEvent.kind()).thenReturn(OVERFLOW);
+        dispatcher.start();
+
+        verify(watchableDirectory, after(1500)).cancelKeyAndDiscardResources(batchDispatcher);
+        assertTrue(dirs.isEmpty());
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
+    private Path setupSecondEvent() throws Exception {
+        final Path otherContext = mock(Path.class, withSettings().name("otherContext"));
+        final Path otherPath = mock(Path.class, withSettings().name("otherPath"));
+        final WatchEvent<Path> otherEvent = mock(WatchEvent.class);
+        when(otherEvent.context()).thenReturn(otherContext);
+        when(otherEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(watchable.resolve(otherContext)).thenReturn(otherPath);
+        when(otherPath.getFileSystem()).thenReturn(fs);
+        when(otherPath.getParent()).thenReturn(watchable);
+        when(provider.readAttributes(otherPath, BasicFileAttributes.class)).thenReturn(mock(BasicFileAttributes.class));
+        when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+        when(watchKey.pollEvents()).thenReturn(asList(watchEvent, otherEvent));
+        when(config.maxPendingEvents()).thenReturn(1);
+        return otherPath;
+    }
+
+    @Test
+    public void verifyPendingEvents() throws Exception {
+        when(watchEvent.kind()).thenReturn(ENTRY_MODIFY);
+        dispatcher.start();
+        sleep(500);
+        assertEquals(1, dispatcher.getPendingEvents());
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+        assertEquals(0, dispatcher.getPendingEvents());
+    }
+
+    @Test
+    public void verifyBlockWhenPendingLimitReached() throws Exception {
+        final Path otherPath = setupSecondEvent();
+        when(config.pendingEventsPolicy()).thenReturn(PendingEventsPolicy.BLOCK);
+        dispatcher.start();
+        sleep(500);
+        assertTrue(dispatcher.isPendingLimitReached());
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, otherPath, false);
+        verify(watchKey).reset();
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
+    @Test
+    public void verifyCoalesceWhenPendingLimitReached() throws Exception {
+        final Path otherPath = setupSecondEvent();
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+        when(stream.iterator()).thenReturn(asList(path, otherPath).iterator());
+        when(provider.newDirectoryStream(same(watchable), any())).thenReturn(stream);
+        when(config.pendingEventsPolicy()).thenReturn(PendingEventsPolicy.COALESCE);
+        dispatcher.start();
+        sleep(500);
+        verify(watchKey).reset();
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+
+        // Second event has been replaced by a rescan which starts after the first event has been dispatched
+        verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, otherPath, true);
+        verify(watchableDirectory).informIfChanged(batchDispatcher, path, true);
+        assertTrue(dispatcher.queues.isEmpty());
+    }
+
+    @Test
+    public void verifyMultiplexedReceiverDoesNotBlock() throws Exception {
+        final Path otherPath = setupSecondEvent();
+        final DirectoryStream<Path> stream = mock(DirectoryStream.class);
+        when(stream.iterator()).thenReturn(asList(path, otherPath).iterator());
+        when(provider.newDirectoryStream(same(watchable), any())).thenReturn(stream);
+        when(config.pendingEventsPolicy()).thenReturn(PendingEventsPolicy.BLOCK);
+        when(wrapper.poll()).thenReturn(watchKey, (WatchKey) null);
+        final SharedScheduler scheduler = new SharedScheduler();
+        final FsEventDispatcher shared = new FsEventDispatcher(dirs, walker, wrapper, manager, Runnable::run,
+                scheduler, mock(ReceiverMultiplexer.class));
+        try {
+            shared.setConfig(config);
+            shared.start();
+
+            // A shared receiver thread must not wait for capacity; the second event is coalesced into a rescan
+            assertTrue(shared.receiveAvailable());
+            verify(watchableDirectory, never()).informIfChanged(batchDispatcher, path, false);
+            verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, path, false);
+            verify(watchableDirectory, after(1500)).informIfChanged(batchDispatcher, otherPath, true);
+        } finally {
+            shared.close();
+            scheduler.shutdown();
+        }
+    }
 }
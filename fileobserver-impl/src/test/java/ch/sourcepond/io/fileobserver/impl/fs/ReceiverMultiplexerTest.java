@@ -0,0 +1,81 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.ClosedWatchServiceException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class ReceiverMultiplexerTest {
+    private final FsEventDispatcher dispatcher1 = mock(FsEventDispatcher.class);
+    private final FsEventDispatcher dispatcher2 = mock(FsEventDispatcher.class);
+    private final ReceiverMultiplexer multiplexer = new ReceiverMultiplexer(1);
+
+    @After
+    public void tearDown() {
+        multiplexer.close();
+    }
+
+    @Test
+    public void receiveFromAllDispatchers() {
+        multiplexer.add(dispatcher1);
+        multiplexer.add(dispatcher2);
+        when(dispatcher2.receiveAvailable()).thenReturn(true);
+        assertTrue(multiplexer.receiveOnce());
+        verify(dispatcher1).receiveAvailable();
+        verify(dispatcher2).receiveAvailable();
+    }
+
+    @Test
+    public void nothingReceived() {
+        multiplexer.add(dispatcher1);
+        assertFalse(multiplexer.receiveOnce());
+    }
+
+    @Test
+    public void removeDispatcher() {
+        multiplexer.add(dispatcher1);
+        multiplexer.remove(dispatcher1);
+        assertFalse(multiplexer.receiveOnce());
+        verify(dispatcher1, times(0)).receiveAvailable();
+    }
+
+    @Test
+    public void removeDispatcherWhenWatchServiceClosed() {
+        multiplexer.add(dispatcher1);
+        when(dispatcher1.receiveAvailable()).thenThrow(ClosedWatchServiceException.class);
+        multiplexer.receiveOnce();
+        multiplexer.receiveOnce();
+        verify(dispatcher1).receiveAvailable();
+    }
+
+    @Test(timeout = 5000)
+    public void receiverThreadsPollDispatchers() {
+        multiplexer.add(dispatcher1);
+        multiplexer.start();
+        verify(dispatcher1, timeout(2000).atLeast(2)).receiveAvailable();
+    }
+}
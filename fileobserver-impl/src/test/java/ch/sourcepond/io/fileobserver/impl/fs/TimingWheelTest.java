@@ -0,0 +1,95 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.lang.Thread.sleep;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class TimingWheelTest {
+    private static final long TICK_MILLIS = 50L;
+    private final ScheduledExecutorService executor = newScheduledThreadPool(1);
+    private final List<Collection<String>> expired = new CopyOnWriteArrayList<>();
+    private final TimingWheel<String> wheel = new TimingWheel<>(executor, TICK_MILLIS, e -> expired.add(new ArrayList<>(e)));
+
+    @After
+    public void tearDown() {
+        wheel.close();
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTick() {
+        new TimingWheel<String>(executor, 0, e -> {});
+    }
+
+    @Test
+    public void expireAfterDelay() throws Exception {
+        wheel.schedule("a", 500);
+        sleep(250);
+        assertTrue(expired.isEmpty());
+        sleep(500);
+        assertEquals(1, expired.size());
+        assertEquals(1, expired.get(0).size());
+        assertTrue(expired.get(0).contains("a"));
+    }
+
+    @Test
+    public void expireSameTickTogether() throws Exception {
+        final TimingWheel<String> coarseWheel = new TimingWheel<>(executor, 500, e -> expired.add(new ArrayList<>(e)));
+        coarseWheel.schedule("a", 0);
+        coarseWheel.schedule("b", 0);
+        sleep(750);
+        coarseWheel.close();
+        assertEquals(1, expired.size());
+        assertEquals(2, expired.get(0).size());
+        assertTrue(expired.get(0).contains("a"));
+        assertTrue(expired.get(0).contains("b"));
+    }
+
+    @Test
+    public void expireAfterMoreThanOneRound() throws Exception {
+        wheel.schedule("a", TICK_MILLIS * (TimingWheel.WHEEL_SIZE + 2));
+        sleep(TICK_MILLIS * 4);
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void expireImmediately() throws Exception {
+        wheel.schedule("a", 0);
+        sleep(250);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void noExpiryAfterClose() throws Exception {
+        wheel.schedule("a", 100);
+        wheel.close();
+        sleep(300);
+        assertTrue(expired.isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.fs;
+
+import org.junit.Test;
+
+import static ch.sourcepond.io.fileobserver.impl.fs.WatchEventState.CREATE;
+import static ch.sourcepond.io.fileobserver.impl.fs.WatchEventState.DELETE;
+import static ch.sourcepond.io.fileobserver.impl.fs.WatchEventState.DELETE_CREATE;
+import static ch.sourcepond.io.fileobserver.impl.fs.WatchEventState.MODIFY;
+import static ch.sourcepond.io.fileobserver.impl.fs.WatchEventState.NONE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static org.junit.Assert.assertEquals;
+
+public class WatchEventStateTest {
+    private final WatchEventState state = new WatchEventState();
+
+    @Test
+    public void verifyNoneInitially() {
+        assertEquals(NONE, state.getState());
+    }
+
+    @Test
+    public void ignoreIfPreviousEventKindIsEqual() {
+        state.push(ENTRY_MODIFY);
+        state.push(ENTRY_MODIFY);
+        state.push(ENTRY_MODIFY);
+        assertEquals(MODIFY, state.getState());
+    }
+
+    @Test
+    public void modifyAfterCreateRemainsCreate() {
+        state.push(ENTRY_CREATE);
+        state.push(ENTRY_MODIFY);
+        assertEquals(CREATE, state.getState());
+    }
+
+    @Test
+    public void deleteOverridesAnyState() {
+        state.push(ENTRY_CREATE);
+        state.push(ENTRY_MODIFY);
+        state.push(ENTRY_DELETE);
+        assertEquals(DELETE, state.getState());
+    }
+
+    @Test
+    public void replaceReCreateWithDeleteCreate() {
+        state.push(ENTRY_CREATE);
+        state.push(ENTRY_DELETE);
+        state.push(ENTRY_CREATE);
+        state.push(ENTRY_DELETE);
+        state.push(ENTRY_CREATE);
+        assertEquals(DELETE_CREATE, state.getState());
+    }
+
+    @Test
+    public void modifyAfterDeleteIsDeleteCreate() {
+        state.push(ENTRY_DELETE);
+        state.push(ENTRY_MODIFY);
+        state.push(ENTRY_CREATE);
+        assertEquals(DELETE_CREATE, state.getState());
+    }
+}
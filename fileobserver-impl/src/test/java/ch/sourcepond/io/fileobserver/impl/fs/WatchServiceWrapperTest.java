@@ -13,13 +13,19 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.fs;
 
+import ch.sourcepond.io.fileobserver.impl.Config;
+import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import ch.sourcepond.io.fileobserver.spi.WatchBackend;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.spi.FileSystemProvider;
 
 import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +37,12 @@ public class WatchServiceWrapperTest {
     private final FileSystem fs = mock(FileSystem.class);
     private final WatchService watchService = mock(WatchService.class);
     private final WatchKey watchKey = mock(WatchKey.class);
+    private final FileSystemProvider provider = mock(FileSystemProvider.class);
+    private final FileStore store = mock(FileStore.class);
+    private final WatchBackend backend = mock(WatchBackend.class);
+    private final WatchBackend polling = mock(WatchBackend.class);
+    private final WatchService backendWatchService = mock(WatchService.class);
+    private final WatchKey backendWatchKey = mock(WatchKey.class);
     private WatchServiceWrapper wrapper;
 
     @Before
@@ -75,4 +87,175 @@ public class WatchServiceWrapperTest {
             assertSame(expected, e.getCause());
         }
     }
+
+    private void setupBackends() throws IOException {
+        when(directory.getFileSystem()).thenReturn(fs);
+        when(fs.provider()).thenReturn(provider);
+        when(provider.getFileStore(directory)).thenReturn(store);
+        when(backend.newWatchService(fs)).thenReturn(backendWatchService);
+        when(backend.register(backendWatchService, directory)).thenReturn(backendWatchKey);
+        wrapper = new WatchServiceWrapper(fs, asList(backend), polling, null);
+    }
+
+    @Test
+    public void registerWithSupportingBackend() throws IOException {
+        setupBackends();
+        when(backend.supports(store)).thenReturn(true);
+        assertSame(backendWatchKey, wrapper.register(directory));
+        assertSame(backendWatchKey, wrapper.register(directory));
+        verify(backend).newWatchService(fs);
+        verify(directory, never()).register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+
+    @Test
+    public void registerWithoutSupportingBackend() throws IOException {
+        setupBackends();
+        when(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY)).thenReturn(watchKey);
+        assertSame(watchKey, wrapper.register(directory));
+        verify(backend, never()).newWatchService(fs);
+    }
+
+    @Test(timeout = 5000)
+    public void takeFromMultipleWatchServices() throws Exception {
+        setupBackends();
+        when(backend.supports(store)).thenReturn(true);
+        wrapper.register(directory);
+        when(backendWatchService.poll()).thenReturn(null, backendWatchKey);
+        assertSame(backendWatchKey, wrapper.take());
+        verify(watchService).poll(100L, MILLISECONDS);
+    }
+
+    @Test
+    public void poll() {
+        assertNull(wrapper.poll());
+        when(watchService.poll()).thenReturn(watchKey);
+        assertSame(watchKey, wrapper.poll());
+    }
+
+    @Test
+    public void pollFromMultipleWatchServices() throws IOException {
+        setupBackends();
+        when(backend.supports(store)).thenReturn(true);
+        wrapper.register(directory);
+        when(backendWatchService.poll()).thenReturn(backendWatchKey);
+        assertSame(backendWatchKey, wrapper.poll());
+        verify(watchService, never()).poll();
+    }
+
+    @Test
+    public void closeAllWatchServices() throws IOException {
+        setupBackends();
+        when(backend.supports(store)).thenReturn(true);
+        wrapper.register(directory);
+        wrapper.close();
+        verify(watchService).close();
+        verify(backendWatchService).close();
+    }
+
+    @Test
+    public void fallbackToPollingIfWatchServiceUnsupported() throws IOException {
+        final WatchService pollingWatchService = mock(WatchService.class);
+        doThrow(UnsupportedOperationException.class).when(fs).newWatchService();
+        when(polling.newWatchService(fs)).thenReturn(pollingWatchService);
+        when(polling.register(pollingWatchService, directory)).thenReturn(watchKey);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, null);
+        assertSame(watchKey, wrapper.register(directory));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void watchServiceUnsupportedWithoutPolling() throws IOException {
+        doThrow(UnsupportedOperationException.class).when(fs).newWatchService();
+        new WatchServiceWrapper(fs);
+    }
+
+    private WatchService setupPolling(final Path pDirectory, final WatchKey pKey) throws IOException {
+        final WatchService pollingWatchService = mock(WatchService.class);
+        when(polling.newWatchService(fs)).thenReturn(pollingWatchService);
+        when(polling.register(pollingWatchService, pDirectory)).thenReturn(pKey);
+        return pollingWatchService;
+    }
+
+    @Test
+    public void pollIfNativeWatchCannotBeObtained() throws IOException {
+        final Path otherDirectory = mock(Path.class);
+        final WatchKey pollingKey = mock(WatchKey.class);
+        final WatchService pollingWatchService = setupPolling(directory, pollingKey);
+        when(polling.register(pollingWatchService, otherDirectory)).thenReturn(pollingKey);
+        doThrow(new IOException("User limit of inotify watches reached")).when(directory).register(
+                watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, null);
+        assertSame(pollingKey, wrapper.register(directory));
+
+        // Native watches are not tried anymore until one has been released
+        assertSame(pollingKey, wrapper.register(otherDirectory));
+        verify(otherDirectory, never()).register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+
+    @Test(timeout = 5000)
+    public void takePolledKeyWithoutBackends() throws Exception {
+        final WatchKey pollingKey = mock(WatchKey.class);
+        final WatchService pollingWatchService = setupPolling(directory, pollingKey);
+        doThrow(new IOException("User limit of inotify watches reached")).when(directory).register(
+                watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, null);
+        wrapper.register(directory);
+        when(pollingWatchService.poll()).thenReturn(null, pollingKey);
+        assertSame(pollingKey, wrapper.take());
+        verify(watchService, never()).take();
+        verify(watchService).poll(100L, MILLISECONDS);
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void doNotPollDeletedDirectory() throws IOException {
+        doThrow(NoSuchFileException.class).when(directory).register(
+                watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, null);
+        wrapper.register(directory);
+    }
+
+    @Test
+    public void nativeWatchBudget() throws IOException {
+        final Path otherDirectory = mock(Path.class);
+        final WatchKey otherWatchKey = mock(WatchKey.class);
+        final WatchKey pollingKey = mock(WatchKey.class);
+        final Config config = mock(Config.class);
+        when(config.nativeWatchBudget()).thenReturn(1);
+        when(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY)).thenReturn(watchKey);
+        when(otherDirectory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY)).thenReturn(otherWatchKey);
+        when(watchKey.watchable()).thenReturn(directory);
+        setupPolling(otherDirectory, pollingKey);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, null);
+        wrapper.setConfig(config);
+
+        final WatchKey nativeKey = wrapper.register(directory);
+        assertSame(directory, nativeKey.watchable());
+        assertEquals(1, wrapper.getNativeWatches());
+        assertSame(pollingKey, wrapper.register(otherDirectory));
+
+        // After the native watch has been released, the budget can be spent again
+        nativeKey.cancel();
+        nativeKey.cancel();
+        verify(watchKey, times(2)).cancel();
+        assertEquals(0, wrapper.getNativeWatches());
+        wrapper.register(otherDirectory).cancel();
+        verify(otherWatchKey).cancel();
+    }
+
+    @Test
+    public void nativeWatchMaxDepth() throws IOException {
+        final Path root = FileSystems.getDefault().getPath("/root");
+        final Path level1 = root.resolve("level1");
+        final Path level2 = level1.resolve("level2");
+        final WatchKey pollingKey = mock(WatchKey.class);
+        final Config config = mock(Config.class);
+        final DirectoryIndex dirs = new DirectoryIndex();
+        dirs.put(root, mock(Directory.class));
+        dirs.put(level1, mock(Directory.class));
+        when(config.nativeWatchMaxDepth()).thenReturn(1);
+        setupPolling(level2, pollingKey);
+        wrapper = new WatchServiceWrapper(fs, asList(), polling, dirs);
+        wrapper.setConfig(config);
+        assertSame(pollingKey, wrapper.register(level2));
+        assertEquals(0, wrapper.getNativeWatches());
+    }
 }
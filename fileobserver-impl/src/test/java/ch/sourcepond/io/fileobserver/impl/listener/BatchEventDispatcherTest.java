@@ -0,0 +1,144 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.api.BatchPathChangeListener;
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
+import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestriction;
+import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestrictionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class BatchEventDispatcherTest {
+    private final ExecutorService dispatcherExecutor = newSingleThreadExecutor();
+    private final ExecutorService listenerExecutor = newSingleThreadExecutor();
+    private final DefaultDispatchRestrictionFactory restrictionFactory = mock(DefaultDispatchRestrictionFactory.class);
+    private final DefaultDispatchRestriction restriction = mock(DefaultDispatchRestriction.class);
+    private final DispatchEventFactory dispatchEventFactory = mock(DispatchEventFactory.class);
+    private final Collection<DispatchKey> parentKeys = emptyList();
+    private final DispatchKey modifiedKey = mock(DispatchKey.class);
+    private final DispatchKey otherModifiedKey = mock(DispatchKey.class);
+    private final DispatchKey discardedKey = mock(DispatchKey.class);
+    private final PathChangeEvent modifiedEvent = mock(PathChangeEvent.class);
+    private final PathChangeEvent otherModifiedEvent = mock(PathChangeEvent.class);
+    private final FileSystem fs = mock(FileSystem.class);
+    private final Path file = mock(Path.class);
+    private final Path otherFile = mock(Path.class);
+    private final BatchPathChangeListener batchListener = mock(BatchPathChangeListener.class);
+    private final PathChangeListener listener = mock(PathChangeListener.class);
+    private final KeyDeliveryHook hook = mock(KeyDeliveryHook.class);
+    private final ListenerManager manager = new ListenerManager(restrictionFactory, dispatchEventFactory);
+    private BatchEventDispatcher dispatcher;
+
+    @Before
+    public void setup() {
+        when(file.getFileSystem()).thenReturn(fs);
+        when(otherFile.getFileSystem()).thenReturn(fs);
+        when(modifiedKey.getRelativePath()).thenReturn(file);
+        when(otherModifiedKey.getRelativePath()).thenReturn(otherFile);
+        when(discardedKey.getRelativePath()).thenReturn(file);
+        when(modifiedEvent.getKey()).thenReturn(modifiedKey);
+        when(modifiedEvent.getFile()).thenReturn(file);
+        when(otherModifiedEvent.getKey()).thenReturn(otherModifiedKey);
+        when(otherModifiedEvent.getFile()).thenReturn(otherFile);
+        when(dispatchEventFactory.create(batchListener, modifiedKey, file, parentKeys, manager)).thenReturn(modifiedEvent);
+        when(dispatchEventFactory.create(batchListener, otherModifiedKey, otherFile, parentKeys, manager)).thenReturn(otherModifiedEvent);
+        when(restrictionFactory.createRestriction(fs)).thenReturn(restriction);
+        when(restriction.isAccepted(modifiedKey)).thenReturn(true);
+        when(restriction.isAccepted(otherModifiedKey)).thenReturn(true);
+        when(restriction.isAccepted(discardedKey)).thenReturn(true);
+        manager.setExecutors(dispatcherExecutor, listenerExecutor);
+        manager.addListener(batchListener);
+        manager.addListener(listener);
+        manager.addHook(hook);
+        dispatcher = manager.openBatch();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcherExecutor.shutdown();
+        listenerExecutor.shutdown();
+    }
+
+    @Test
+    public void deliverBatchOnClose() throws Exception {
+        dispatcher.discard(discardedKey);
+        dispatcher.modified(modifiedKey, file, parentKeys);
+        dispatcher.modified(otherModifiedKey, otherFile, parentKeys);
+
+        // Ordinary listeners are informed immediately
+        verify(listener, timeout(1000)).discard(discardedKey);
+        verify(batchListener, after(200).never()).discard(asList(discardedKey));
+
+        dispatcher.close();
+        final InOrder order = inOrder(hook, batchListener);
+        order.verify(hook, timeout(1000)).beforeDiscard(discardedKey);
+        order.verify(hook, timeout(1000)).beforeModify(modifiedKey, file);
+        order.verify(hook, timeout(1000)).beforeModify(otherModifiedKey, otherFile);
+        order.verify(batchListener, timeout(1000)).discard(asList(discardedKey));
+        order.verify(batchListener, timeout(1000)).modified(asList(modifiedEvent, otherModifiedEvent));
+        order.verify(hook, timeout(1000)).afterDiscard(discardedKey);
+        order.verify(hook, timeout(1000)).afterModify(modifiedKey, file);
+        order.verify(hook, timeout(1000)).afterModify(otherModifiedKey, otherFile);
+    }
+
+    @Test
+    public void deliverWhenLastReferenceReleased() throws Exception {
+        dispatcher.retain();
+        dispatcher.modified(modifiedKey, file, parentKeys);
+        dispatcher.close();
+        verify(batchListener, after(200).never()).modified(asList(modifiedEvent));
+        dispatcher.release();
+        verify(batchListener, timeout(1000)).modified(asList(modifiedEvent));
+    }
+
+    @Test
+    public void dispatchImmediatelyAfterDelivery() throws Exception {
+        dispatcher.close();
+        dispatcher.modified(modifiedKey, file, parentKeys);
+        verify(batchListener, timeout(1000)).modified(modifiedEvent);
+        verify(batchListener, never()).modified(asList(modifiedEvent));
+    }
+
+    @Test
+    public void nothingDeliveredWhenEmpty() throws Exception {
+        dispatcher.close();
+        verify(batchListener, after(200).never()).discard(asList(discardedKey));
+        verify(hook, never()).beforeDiscard(discardedKey);
+    }
+}
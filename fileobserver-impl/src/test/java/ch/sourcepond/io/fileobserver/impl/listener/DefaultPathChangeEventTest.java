@@ -15,13 +15,18 @@ package ch.sourcepond.io.fileobserver.impl.listener;
 
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.dispatch.EventTimestamps;
 import org.junit.Test;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static java.lang.System.nanoTime;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -57,8 +62,53 @@ public class DefaultPathChangeEventTest {
         verify(replayDispatcher, times(2)).replay(listener, event, parentKeys);
     }
 
+    @Test
+    public void verifyDelayedReplay() {
+        final Duration delay = Duration.ofSeconds(1);
+        event.replay(delay);
+        assertEquals(1, event.getNumReplays());
+        verify(replayDispatcher).replay(listener, event, parentKeys, delay);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void delayedReplayDelayIsNull() {
+        event.replay(null);
+    }
+
     @Test
     public void verifyToString() {
         assertEquals("PathChangeEvent[key: " + key + ", numReplays: 0, file: " + file + "]", event.toString());
     }
+
+    @Test
+    public void timestampsTakenFromBoundStage() {
+        final AtomicReference<DefaultPathChangeEvent> created = new AtomicReference<>();
+        new EventTimestamps(10L, 20L).checksumComputed().runWith(() ->
+                created.set(new DefaultPathChangeEvent(listener, key, file, parentKeys, replayDispatcher)));
+        final DefaultPathChangeEvent timedEvent = created.get();
+        assertEquals(10L, timedEvent.getReceivedNanos());
+        assertEquals(20L, timedEvent.getDebouncedNanos());
+        assertTrue(timedEvent.getChecksumNanos() - 20L > 0);
+        assertTrue(timedEvent.getDeliveryNanos() - timedEvent.getChecksumNanos() >= 0);
+    }
+
+    @Test
+    public void deliveryStampedWhenStarted() {
+        assertEquals(event.getChecksumNanos(), event.getDeliveryNanos());
+        final long before = nanoTime();
+        DefaultPathChangeEvent.deliveryStarted(event);
+        final long delivery = event.getDeliveryNanos();
+        assertTrue(delivery - before >= 0);
+
+        // Replays do not change the delivery timestamp
+        DefaultPathChangeEvent.deliveryStarted(event);
+        assertEquals(delivery, event.getDeliveryNanos());
+    }
+
+    @Test
+    public void timestampsWithoutBoundStage() {
+        assertEquals(event.getReceivedNanos(), event.getDebouncedNanos());
+        assertEquals(event.getDebouncedNanos(), event.getChecksumNanos());
+        assertTrue(event.getDeliveryNanos() - event.getChecksumNanos() >= 0);
+    }
 }
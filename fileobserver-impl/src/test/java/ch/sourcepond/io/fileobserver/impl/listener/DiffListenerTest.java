@@ -13,15 +13,13 @@ See the License for the specific language governing permissions and
 limitations under the License.*/
 package ch.sourcepond.io.fileobserver.impl.listener;
 
-import ch.sourcepond.io.checksum.api.Resource;
-import ch.sourcepond.io.checksum.api.Update;
-import ch.sourcepond.io.checksum.api.UpdateObserver;
 import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
 import ch.sourcepond.io.fileobserver.impl.Config;
 import ch.sourcepond.io.fileobserver.impl.CopyResourcesTest;
 import ch.sourcepond.io.fileobserver.impl.directory.Directory;
+import ch.sourcepond.io.fileobserver.impl.directory.FileChecksum;
 import ch.sourcepond.io.fileobserver.impl.dispatch.DefaultDispatchKeyFactory;
 import ch.sourcepond.io.fileobserver.impl.fs.DedicatedFileSystem;
 import org.junit.Before;
@@ -80,9 +78,8 @@ public class DiffListenerTest extends CopyResourcesTest {
     private final DispatchKey supplementKey1 = mock(DispatchKey.class);
     private final DispatchKey supplementKey2 = mock(DispatchKey.class);
     private final DispatchKey supplementKey3 = mock(DispatchKey.class);
-    private final Resource resource = mock(Resource.class);
+    private final FileChecksum checksum = mock(FileChecksum.class);
     private final ReplayDispatcher replayDispatcher = mock(ReplayDispatcher.class);
-    private final Update update = mock(Update.class);
     private final ListenerManager manager = new ListenerManager();
     private DiffListener diff;
 
@@ -120,20 +117,19 @@ public class DiffListenerTest extends CopyResourcesTest {
         return keyFactory.newKey(DIRECTORY_KEY, pRoot.relativize(pFile));
     }
 
-    private void setupUpdate(final Resource pResource, final Update pUpdate, boolean pHasChanged) throws Exception {
-        when(pUpdate.hasChanged()).thenReturn(pHasChanged);
+    private void setupUpdate(final FileChecksum pChecksum, boolean pHasChanged) throws Exception {
         doAnswer(inv -> {
-            final UpdateObserver obsrv = (UpdateObserver) inv.getArgument(1);
-            obsrv.done(pUpdate);
+            final FileChecksum.Observer obsrv = (FileChecksum.Observer) inv.getArgument(1);
+            obsrv.done(pHasChanged, "cafe", 4L);
             return null;
-        }).when(pResource).update(eq(TIMEOUT), notNull());
+        }).when(pChecksum).update(eq(TIMEOUT), notNull());
     }
 
     @Before
     public void setup() throws Exception {
         doCallRealMethod().when(observer).restrict(notNull(), same(root_dir_path.getFileSystem()));
         when(config.writeDeadlineMillis()).thenReturn(TIMEOUT);
-        setupUpdate(resource, update, true);
+        setupUpdate(checksum, true);
 
         when(fs.getDirectory(root_dir_path)).thenReturn(root_dir);
         when(fs.getDirectory(subdir_1_path)).thenReturn(subdir_1);
@@ -145,15 +141,15 @@ public class DiffListenerTest extends CopyResourcesTest {
         when(fs.getDirectory(subdir_211_path)).thenReturn(subdir_211);
         when(fs.getDirectory(subdir_22_path)).thenReturn(subdir_22);
 
-        when(root_dir.getResource(notNull())).thenReturn(resource);
-        when(subdir_1.getResource(notNull())).thenReturn(resource);
-        when(subdir_11.getResource(notNull())).thenReturn(resource);
-        when(subdir_111.getResource(notNull())).thenReturn(resource);
-        when(subdir_12.getResource(notNull())).thenReturn(resource);
-        when(subdir_2.getResource(notNull())).thenReturn(resource);
-        when(subdir_21.getResource(notNull())).thenReturn(resource);
-        when(subdir_211.getResource(notNull())).thenReturn(resource);
-        when(subdir_22.getResource(notNull())).thenReturn(resource);
+        when(root_dir.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_1.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_11.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_111.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_12.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_2.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_21.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_211.getChecksum(notNull())).thenReturn(checksum);
+        when(subdir_22.getChecksum(notNull())).thenReturn(checksum);
 
         manager.setExecutors(dispatcherExecutor, listenerExecutor);
         manager.setConfig(config);
@@ -163,7 +159,6 @@ public class DiffListenerTest extends CopyResourcesTest {
 
     @Test
     public void simpleRelocation() throws Exception {
-        when(update.hasChanged()).thenReturn(true);
         informDiscard(root_dir_path);
         informModified(root_dir_path);
 
@@ -184,7 +179,6 @@ public class DiffListenerTest extends CopyResourcesTest {
 
     @Test
     public void directoriesDiscardedAfterRelocate() throws Exception {
-        when(update.hasChanged()).thenReturn(true);
         informDiscard(root_dir_path);
         deleteDirectory(subdir_11_path);
         deleteDirectory(subdir_2_path);
@@ -209,7 +203,6 @@ public class DiffListenerTest extends CopyResourcesTest {
 
     @Test
     public void filesDiscardedAfterRelocate() throws Exception {
-        when(update.hasChanged()).thenReturn(true);
         informDiscard(root_dir_path);
 
         delete(testfile_1111_txt_path);
@@ -238,25 +231,20 @@ public class DiffListenerTest extends CopyResourcesTest {
 
     @Test
     public void doOnlyModifyThoseWhichHaveChanged() throws Exception {
-        final Resource resource_testfile_1111_txt = mock(Resource.class);
-        final Resource resource_testfile_121_txt = mock(Resource.class);
-        final Resource resource_testfile_211_txt = mock(Resource.class);
-        final Resource resource_testfile_txt = mock(Resource.class);
+        final FileChecksum checksum_testfile_1111_txt = mock(FileChecksum.class);
+        final FileChecksum checksum_testfile_121_txt = mock(FileChecksum.class);
+        final FileChecksum checksum_testfile_211_txt = mock(FileChecksum.class);
+        final FileChecksum checksum_testfile_txt = mock(FileChecksum.class);
 
-        when(subdir_111.getResource(testfile_1111_txt_path)).thenReturn(resource_testfile_1111_txt);
-        when(subdir_12.getResource(testfile_121_txt_path)).thenReturn(resource_testfile_121_txt);
-        when(subdir_21.getResource(testfile_211_txt_path)).thenReturn(resource_testfile_211_txt);
-        when(root_dir.getResource(testfile_txt_path)).thenReturn(resource_testfile_txt);
+        when(subdir_111.getChecksum(testfile_1111_txt_path)).thenReturn(checksum_testfile_1111_txt);
+        when(subdir_12.getChecksum(testfile_121_txt_path)).thenReturn(checksum_testfile_121_txt);
+        when(subdir_21.getChecksum(testfile_211_txt_path)).thenReturn(checksum_testfile_211_txt);
+        when(root_dir.getChecksum(testfile_txt_path)).thenReturn(checksum_testfile_txt);
 
-        final Update update_testfile_1111_txt = mock(Update.class);
-        final Update update_testfile_121_txt = mock(Update.class);
-        final Update update_testfile_211_txt = mock(Update.class);
-        final Update update_testfile_txt = mock(Update.class);
-
-        setupUpdate(resource_testfile_1111_txt, update_testfile_1111_txt, false);
-        setupUpdate(resource_testfile_121_txt, update_testfile_121_txt, false);
-        setupUpdate(resource_testfile_211_txt, update_testfile_211_txt, false);
-        setupUpdate(resource_testfile_txt, update_testfile_txt, false);
+        setupUpdate(checksum_testfile_1111_txt, false);
+        setupUpdate(checksum_testfile_121_txt, false);
+        setupUpdate(checksum_testfile_211_txt, false);
+        setupUpdate(checksum_testfile_txt, false);
 
 
         informDiscard(root_dir_path);
@@ -276,7 +264,6 @@ public class DiffListenerTest extends CopyResourcesTest {
 
     @Test
     public void insureInformAboutSupplementKeys() throws Exception {
-        when(update.hasChanged()).thenReturn(true);
         informDiscard(subdir_111_path);
 
         final DispatchKey key = key(subdir_111_path, testfile_1111_txt_path);
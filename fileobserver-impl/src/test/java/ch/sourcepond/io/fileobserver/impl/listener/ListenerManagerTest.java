@@ -17,6 +17,7 @@ import ch.sourcepond.io.fileobserver.api.DispatchKey;
 import ch.sourcepond.io.fileobserver.api.KeyDeliveryHook;
 import ch.sourcepond.io.fileobserver.api.PathChangeEvent;
 import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import ch.sourcepond.io.fileobserver.impl.Config;
 import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestriction;
 import ch.sourcepond.io.fileobserver.impl.restriction.DefaultDispatchRestrictionFactory;
 import org.junit.After;
@@ -27,6 +28,7 @@ import org.mockito.InOrder;
 import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 
@@ -197,6 +199,46 @@ public class ListenerManagerTest {
         assertEquals(4, realEvent.getNumReplays());
     }
 
+    @Test(timeout = 10000)
+    public void clientWantsToReplayEventWithDelay() throws Exception {
+        manager.replay(listener, pathChangeEvent, parentKeys, Duration.ofMillis(500));
+        sleep(200);
+        verifyZeroInteractions(listener);
+        verify(listener, timeout(2000)).modified(pathChangeEvent);
+        manager.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void clientWantsToReplayEventWithBackoff() throws Exception {
+        final Config config = mock(Config.class);
+        when(config.replayBackoffInitialMillis()).thenReturn(500L);
+        when(config.replayBackoffMultiplier()).thenReturn(2.0);
+        when(config.replayBackoffMaxMillis()).thenReturn(1000L);
+        when(pathChangeEvent.getNumReplays()).thenReturn(1);
+        manager.setConfig(config);
+        manager.replay(listener, pathChangeEvent, parentKeys);
+        sleep(200);
+        verifyZeroInteractions(listener);
+        verify(listener, timeout(2000)).modified(pathChangeEvent);
+        manager.shutdown();
+    }
+
+    @Test
+    public void orderedDeliveryOnLanes() throws IOException {
+        final Config config = mock(Config.class);
+        when(config.deliveryLanes()).thenReturn(2);
+        manager.setConfig(config);
+        manager.modified(manager.getListeners(), dispatchKey, file, parentKeys);
+        manager.discard(manager.getListeners(), dispatchKey);
+        final InOrder order = inOrder(hook, listener);
+        order.verify(hook, timeout(1000)).beforeModify(dispatchKey, file);
+        order.verify(listener, timeout(1000)).modified(pathChangeEvent);
+        order.verify(hook, timeout(1000)).afterModify(dispatchKey, file);
+        order.verify(hook, timeout(1000)).beforeDiscard(dispatchKey);
+        order.verify(listener, timeout(1000)).discard(dispatchKey);
+        order.verify(hook, timeout(1000)).afterDiscard(dispatchKey);
+    }
+
     @Test
     public void discardCurrentlyNoObserversAvailable() {
         manager.removeObserver(listener);
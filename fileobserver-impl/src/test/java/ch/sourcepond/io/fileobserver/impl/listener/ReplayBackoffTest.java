@@ -0,0 +1,68 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import ch.sourcepond.io.fileobserver.impl.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+import static ch.sourcepond.io.fileobserver.impl.listener.ReplayBackoff.delayMillis;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class ReplayBackoffTest {
+    private final Config config = mock(Config.class);
+
+    @Before
+    public void setup() {
+        when(config.replayBackoffInitialMillis()).thenReturn(100L);
+        when(config.replayBackoffMultiplier()).thenReturn(2.0);
+        when(config.replayBackoffMaxMillis()).thenReturn(1000L);
+    }
+
+    @Test
+    public void noConfig() {
+        assertEquals(0L, delayMillis(null, 3));
+    }
+
+    @Test
+    public void backoffDisabled() {
+        when(config.replayBackoffInitialMillis()).thenReturn(0L);
+        assertEquals(0L, delayMillis(config, 3));
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        assertEquals(100L, delayMillis(config, 1));
+        assertEquals(200L, delayMillis(config, 2));
+        assertEquals(400L, delayMillis(config, 3));
+        assertEquals(800L, delayMillis(config, 4));
+    }
+
+    @Test
+    public void backoffLimited() {
+        assertEquals(1000L, delayMillis(config, 5));
+        assertEquals(1000L, delayMillis(config, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void multiplierLessThanOne() {
+        when(config.replayBackoffMultiplier()).thenReturn(0.5);
+        assertEquals(100L, delayMillis(config, 3));
+    }
+}
@@ -0,0 +1,106 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.listener;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class StripedExecutorTest {
+    private static final int TASKS = 1000;
+    private final ExecutorService executor = newCachedThreadPool();
+    private final StripedExecutor stripedExecutor = new StripedExecutor(executor, 4);
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void laneCountMustBePositive() {
+        new StripedExecutor(executor, 0);
+    }
+
+    @Test
+    public void laneOf() {
+        for (int i = -100; i < 100; i++) {
+            final int lane = stripedExecutor.laneOf(i);
+            assertTrue(lane >= 0 && lane < stripedExecutor.getLaneCount());
+            assertEquals(lane, stripedExecutor.laneOf(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void tasksWithSameKeyAreExecutedInOrder() throws Exception {
+        final List<Integer> executed = new CopyOnWriteArrayList<>();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            final int number = i;
+            stripedExecutor.execute("sameKey", () -> {
+                assertEquals(1, concurrent.incrementAndGet());
+                executed.add(number);
+                concurrent.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, SECONDS));
+        for (int i = 0; i < TASKS; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void differentLanesRunInParallel() throws Exception {
+        Object otherKey = 0;
+        while (stripedExecutor.laneOf(otherKey) == stripedExecutor.laneOf("key")) {
+            otherKey = (Integer) otherKey + 1;
+        }
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch otherDone = new CountDownLatch(1);
+        stripedExecutor.execute("key", () -> {
+            try {
+                blocked.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stripedExecutor.execute(otherKey, otherDone::countDown);
+        assertTrue(otherDone.await(5, SECONDS));
+        blocked.countDown();
+    }
+
+    @Test(timeout = 10000)
+    public void failingTaskDoesNotBlockLane() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        stripedExecutor.execute("key", () -> {
+            throw new IllegalStateException("expected");
+        });
+        stripedExecutor.execute("key", done::countDown);
+        assertTrue(done.await(5, SECONDS));
+    }
+}
@@ -0,0 +1,64 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.LatencyStatistics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void bucketOf() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1));
+        assertEquals(2, LatencyHistogram.bucketOf(2));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(11, LatencyHistogram.bucketOf(1024));
+        assertEquals(63, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        final LatencyStatistics statistics = histogram.snapshot();
+        assertEquals(0, statistics.getCount());
+        assertEquals(0, statistics.getMeanNanos());
+        assertEquals(0, statistics.getMaxNanos());
+        assertEquals(0, statistics.getP50Nanos());
+        assertEquals(0, statistics.getP99Nanos());
+    }
+
+    @Test
+    public void snapshot() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-1);
+        final LatencyStatistics statistics = histogram.snapshot();
+        assertEquals(1001, statistics.getCount());
+        assertEquals(500000, statistics.getMeanNanos());
+        assertEquals(1000000, statistics.getMaxNanos());
+
+        // Median is 500'000ns which is in bucket [2^18, 2^19)
+        assertEquals((1L << 19) - 1, statistics.getP50Nanos());
+
+        // Percentile is capped by the maximum
+        assertEquals(1000000, statistics.getP99Nanos());
+    }
+}
@@ -0,0 +1,60 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.FileObserverMetrics;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class MetricsRegistrationTest {
+    private final MBeanServer server = mock(MBeanServer.class);
+    private final BundleContext context = mock(BundleContext.class);
+    private final ServiceRegistration<FileObserverMetrics> serviceRegistration = mock(ServiceRegistration.class);
+    private final Metrics metrics = new Metrics();
+
+    @Test
+    public void registerAndUnregister() throws Exception {
+        when(context.registerService(FileObserverMetrics.class, metrics, null)).thenReturn(serviceRegistration);
+        final MetricsRegistration registration = MetricsRegistration.register(server, context, metrics);
+        final ObjectName name = new ObjectName(FileObserverMetrics.OBJECT_NAME);
+        verify(server).registerMBean(any(), eq(name));
+
+        registration.unregister();
+        verify(serviceRegistration).unregister();
+        verify(server).unregisterMBean(name);
+    }
+
+    @Test
+    public void mbeanAlreadyRegistered() throws Exception {
+        when(server.registerMBean(any(), any())).thenThrow(InstanceAlreadyExistsException.class);
+        final MetricsRegistration registration = MetricsRegistration.register(server, null, metrics);
+        registration.unregister();
+        verify(server, never()).unregisterMBean(any());
+    }
+}
@@ -0,0 +1,128 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.metrics;
+
+import ch.sourcepond.io.fileobserver.api.DispatchKey;
+import ch.sourcepond.io.fileobserver.api.PathChangeListener;
+import org.junit.Test;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ */
+public class MetricsTest {
+    private final PathChangeListener listener = mock(PathChangeListener.class);
+    private final String listenerName = listener.getClass().getName() + "#1";
+    private final Metrics metrics = new Metrics();
+
+    private interface ModifiedListener extends PathChangeListener {
+
+        @Override
+        default void discard(final DispatchKey pKey) {
+            // noop
+        }
+    }
+
+    @Test
+    public void timingEnabledAfterFirstRead() {
+        assertFalse(metrics.isTimingEnabled());
+        assertEquals(Metrics.NOT_TIMED, metrics.startTimer());
+        metrics.restrictionEvaluated(Metrics.NOT_TIMED);
+        assertEquals(0, metrics.getRestrictionTime().getCount());
+
+        assertTrue(metrics.isTimingEnabled());
+        final long start = metrics.startTimer();
+        assertNotEquals(Metrics.NOT_TIMED, start);
+        metrics.restrictionEvaluated(start);
+        assertEquals(1, metrics.getRestrictionTime().getCount());
+    }
+
+    @Test
+    public void counters() {
+        metrics.watchEventReceived(ENTRY_CREATE);
+        metrics.watchEventReceived(ENTRY_CREATE);
+        metrics.watchEventReceived(OVERFLOW);
+        metrics.eventDebounced();
+        metrics.checksumUnchanged();
+        assertEquals(2L, (long) metrics.getWatchEvents().get(ENTRY_CREATE.name()));
+        assertEquals(1L, (long) metrics.getWatchEvents().get(OVERFLOW.name()));
+        assertEquals(1, metrics.getDebouncedEvents());
+        assertEquals(1, metrics.getUnchangedChecksums());
+    }
+
+    @Test
+    public void hashedBytesCountedWithoutTiming() {
+        metrics.checksumUpdated(Metrics.NOT_TIMED, 100);
+        assertEquals(100, metrics.getHashedBytes());
+        assertEquals(0, metrics.getHashingTime().getCount());
+        metrics.checksumUpdated(metrics.startTimer(), 100);
+        assertEquals(200, metrics.getHashedBytes());
+        assertEquals(1, metrics.getHashingTime().getCount());
+    }
+
+    @Test
+    public void failuresCountedWithoutTiming() {
+        metrics.listenerAdded(listener);
+        metrics.delivered(listener, Metrics.NOT_TIMED, false);
+        metrics.delivered(listener, Metrics.NOT_TIMED, true);
+        assertEquals(1L, (long) metrics.getListenerFailures().get(listenerName));
+        assertEquals(0, metrics.getListenerLatencies().get(listenerName).getCount());
+
+        metrics.delivered(listener, metrics.startTimer(), false);
+        assertEquals(1, metrics.getListenerLatencies().get(listenerName).getCount());
+    }
+
+    @Test
+    public void instancesOfSameClassNotMerged() {
+        final PathChangeListener other = mock(PathChangeListener.class);
+        final String otherName = other.getClass().getName() + "#2";
+        metrics.listenerAdded(listener);
+        metrics.listenerAdded(other);
+        metrics.listenerAdded(listener);
+        metrics.delivered(listener, Metrics.NOT_TIMED, true);
+        assertEquals(2, metrics.getListenerFailures().size());
+        assertEquals(1L, (long) metrics.getListenerFailures().get(listenerName));
+        assertEquals(0L, (long) metrics.getListenerFailures().get(otherName));
+    }
+
+    @Test
+    public void removedListenerDiscarded() {
+        metrics.listenerAdded(listener);
+        metrics.listenerRemoved(listener);
+        metrics.delivered(listener, Metrics.NOT_TIMED, true);
+        assertTrue(metrics.getListenerFailures().isEmpty());
+        assertTrue(metrics.getListenerLatencies().isEmpty());
+    }
+
+    @Test
+    public void nameOfLambda() {
+        final ModifiedListener lambda = e -> {
+        };
+        assertEquals(MetricsTest.class.getName() + "$$Lambda#3", Metrics.nameOf(lambda, 3));
+    }
+
+    @Test
+    public void pendingEventsGauge() {
+        assertEquals(0, metrics.getPendingEvents());
+        metrics.setPendingEventsGauge(() -> 7);
+        assertEquals(7, metrics.getPendingEvents());
+    }
+}
@@ -0,0 +1,158 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import ch.sourcepond.io.fileobserver.impl.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.file.FileSystems.getDefault;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class PollingWatchBackendTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final Config config = mock(Config.class);
+    private final FileStore store = mock(FileStore.class);
+    private final PollingWatchBackend backend = new PollingWatchBackend();
+    private WatchService watchService;
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        when(config.pollingFileStoreTypes()).thenReturn(" nfs, fuse.sshfs ,");
+        when(config.pollingMinIntervalMillis()).thenReturn(50L);
+        when(config.pollingMaxIntervalMillis()).thenReturn(200L);
+        when(config.pollingParallelism()).thenReturn(2);
+        backend.setConfig(config);
+        watchService = backend.newWatchService(getDefault());
+        directory = folder.getRoot().toPath();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        watchService.close();
+        backend.shutdown();
+    }
+
+    private static Set<String> describe(final WatchKey pKey) {
+        final Set<String> events = new HashSet<>();
+        for (final WatchEvent<?> event : pKey.pollEvents()) {
+            events.add(event.kind().name() + ":" + event.context());
+        }
+        return events;
+    }
+
+    @Test
+    public void supports() {
+        assertTrue(backend.isConfigured());
+        when(store.type()).thenReturn("nfs");
+        assertTrue(backend.supports(store));
+        when(store.type()).thenReturn("fuse.sshfs");
+        assertTrue(backend.supports(store));
+        when(store.type()).thenReturn("ext4");
+        assertFalse(backend.supports(store));
+    }
+
+    @Test
+    public void notConfigured() {
+        when(config.pollingFileStoreTypes()).thenReturn("");
+        backend.setConfig(config);
+        assertFalse(backend.isConfigured());
+    }
+
+    @Test(expected = ProviderMismatchException.class)
+    public void registerWithForeignWatchService() throws IOException {
+        backend.register(mock(WatchService.class), directory);
+    }
+
+    @Test
+    public void registerTwice() throws IOException {
+        assertSame(backend.register(watchService, directory), backend.register(watchService, directory));
+    }
+
+    @Test(timeout = 10000)
+    public void detectChanges() throws Exception {
+        final Path existing = directory.resolve("existing.txt");
+        write(existing, new byte[]{1});
+        final WatchKey key = backend.register(watchService, directory);
+        assertSame(directory, key.watchable());
+
+        write(directory.resolve("created.txt"), new byte[]{1});
+        write(existing, new byte[]{1, 2});
+        assertSame(key, watchService.poll(5, SECONDS));
+        final Set<String> expected = new HashSet<>();
+        expected.add(ENTRY_CREATE.name() + ":created.txt");
+        expected.add(ENTRY_MODIFY.name() + ":existing.txt");
+        assertEquals(expected, describe(key));
+        assertTrue(key.reset());
+
+        delete(existing);
+        assertSame(key, watchService.poll(5, SECONDS));
+        assertEquals(singleton(ENTRY_DELETE.name() + ":existing.txt"), describe(key));
+        assertTrue(key.reset());
+    }
+
+    private static Set<String> singleton(final String pValue) {
+        final Set<String> set = new HashSet<>();
+        set.add(pValue);
+        return set;
+    }
+
+    @Test(timeout = 10000)
+    public void watchedDirectoryDeleted() throws Exception {
+        final Path subDirectory = folder.newFolder("sub").toPath();
+        final WatchKey key = backend.register(watchService, subDirectory);
+        delete(subDirectory);
+        assertSame(key, watchService.poll(5, SECONDS));
+        assertFalse(key.isValid());
+        assertFalse(key.reset());
+    }
+
+    @Test
+    public void closeCancelsKeys() throws IOException {
+        final WatchKey key = backend.register(watchService, directory);
+        watchService.close();
+        assertFalse(key.isValid());
+        assertNotNull(key.pollEvents());
+    }
+}
@@ -0,0 +1,111 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.polling;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.List;
+
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ */
+public class PollingWatchKeyTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final PollingWatchService service = mock(PollingWatchService.class);
+    private Path directory;
+    private PollingWatchKey key;
+
+    @Before
+    public void setup() throws IOException {
+        directory = folder.getRoot().toPath();
+        key = new PollingWatchKey(service, directory);
+    }
+
+    @Test
+    public void adaptiveInterval() {
+        assertEquals(100L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(200L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(400L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(800L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(1000L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(1000L, key.nextInterval(false, 100L, 1000L));
+        assertEquals(100L, key.nextInterval(true, 100L, 1000L));
+    }
+
+    @Test
+    public void sweepWithoutChanges() {
+        assertFalse(key.sweep());
+        verify(service, never()).enqueue(key);
+    }
+
+    @Test
+    public void signalOnlyOnceUntilReset() throws IOException {
+        write(directory.resolve("a"), new byte[]{1});
+        assertTrue(key.sweep());
+        write(directory.resolve("b"), new byte[]{1});
+        assertTrue(key.sweep());
+        verify(service).enqueue(key);
+        assertEquals(2, key.pollEvents().size());
+        assertTrue(key.reset());
+        write(directory.resolve("c"), new byte[]{1});
+        assertTrue(key.sweep());
+        verify(service, times(2)).enqueue(key);
+    }
+
+    @Test
+    public void resetWithPendingEvents() throws IOException {
+        write(directory.resolve("a"), new byte[]{1});
+        assertTrue(key.sweep());
+        assertTrue(key.reset());
+        verify(service, times(2)).enqueue(key);
+    }
+
+    @Test
+    public void overflow() throws IOException {
+        for (int i = 0; i < PollingWatchKey.MAX_EVENTS + 10; i++) {
+            write(directory.resolve(String.valueOf(i)), new byte[]{1});
+        }
+        assertTrue(key.sweep());
+        final List<WatchEvent<?>> events = key.pollEvents();
+        assertEquals(PollingWatchKey.MAX_EVENTS, events.size());
+        assertSame(OVERFLOW, events.get(PollingWatchKey.MAX_EVENTS - 1).kind());
+    }
+
+    @Test
+    public void cancel() {
+        key.cancel();
+        assertFalse(key.isValid());
+        assertFalse(key.reset());
+        assertFalse(key.sweep());
+        verify(service).cancelled(key);
+    }
+}
@@ -0,0 +1,106 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.restriction;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.regex.PatternSyntaxException;
+
+import static java.nio.file.FileSystems.getDefault;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class CompiledPathMatcherTest {
+    private static final String[] PATTERNS = {
+            "glob:*.txt", "glob:**/*.txt", "glob:**/*.tar.gz", "glob:a/b/**", "glob:x/y.txt",
+            "glob:{a,b}/*.c", "glob:[a-c]?.md", "glob:**.xml", "glob:dir/*/[!x]*", "glob:\\*.q",
+            "regex:.*foo.*", "regex:(a)\\1.txt", "regex:(?i)UP.*", "regex:\\Qx.q", "regex:(?x) z e d # comment",
+            "regex:(?ix:Z E D2)"
+    };
+    private static final String[] PATHS = {
+            "a.txt", "b/a.txt", "b/c/a.txt", ".txt", "x.tar.gz", "d/x.tar.gz", "a/b/c", "a/b", "a/bc/d",
+            "x/y.txt", "x/y.txtx", "a/z.c", "c/z.c", "a1.md", "d1.md", "q.xml", "a/q.xml", "dir/k/y",
+            "dir/k/x", "xxfooxx", "aa.txt", "ab.txt", "upper", "*.q", "x.q", "xxq", "zed", "zed2", "ZED2"
+    };
+
+    private static Path path(final String pPath) {
+        return getDefault().getPath(pPath);
+    }
+
+    @Test
+    public void verifySingleMatchesLikeDefaultFileSystem() {
+        for (final String pattern : PATTERNS) {
+            final CompiledPathMatcher compiled = new CompiledPathMatcher(singletonList(pattern));
+            final PathMatcher expected = getDefault().getPathMatcher(pattern);
+            for (final String p : PATHS) {
+                assertEquals(pattern + " -> " + p, expected.matches(path(p)), compiled.matches(path(p)));
+            }
+        }
+    }
+
+    @Test
+    public void verifyCombinedMatchesLikeDefaultFileSystem() {
+        final CompiledPathMatcher compiled = new CompiledPathMatcher(asList(PATTERNS));
+        for (final String p : PATHS) {
+            boolean expected = false;
+            for (final String pattern : PATTERNS) {
+                expected |= getDefault().getPathMatcher(pattern).matches(path(p));
+            }
+            assertEquals(p, expected, compiled.matches(path(p)));
+        }
+    }
+
+    @Test
+    public void isSupported() {
+        assertTrue(CompiledPathMatcher.isSupported("glob:*.txt"));
+        assertTrue(CompiledPathMatcher.isSupported("REGEX:.*"));
+        assertFalse(CompiledPathMatcher.isSupported("custom:any"));
+        assertFalse(CompiledPathMatcher.isSupported("noSyntax"));
+    }
+
+    @Test
+    public void unterminatedQuotationNotJoined() {
+        final CompiledPathMatcher compiled = new CompiledPathMatcher(asList("regex:\\Qa.b", "regex:.*foo.*"));
+        assertTrue(compiled.matches(path("a.b")));
+        assertFalse(compiled.matches(path("axb")));
+        assertTrue(compiled.matches(path("xxfooxx")));
+    }
+
+    @Test
+    public void trailingCommentNotJoined() {
+        final CompiledPathMatcher compiled = new CompiledPathMatcher(asList("regex:(?x) a \\. b # comment",
+                "regex:.*foo.*"));
+        assertTrue(compiled.matches(path("a.b")));
+        assertTrue(compiled.matches(path("xxfooxx")));
+        assertFalse(compiled.matches(path("axb")));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void invalidGlob() {
+        new CompiledPathMatcher(singletonList("glob:[a"));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void invalidRegex() {
+        new CompiledPathMatcher(singletonList("regex:("));
+    }
+}
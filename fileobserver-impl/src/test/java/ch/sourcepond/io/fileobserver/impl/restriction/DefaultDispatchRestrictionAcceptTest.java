@@ -21,6 +21,8 @@ import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 
+import static java.nio.file.FileSystems.getDefault;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -141,4 +143,68 @@ public class DefaultDispatchRestrictionAcceptTest {
         assertFalse(restriction.isAccepted(key));
         verify(matcher).matches(path);
     }
+
+    @Test
+    public void decisionIsCached() {
+        when(matcher.matches(path)).thenReturn(true);
+        when(key.getDirectoryKey()).thenReturn(ACCEPTED_KEY);
+        restriction.accept(ACCEPTED_KEY);
+        restriction.addPathMatcher(matcher);
+        assertTrue(restriction.isAccepted(key));
+        assertTrue(restriction.isAccepted(key));
+        verify(matcher).matches(path);
+    }
+
+    @Test
+    public void cachedDecisionInvalidatedWhenMatcherAdded() {
+        when(key.getDirectoryKey()).thenReturn(ACCEPTED_KEY);
+        restriction.accept(ACCEPTED_KEY);
+        restriction.addPathMatcher(ANY_PATTERN);
+        assertFalse(restriction.isAccepted(key));
+
+        final PathMatcher otherMatcher = mock(PathMatcher.class);
+        when(otherMatcher.matches(path)).thenReturn(true);
+        restriction.addPathMatcher(otherMatcher);
+        assertTrue(restriction.isAccepted(key));
+        verify(matcher, times(2)).matches(path);
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        restriction.acceptAll();
+        restriction.addPathMatcher(matcher);
+        for (int i = 0; i <= DefaultDispatchRestriction.DECISION_CACHE_CAPACITY; i++) {
+            final DispatchKey otherKey = mock(DispatchKey.class);
+            when(otherKey.getRelativePath()).thenReturn(path);
+            restriction.isAccepted(otherKey);
+        }
+
+        // The cache has been cleared when it was full; key needs to be evaluated
+        // again after it has been evaluated once
+        restriction.isAccepted(key);
+        restriction.isAccepted(key);
+        verify(matcher, times(DefaultDispatchRestriction.DECISION_CACHE_CAPACITY + 2)).matches(path);
+    }
+
+    @Test
+    public void compiledPatternsAndCustomMatcherOnDefaultFileSystem() {
+        final DefaultDispatchRestriction defaultFsRestriction = new DefaultDispatchRestrictionFactory().createRestriction(getDefault());
+        defaultFsRestriction.acceptAll();
+        assertNotNull(defaultFsRestriction.addPathMatcher("glob:**/*.txt"));
+        assertNotNull(defaultFsRestriction.addPathMatcher("glob:conf/**"));
+        final Path custom = getDefault().getPath("custom.bin");
+        defaultFsRestriction.addPathMatcher(p -> p.equals(custom));
+
+        assertTrue(defaultFsRestriction.isAccepted(keyOf(getDefault().getPath("a", "b.txt"))));
+        assertTrue(defaultFsRestriction.isAccepted(keyOf(getDefault().getPath("conf", "x.bin"))));
+        assertTrue(defaultFsRestriction.isAccepted(keyOf(custom)));
+        assertFalse(defaultFsRestriction.isAccepted(keyOf(getDefault().getPath("b.txt"))));
+        assertFalse(defaultFsRestriction.isAccepted(keyOf(getDefault().getPath("a", "b.bin"))));
+    }
+
+    private static DispatchKey keyOf(final Path pRelativePath) {
+        final DispatchKey dispatchKey = mock(DispatchKey.class);
+        when(dispatchKey.getRelativePath()).thenReturn(pRelativePath);
+        return dispatchKey;
+    }
 }
@@ -0,0 +1,116 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.impl.snapshot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static ch.sourcepond.io.fileobserver.impl.snapshot.SnapshotEntry.AMBIGUITY_MILLIS;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.write;
+import static java.nio.file.attribute.FileTime.fromMillis;
+import static java.util.Comparator.reverseOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class SnapshotStoreTest {
+    private static final String DIRECTORY_KEY = "some/key";
+    private final Path directory = createTempDirectory(getClass().getSimpleName()).resolve("state");
+    private final SnapshotStore store = new SnapshotStore(directory);
+
+    public SnapshotStoreTest() throws IOException {
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        walk(directory.getParent()).sorted(reverseOrder()).forEach(p -> {
+            try {
+                delete(p);
+            } catch (final IOException e) {
+                throw new AssertionError(e.getMessage(), e);
+            }
+        });
+    }
+
+    @Test
+    public void loadMissing() {
+        assertTrue(store.load(DIRECTORY_KEY).isEmpty());
+    }
+
+    @Test
+    public void storeAndLoad() throws IOException {
+        final Snapshot snapshot = new Snapshot();
+        snapshot.put("a/b.txt", new SnapshotEntry(10L, 1000L, 5000L, "cafe"));
+        snapshot.put("c.txt", new SnapshotEntry(20L, 2000L, 5000L, "babe"));
+        store.store(DIRECTORY_KEY, snapshot);
+
+        final Path file = store.getFile(DIRECTORY_KEY);
+        assertEquals(directory, file.getParent());
+        assertFalse(exists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        final Snapshot loaded = store.load(DIRECTORY_KEY);
+        assertEquals(snapshot.getEntries(), loaded.getEntries());
+        assertTrue(store.load("otherKey").isEmpty());
+    }
+
+    @Test
+    public void loadCorrupted() throws IOException {
+        store.store(DIRECTORY_KEY, new Snapshot());
+        write(store.getFile(DIRECTORY_KEY), new byte[]{1, 2, 3});
+        assertTrue(store.load(DIRECTORY_KEY).isEmpty());
+    }
+
+    @Test
+    public void takeEntry() {
+        final Snapshot snapshot = new Snapshot();
+        final SnapshotEntry entry = new SnapshotEntry(10L, 1000L, 5000L, "cafe");
+        snapshot.put("a.txt", entry);
+        assertEquals(entry, snapshot.take("a.txt"));
+        assertNull(snapshot.take("a.txt"));
+        assertTrue(snapshot.isEmpty());
+    }
+
+    @Test
+    public void entryMatches() {
+        final BasicFileAttributes attrs = mock(BasicFileAttributes.class);
+        when(attrs.size()).thenReturn(10L);
+        when(attrs.lastModifiedTime()).thenReturn(fromMillis(1000L));
+        assertTrue(new SnapshotEntry(10L, 1000L, 5000L, "cafe").matches(attrs));
+        assertFalse(new SnapshotEntry(11L, 1000L, 5000L, "cafe").matches(attrs));
+        assertFalse(new SnapshotEntry(10L, 1001L, 5000L, "cafe").matches(attrs));
+    }
+
+    @Test
+    public void entryRecordedWithinAmbiguityDoesNotMatch() {
+        final BasicFileAttributes attrs = mock(BasicFileAttributes.class);
+        when(attrs.size()).thenReturn(10L);
+        when(attrs.lastModifiedTime()).thenReturn(fromMillis(1000L));
+        assertFalse(new SnapshotEntry(10L, 1000L, 1000L + AMBIGUITY_MILLIS - 1L, "cafe").matches(attrs));
+        assertTrue(new SnapshotEntry(10L, 1000L, 1000L + AMBIGUITY_MILLIS, "cafe").matches(attrs));
+    }
+}
@@ -0,0 +1,35 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.spi;
+
+/**
+ * Strategy which decides how a modified file is checked for an actual change
+ * (see {@link WatchedDirectory#setChangeDetection(ChangeDetection)}).
+ */
+public enum ChangeDetection {
+
+    /**
+     * The checksum of the file is calculated on every modification. This is the safest but also the most
+     * expensive strategy, because the whole file is read every time.
+     */
+    CHECKSUM,
+
+    /**
+     * Size, last-modification time and file-key (if supported by the file-system) of the file are compared first.
+     * The checksum is only calculated if one of these attributes has changed, or, if the attributes cannot be
+     * trusted because the file was modified within the same second its attributes had been recorded. Use this
+     * strategy for directories which contain large files.
+     */
+    METADATA
+}
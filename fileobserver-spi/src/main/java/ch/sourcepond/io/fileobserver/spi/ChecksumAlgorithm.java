@@ -0,0 +1,37 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.spi;
+
+/**
+ * Hash function which is used to detect whether the content of a modified file has actually been changed
+ * (see {@link WatchedDirectory#setChecksumAlgorithm(ChecksumAlgorithm)}). The checksums are only compared
+ * against each other, they are not suitable for any security purpose.
+ */
+public enum ChecksumAlgorithm {
+
+    /**
+     * SHA-256, calculated by the checksum service. This is the default.
+     */
+    SHA256,
+
+    /**
+     * CRC-32C (Castagnoli). On Java 9 and later the hardware accelerated implementation of the JDK is used.
+     */
+    CRC32C,
+
+    /**
+     * 64-bit xxHash. Fast on every platform; collisions are far less likely than with {@link #CRC32C}.
+     */
+    XXHASH64
+}
@@ -40,6 +40,8 @@ final class DefaultWatchedDirectory implements WatchedDirectory {
     private final Collection<RelocationObserver> observers = new CopyOnWriteArraySet<>();
     private final Object key;
     private volatile Path directory;
+    private volatile ChangeDetection changeDetection = ChangeDetection.CHECKSUM;
+    private volatile ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.SHA256;
 
     DefaultWatchedDirectory(final Object pKey, final Path pDirectory) {
         key = requireNonNull(pKey, "Key is null");
@@ -75,6 +77,26 @@ final class DefaultWatchedDirectory implements WatchedDirectory {
         }
     }
 
+    @Override
+    public ChangeDetection getChangeDetection() {
+        return changeDetection;
+    }
+
+    @Override
+    public void setChangeDetection(final ChangeDetection pChangeDetection) {
+        changeDetection = requireNonNull(pChangeDetection, "Change detection is null");
+    }
+
+    @Override
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    @Override
+    public void setChecksumAlgorithm(final ChecksumAlgorithm pChecksumAlgorithm) {
+        checksumAlgorithm = requireNonNull(pChecksumAlgorithm, "Checksum algorithm is null");
+    }
+
     @Override
     public Object getKey() {
         return key;
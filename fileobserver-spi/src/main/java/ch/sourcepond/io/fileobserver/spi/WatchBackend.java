@@ -0,0 +1,74 @@
+/*Copyright (C) 2017 Roland Hauser, <sourcepond@gmail.com>
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.*/
+package ch.sourcepond.io.fileobserver.spi;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * <p>Backend which detects changes in watched directories. By default, directories are watched with the
+ * {@link WatchService} of their file system (see {@link FileSystem#newWatchService()}). On file systems
+ * where that watch service never fires or is slow, for instance network or FUSE mounts, a backend which
+ * polls the directories can be used instead.</p>
+ *
+ * <p>Backends are registered as OSGi services. For every directory, the first registered backend which
+ * {@link #supports(FileStore) supports} the file store of the directory is used; if no such backend exists,
+ * the configured polling backend or the native watch service is used. The choice is made when a directory is
+ * registered, so the directories of a single file system (or a single watched root) may be watched by
+ * different backends.</p>
+ */
+public interface WatchBackend {
+
+    /**
+     * Checks whether this backend should watch the directories located on the file store specified.
+     *
+     * @param pStore File store of the directory to be watched, never {@code null}
+     * @return {@code true} if this backend should watch the directory, {@code false} otherwise
+     */
+    boolean supports(FileStore pStore);
+
+    /**
+     * Creates a new watch service for the file system specified. The watch service is closed when the file system
+     * is not observed anymore.
+     *
+     * @param pFs File system, never {@code null}
+     * @return New watch service, never {@code null}
+     * @throws IOException Thrown, if the watch service could not be created
+     */
+    WatchService newWatchService(FileSystem pFs) throws IOException;
+
+    /**
+     * Registers the directory specified with the watch service specified. The watch service has been created
+     * by {@link #newWatchService(FileSystem)}. The key returned must report {@link java.nio.file.StandardWatchEventKinds#ENTRY_CREATE},
+     * {@link java.nio.file.StandardWatchEventKinds#ENTRY_DELETE} and {@link java.nio.file.StandardWatchEventKinds#ENTRY_MODIFY}
+     * events whose context is the name of the affected entry. The default implementation registers the directory
+     * through {@link Path#register(WatchService, java.nio.file.WatchEvent.Kind[])}.
+     *
+     * @param pWatchService Watch service, never {@code null}
+     * @param pDirectory    Directory to be watched, never {@code null}
+     * @return Key representing the registration, never {@code null}
+     * @throws IOException Thrown, if the directory could not be registered
+     */
+    default WatchKey register(final WatchService pWatchService, final Path pDirectory) throws IOException {
+        return pDirectory.register(pWatchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+}
@@ -47,6 +47,43 @@ public interface WatchedDirectory {
      */
     void removeBlacklistPattern(String pPattern);
 
+    /**
+     * Returns the strategy which is used to check whether a modified file in this watched directory has actually
+     * been changed. The default is {@link ChangeDetection#CHECKSUM}.
+     *
+     * @return Change detection strategy, never {@code null}
+     */
+    ChangeDetection getChangeDetection();
+
+    /**
+     * Sets the strategy which is used to check whether a modified file in this watched directory has actually
+     * been changed. If a directory is watched by more than one watched directory, the checksum is
+     * calculated on every modification if any of them uses {@link ChangeDetection#CHECKSUM}.
+     *
+     * @param pChangeDetection Change detection strategy, must not be {@code null}
+     * @throws NullPointerException Thrown, if the strategy specified is {@code null}
+     */
+    void setChangeDetection(ChangeDetection pChangeDetection);
+
+    /**
+     * Returns the hash function which is used to check whether the content of a file in this watched directory
+     * has been changed. The default is {@link ChecksumAlgorithm#SHA256}.
+     *
+     * @return Checksum algorithm, never {@code null}
+     */
+    ChecksumAlgorithm getChecksumAlgorithm();
+
+    /**
+     * Sets the hash function which is used to check whether the content of a file in this watched directory
+     * has been changed. The algorithm applies to files which are tracked afterwards. If a directory is watched by
+     * more than one watched directory which do not agree on the algorithm, {@link ChecksumAlgorithm#SHA256}
+     * is used.
+     *
+     * @param pChecksumAlgorithm Checksum algorithm, must not be {@code null}
+     * @throws NullPointerException Thrown, if the algorithm specified is {@code null}
+     */
+    void setChecksumAlgorithm(ChecksumAlgorithm pChecksumAlgorithm);
+
     /**
      * Returns the unique key of this watched directory instance. The key remains
      * the same over the whole lifetime of this object.
@@ -76,6 +76,30 @@ public class WatchedDirectoryTest {
         assertFalse(dir.isBlacklisted(ccc));
     }
 
+    @Test
+    public void changeDetection() {
+        assertSame(ChangeDetection.CHECKSUM, dir.getChangeDetection());
+        dir.setChangeDetection(ChangeDetection.METADATA);
+        assertSame(ChangeDetection.METADATA, dir.getChangeDetection());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void setChangeDetectionIsNull() {
+        dir.setChangeDetection(null);
+    }
+
+    @Test
+    public void checksumAlgorithm() {
+        assertSame(ChecksumAlgorithm.SHA256, dir.getChecksumAlgorithm());
+        dir.setChecksumAlgorithm(ChecksumAlgorithm.XXHASH64);
+        assertSame(ChecksumAlgorithm.XXHASH64, dir.getChecksumAlgorithm());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void setChecksumAlgorithmIsNull() {
+        dir.setChecksumAlgorithm(null);
+    }
+
     @Test(expected = NullPointerException.class)
     public void createKeyIsNull() {
         WatchedDirectory.create(null, path);